@@ -0,0 +1,65 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+
+/**
+ * Throughput of the {@link BackpressureWindow} shared by a thread sending
+ * revisions and a thread recording their scores, as in a session.
+ * 
+ * Both threads use the non-blocking operations, such that neither of them
+ * hangs when the other one stops at the end of an iteration. Calls that find
+ * the window full or empty are counted as operations as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BackpressureWindowBenchmark {
+	
+	private static final int WINDOW = 16;
+	
+	private BackpressureWindow window = new BackpressureWindow(WINDOW);
+	
+	// Accessed by the producer thread only
+	private long nextRevisionId = 0;
+	
+	@Benchmark
+	@Group("window")
+	@GroupThreads(1)
+	public boolean put() {
+		if (window.offer(nextRevisionId)) {
+			nextRevisionId++;
+			return true;
+		}
+		return false;
+	}
+	
+	@Benchmark
+	@Group("window")
+	@GroupThreads(1)
+	public boolean score() {
+		long oldest = window.peek();
+		if (oldest == -1) {
+			return false;
+		}
+		long sequence = window.find(window.getRevisionId(oldest));
+		window.setScore(sequence, 0.5f);
+		window.remove();
+		return true;
+	}
+}
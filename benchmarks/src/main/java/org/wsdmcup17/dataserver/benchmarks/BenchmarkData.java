@@ -0,0 +1,101 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
+import org.wsdmcup17.dataserver.dataset.SyntheticDataset;
+import org.wsdmcup17.dataserver.util.Distribution;
+
+/**
+ * Generates inputs for the benchmarks in the formats of the WSDM Cup files,
+ * such that the benchmarks run without the original data. The revision and
+ * meta files are generated by {@link SyntheticDataset} and only depend on the
+ * given seed.
+ */
+public class BenchmarkData {
+	
+	private static final int
+		FIRST_REVISION_ID = 1000,
+		MEAN_TEXT_LENGTH = 1500,
+		// Mean length of a revision with the XML around its text
+		MEAN_REVISION_LENGTH = MEAN_TEXT_LENGTH + 650;
+	
+	private static final String
+		TEXT_LENGTH = "exponential:" + MEAN_TEXT_LENGTH,
+		PAGE_LENGTH = "exponential:4",
+		RESULT = "%d,%s",
+		SEVEN_Z_ENTRY = "data";
+	
+	/**
+	 * Returns a revision file of about the given size.
+	 */
+	public static byte[] createRevisions(long seed, int size)
+	throws IOException {
+		return createDataset(seed, size)[0];
+	}
+	
+	/**
+	 * Returns the meta file belonging to the revision file of the given seed
+	 * and size.
+	 */
+	public static byte[] createMetadata(long seed, int size)
+	throws IOException {
+		return createDataset(seed, size)[1];
+	}
+	
+	private static byte[][] createDataset(long seed, int size)
+	throws IOException {
+		ByteArrayOutputStream revisions =
+				new ByteArrayOutputStream(size + size / 8);
+		ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+		try (
+			Writer revisionWriter = new BufferedWriter(
+				new OutputStreamWriter(revisions, StandardCharsets.UTF_8));
+			Writer metadataWriter = new BufferedWriter(
+				new OutputStreamWriter(metadata, StandardCharsets.UTF_8));
+		){
+			new SyntheticDataset(seed, Math.max(1, size / MEAN_REVISION_LENGTH),
+					Distribution.parse(TEXT_LENGTH),
+					Distribution.parse(PAGE_LENGTH))
+				.write(revisionWriter, metadataWriter);
+		}
+		return new byte[][] { revisions.toByteArray(), metadata.toByteArray() };
+	}
+	
+	/**
+	 * Returns result lines as sent by a client without their line endings.
+	 */
+	public static String[] createResultLines(long seed, int revisions) {
+		Random random = new Random(seed);
+		String[] lines = new String[revisions];
+		for (int i = 0; i < revisions; i++) {
+			lines[i] = String.format(RESULT, FIRST_REVISION_ID + i,
+					Float.toString(random.nextFloat()));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Writes the given bytes as the single entry of a 7z file.
+	 */
+	public static File createSevenZFile(byte[] bytes) throws IOException {
+		File file = File.createTempFile("benchmark", ".7z");
+		file.deleteOnExit();
+		try (SevenZOutputFile output = new SevenZOutputFile(file)) {
+			SevenZArchiveEntry entry = new SevenZArchiveEntry();
+			entry.setName(SEVEN_Z_ENTRY);
+			output.putArchiveEntry(entry);
+			output.write(bytes);
+			output.closeArchiveEntry();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,96 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wsdmcup17.dataserver.util.AsyncInputStream;
+import org.wsdmcup17.dataserver.util.SevenZInputStream;
+
+/**
+ * Throughput of reading a revision file from a 7z file (directly and
+ * decompressed ahead of time by a second thread) compared to reading the
+ * uncompressed file, in MB/s of uncompressed data.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class InputStreamBenchmark {
+	
+	private static final long SEED = 17;
+	
+	private static final int
+		READ_BUFFER_SIZE = 64 * 1024,
+		ASYNC_BUFFER_SIZE = 64 * 1024 * 1024;
+	
+	private static final String
+		THREAD_NAME_DECOMPRESSOR = "Benchmark Decompressor";
+	
+	@Param("16")
+	public int megabytes;
+	
+	private File plainFile;
+	private File sevenZFile;
+	
+	@Setup
+	public void setUp() throws IOException {
+		byte[] revisions = BenchmarkData.createRevisions(SEED,
+				megabytes * 1024 * 1024);
+		plainFile = File.createTempFile("benchmark", ".xml");
+		plainFile.deleteOnExit();
+		Files.write(plainFile.toPath(), revisions);
+		sevenZFile = BenchmarkData.createSevenZFile(revisions);
+	}
+	
+	@Benchmark
+	public long readPlain(Throughput throughput) throws IOException {
+		try (InputStream input = new FileInputStream(plainFile)) {
+			return read(input, throughput);
+		}
+	}
+	
+	@Benchmark
+	public long readSevenZ(Throughput throughput) throws IOException {
+		try (InputStream input = new SevenZInputStream(sevenZFile)) {
+			return read(input, throughput);
+		}
+	}
+	
+	@Benchmark
+	public long readSevenZAsync(Throughput throughput) throws IOException {
+		try (InputStream input = new AsyncInputStream(
+				THREAD_NAME_DECOMPRESSOR, new SevenZInputStream(sevenZFile),
+				ASYNC_BUFFER_SIZE)) {
+			return read(input, throughput);
+		}
+	}
+	
+	private static long read(InputStream input, Throughput throughput)
+	throws IOException {
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		long total = 0;
+		int n;
+		while ((n = input.read(buffer)) != -1) {
+			total += n;
+		}
+		throughput.add(total);
+		return total;
+	}
+}
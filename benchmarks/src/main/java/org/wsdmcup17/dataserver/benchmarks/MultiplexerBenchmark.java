@@ -0,0 +1,145 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wsdmcup17.dataserver.Multiplexer;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Throughput of the {@link Multiplexer} framing revisions and meta data and
+ * writing them to a channel that discards the bytes, in revisions per
+ * second, with every frame written on its own or in batches, and
+ * uncompressed (level 0) or compressed with the given Deflate level.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MultiplexerBenchmark {
+	
+	private static final long SEED = 17;
+	
+	private static final int
+		REVISIONS = 1024,
+		// Large enough for the revisions
+		REVISIONS_SIZE = 4 * 1024 * 1024;
+	
+	@Param({"1", "64"})
+	private int batchSize;
+	
+	@Param({"0", "1", "6"})
+	private int compressionLevel;
+	
+	private List<BinaryItem> revisions = new ArrayList<>();
+	private List<BinaryItem> metadata = new ArrayList<>();
+	
+	private BlockingQueue<BinaryItem> revisionQueue =
+			new ArrayBlockingQueue<>(REVISIONS + 1);
+	private BlockingQueue<BinaryItem> metadataQueue =
+			new ArrayBlockingQueue<>(REVISIONS + 1);
+	private BackpressureWindow window;
+	private DiscardingChannel channel = new DiscardingChannel();
+	private SessionMetrics metrics =
+			new SessionMetrics(new MetricsRegistry());
+	
+	/**
+	 * A channel counting and discarding the bytes written to it.
+	 */
+	private static class DiscardingChannel implements WritableByteChannel {
+		
+		private long bytes = 0;
+		
+		@Override
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			src.position(src.limit());
+			bytes += n;
+			return n;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() { }
+	}
+	
+	@Setup
+	public void setUp() throws IOException {
+		byte[] revisionBytes =
+				BenchmarkData.createRevisions(SEED, REVISIONS_SIZE);
+		new RevisionParser(item -> {
+			if (revisions.size() < REVISIONS) {
+				revisions.add(item);
+			}
+		}, new ByteArrayInputStream(revisionBytes)).consumeFile();
+		byte[] metadataBytes =
+				BenchmarkData.createMetadata(SEED, REVISIONS_SIZE);
+		new MetadataParser(item -> {
+			if (metadata.size() < REVISIONS) {
+				metadata.add(item);
+			}
+		}, new ByteArrayInputStream(metadataBytes)).consumeFile();
+	}
+	
+	@Setup(Level.Invocation)
+	public void fillQueues() {
+		revisionQueue.addAll(revisions);
+		metadataQueue.addAll(metadata);
+		BinaryItem sentinel = new BinaryItem(Long.MAX_VALUE, new byte[0]);
+		revisionQueue.add(sentinel);
+		metadataQueue.add(sentinel);
+		// Never blocks since no scores are recorded
+		window = new BackpressureWindow(REVISIONS);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(REVISIONS)
+	public long multiplex() {
+		FrameCompressor compressor = compressionLevel == 0 ?
+				null : new FrameCompressor(compressionLevel, metrics);
+		try {
+			new Multiplexer(new HashMap<>(), channel, revisionQueue,
+					metadataQueue, window, metrics, batchSize, compressor)
+					.run();
+		}
+		finally {
+			if (compressor != null) {
+				compressor.close();
+			}
+		}
+		return channel.bytes;
+	}
+}
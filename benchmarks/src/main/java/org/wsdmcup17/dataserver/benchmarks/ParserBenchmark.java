@@ -0,0 +1,66 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+
+/**
+ * Throughput of splitting the revision file and the metadata file into
+ * items, i.e., of {@link RevisionParser}, {@link MetadataParser} and their
+ * common base class.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParserBenchmark {
+	
+	private static final long SEED = 17;
+	
+	@Param("16")
+	public int megabytes;
+	
+	private byte[] revisions;
+	private byte[] metadata;
+	
+	@Setup
+	public void setUp() throws IOException {
+		revisions = BenchmarkData.createRevisions(SEED,
+				megabytes * 1024 * 1024);
+		metadata = BenchmarkData.createMetadata(SEED,
+				megabytes * 1024 * 1024);
+	}
+	
+	@Benchmark
+	public void parseRevisions(Throughput throughput, Blackhole blackhole)
+	throws IOException {
+		new RevisionParser(blackhole::consume,
+				new ByteArrayInputStream(revisions)).consumeFile();
+		throughput.add(revisions.length);
+	}
+	
+	@Benchmark
+	public void parseMetadata(Throughput throughput, Blackhole blackhole)
+	throws IOException {
+		new MetadataParser(blackhole::consume,
+				new ByteArrayInputStream(metadata)).consumeFile();
+		throughput.add(metadata.length);
+	}
+}
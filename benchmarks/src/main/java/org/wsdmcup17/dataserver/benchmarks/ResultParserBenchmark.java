@@ -0,0 +1,68 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wsdmcup17.dataserver.result.ResultParser;
+
+/**
+ * Throughput of parsing the result lines sent by the client in lines per
+ * second, from their bytes as done by the server and as RFC 4180 records,
+ * which the server falls back to for quoted fields.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResultParserBenchmark {
+	
+	private static final long SEED = 17;
+	
+	private static final int LINES = 1024;
+	
+	private String[] lines = BenchmarkData.createResultLines(SEED, LINES);
+	private byte[][] lineBytes = new byte[LINES][];
+	private ResultParser parser = new ResultParser(null);
+	
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < LINES; i++) {
+			lineBytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void parseLine(Blackhole blackhole) throws IOException {
+		for (byte[] line: lineBytes) {
+			parser.parseLine(line, 0, line.length);
+			blackhole.consume(parser.getRevisionId());
+			blackhole.consume(parser.getScore());
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void parseRecord(Blackhole blackhole) throws IOException {
+		for (String line: lines) {
+			parser.parseLine(line);
+			blackhole.consume(parser.getRevisionId());
+			blackhole.consume(parser.getScore());
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package org.wsdmcup17.dataserver.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the megabytes processed by a benchmark, which JMH reports as
+ * throughput in MB/s next to the operations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+	
+	private static final double MB = 1024 * 1024;
+	
+	public double megabytes;
+	
+	@Setup(Level.Iteration)
+	public void reset() {
+		megabytes = 0;
+	}
+	
+	public void add(long bytes) {
+		megabytes += bytes / MB;
+	}
+}
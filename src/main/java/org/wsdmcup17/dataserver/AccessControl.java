@@ -0,0 +1,106 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checks whether clients and access tokens are admitted and locates the files
+ * belonging to an access token. In production mode, this is decided by means
+ * of the runs in progress in TIRA.
+ */
+public class AccessControl {
+	
+	private static final String
+		UUID_PATTERN = "^[0-9a-f]{8}-[0-9a-f]{4}-[1-5][0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}$",
+		TIRA_VM_STATE_PATH = "state/virtual-machines",
+		TIRA_CLIENT_IP_PREFIX = "141.54",
+		TIRA_RUN_DIR_PATTERN = "data/runs/%s/%s/%s/",
+		TIRA_PROTOTEXT_NAME = "run.prototext",
+		ERROR_MSG_INVALID_CLIENT = "Invalid client IP: %s",
+		UTF_8 = "UTF-8",
+		EXT_CSV = ".csv",
+		EXT_LATENCY = ".latency.csv",
+		EXT_SANDBOXED = ".sandboxed";
+	
+	private Configuration config;
+	
+	public AccessControl(Configuration config) {
+		this.config = config;
+	}
+	
+	public boolean checkClientValidity(InetAddress clientIP) throws Error {
+		if (!config.isInProductionMode() ||
+			clientIP.getHostAddress().startsWith(TIRA_CLIENT_IP_PREFIX)) {
+			return true;
+		}
+		String ipAddress = clientIP.getHostAddress();
+		String e = String.format(ERROR_MSG_INVALID_CLIENT, ipAddress);
+		throw new Error(e);
+	}
+
+	public boolean checkTokenValidity(String accessToken) throws IOException {
+		if (!config.isInProductionMode()) return true;
+		if (Pattern.matches(UUID_PATTERN, accessToken) &&
+			!getOutputFile(accessToken).exists() &&
+			isTiraRunInProgress(accessToken)
+		) {
+			return true;
+		}
+		else {
+			return false;
+		}
+	}
+
+	private boolean isTiraRunInProgress(String accessToken) throws IOException {
+		return getRunDir(accessToken) != null;
+	}
+	
+	public File getRunDir(String accessToken) throws IOException {
+		if (!config.isInProductionMode()) return config.getOutputPath();
+		File tiraPath = config.getTiraPath();
+		File vmStates = new File(tiraPath, TIRA_VM_STATE_PATH);
+		File[] stateFiles = vmStates.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(EXT_SANDBOXED);
+			}
+		});
+		String datasetName = config.getTiraDatasetName();
+		for (File stateFile : stateFiles) {
+			String filename = stateFile.getName();
+			String username = filename.substring(1, filename.indexOf('-'));
+			List<String> lines = FileUtils.readLines(stateFile, UTF_8);
+			if (lines.isEmpty()) continue;
+			String runId = lines.get(0).split("=")[1].trim();
+			File runDir = new File(tiraPath, String.format(
+					TIRA_RUN_DIR_PATTERN, datasetName, username, runId));
+			File runPrototext = new File(runDir, TIRA_PROTOTEXT_NAME);
+			if (!runPrototext.exists()) continue;
+			String contents = FileUtils.readFileToString(runPrototext, UTF_8);
+			if (contents.contains(accessToken)) {
+				return runDir;
+			}
+		}
+		return null;
+	}
+
+	public File getOutputFile(String accessToken) {
+		String filename = accessToken + EXT_CSV;
+		return new File(config.getOutputPath(), filename);
+	}
+	
+	/**
+	 * Returns the file the latencies of the client's scores are written to,
+	 * next to the output file.
+	 */
+	public File getLatencyFile(String accessToken) {
+		String filename = accessToken + EXT_LATENCY;
+		return new File(config.getOutputPath(), filename);
+	}
+}
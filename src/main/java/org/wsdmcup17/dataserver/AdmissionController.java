@@ -0,0 +1,232 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
+import org.wsdmcup17.dataserver.revision.RevisionProvider;
+import org.wsdmcup17.dataserver.store.DataStore;
+import org.wsdmcup17.dataserver.util.InputFiles;
+
+/**
+ * Limits the number of sessions that run at the same time and the memory
+ * they are estimated to use. Sessions exceeding these limits wait in a
+ * bounded queue and are started in the order they have arrived as soon as
+ * running sessions end. If the queue is full, sessions are refused.
+ */
+public class AdmissionController {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(AdmissionController.class);
+	
+	private static final String
+		LOG_MSG_LIMITS = "Admitting at most %d sessions with %d MB " +
+			"(%d MB per session), queueing at most %d sessions.",
+		LOG_MSG_QUEUED = "Queueing session from %s (%d running, %d queued).",
+		LOG_MSG_REFUSED = "Refusing session from %s (%d running, %d queued).",
+		METRIC_RUNNING_SESSIONS = "server.runningSessions",
+		METRIC_QUEUED_SESSIONS = "server.queuedSessions";
+	
+	private static final long
+		MB = 1024 * 1024,
+		// Estimate for queues, parser buffers and decompressor state
+		BASE_SESSION_MEMORY = 64 * MB;
+	
+	/**
+	 * A session waiting for admission.
+	 */
+	private static class QueuedSession {
+		Session session;
+		long queueingStartNanos;
+	}
+	
+	/**
+	 * A session that can be admitted.
+	 */
+	public interface Session {
+		
+		/**
+		 * Returns a description of the client for logging.
+		 */
+		String getClient();
+		
+		/**
+		 * Starts the session. The controller must be notified by
+		 * {@link AdmissionController#release()} when the session has ended.
+		 * 
+		 * @param queueingMillis
+		 *            the time the session has waited for admission
+		 */
+		void start(long queueingMillis);
+		
+		/**
+		 * Refuses the session, e.g., by closing the connection.
+		 */
+		void refuse();
+	}
+	
+	private int maxSessions;
+	private long memoryBudget;
+	private long sessionMemory;
+	private int maxQueuedSessions;
+	
+	private ReentrantLock lock = new ReentrantLock();
+	private Deque<QueuedSession> queue = new ArrayDeque<>();
+	private int runningSessions = 0;
+	
+	/**
+	 * @param memoryBudget
+	 *            the memory all running sessions may use in bytes or 0 for no
+	 *            limit
+	 * @param sessionMemory
+	 *            the estimated memory of a session in bytes
+	 */
+	public AdmissionController(int maxSessions, long memoryBudget,
+			long sessionMemory, int maxQueuedSessions) {
+		this.maxSessions = maxSessions;
+		this.memoryBudget = memoryBudget;
+		this.sessionMemory = sessionMemory;
+		this.maxQueuedSessions = maxQueuedSessions;
+		if (memoryBudget > 0) {
+			// At least one session always runs.
+			this.maxSessions = (int) Math.max(1,
+				Math.min(maxSessions, memoryBudget / sessionMemory));
+		}
+		LOG.info(String.format(LOG_MSG_LIMITS, this.maxSessions,
+				memoryBudget / MB, sessionMemory / MB, maxQueuedSessions));
+	}
+	
+	/**
+	 * Creates the controller configured for the given data and registers
+	 * its metrics.
+	 */
+	public static AdmissionController create(Configuration config,
+			DataStore dataStore) throws IOException {
+		AdmissionController controller = new AdmissionController(
+				config.getMaxSessions(), config.getMemoryBudget(),
+				estimateSessionMemory(config, dataStore),
+				config.getMaxQueuedSessions());
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		registry.register(METRIC_RUNNING_SESSIONS,
+				controller::getRunningSessions);
+		registry.register(METRIC_QUEUED_SESSIONS,
+				controller::getQueuedSessions);
+		return controller;
+	}
+	
+	public int getRunningSessions() {
+		lock.lock();
+		try {
+			return runningSessions;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	public int getQueuedSessions() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Estimates the memory a session uses at most, which is dominated by the
+	 * data decompressed ahead of time: the buffer for a 7z revision file and
+	 * the chunks of chunked revision and meta files (unless the data is read
+	 * from a cache or a framed dataset).
+	 */
+	static long estimateSessionMemory(Configuration config,
+			DataStore dataStore) throws IOException {
+		long memory = BASE_SESSION_MEMORY;
+		if (dataStore.getFramedDataset() != null) {
+			return memory;
+		}
+		int readAheadSize = config.getReadAheadBufferSize();
+		if (config.getIoThreads() > 0) {
+			// The event-driven server decompresses 7z files on demand.
+			if (dataStore.getRevisions() == null) {
+				memory += InputFiles.getMaxBufferSize(
+						config.getRevisionFile(), readAheadSize);
+			}
+		}
+		else {
+			memory += RevisionProvider.getMaxBufferSize(
+					config.getRevisionFile(), dataStore.getRevisions(),
+					readAheadSize);
+		}
+		if (dataStore.getMetadata() == null) {
+			memory += InputFiles.getMaxBufferSize(
+					config.getMetadataFile(), readAheadSize);
+		}
+		return memory;
+	}
+	
+	/**
+	 * Starts the given session if the limits allow for it, queues it, or
+	 * refuses it if the queue is full.
+	 */
+	public void admit(Session session) {
+		boolean isAdmitted = false;
+		boolean isQueued = false;
+		lock.lock();
+		try {
+			if (runningSessions < maxSessions) {
+				runningSessions++;
+				isAdmitted = true;
+			}
+			else if (queue.size() < maxQueuedSessions) {
+				QueuedSession queuedSession = new QueuedSession();
+				queuedSession.session = session;
+				queuedSession.queueingStartNanos = System.nanoTime();
+				queue.addLast(queuedSession);
+				isQueued = true;
+				LOG.info(String.format(LOG_MSG_QUEUED, session.getClient(),
+						runningSessions, queue.size()));
+			}
+			else {
+				LOG.info(String.format(LOG_MSG_REFUSED, session.getClient(),
+						runningSessions, queue.size()));
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		if (isAdmitted) {
+			session.start(0);
+		}
+		else if (!isQueued) {
+			session.refuse();
+		}
+	}
+	
+	/**
+	 * Notifies the controller that a session has ended, which starts the next
+	 * queued session, if any.
+	 */
+	public void release() {
+		QueuedSession next;
+		lock.lock();
+		try {
+			next = queue.pollFirst();
+			if (next == null) {
+				runningSessions--;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		if (next != null) {
+			long queueingNanos = System.nanoTime() - next.queueingStartNanos;
+			next.session.start(queueingNanos / 1000000);
+		}
+	}
+}
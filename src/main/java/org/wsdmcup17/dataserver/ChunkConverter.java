@@ -0,0 +1,123 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.wsdmcup17.dataserver.chunked.ChunkCodec;
+import org.wsdmcup17.dataserver.chunked.ChunkedFile;
+import org.wsdmcup17.dataserver.chunked.ChunkedFileWriter;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+import org.wsdmcup17.dataserver.util.LineParser;
+import org.wsdmcup17.dataserver.util.SevenZInputStream;
+
+/**
+ * Converts a 7z revision or meta file to a {@link ChunkedFile}, which the
+ * server can decompress in parallel. The server accepts chunked files wherever
+ * it accepts 7z files.
+ */
+public class ChunkConverter {
+	
+	private static final String
+		CHUNK_CONVERTER = "WSDM Cup 2017 Chunk Converter",
+		OPT_INPUT_FILE = "i",
+		OPT_INPUT_FILE_LONG = "input",
+		OPT_INPUT_FILE_DESC = "Compressed 7z input file",
+		OPT_OUTPUT_FILE = "o",
+		OPT_OUTPUT_FILE_LONG = "output",
+		OPT_OUTPUT_FILE_DESC = "Chunked output file",
+		OPT_TYPE = "t",
+		OPT_TYPE_LONG = "type",
+		OPT_TYPE_DESC = "Type of the input file (revision or metadata)",
+		OPT_CODEC = "c",
+		OPT_CODEC_LONG = "codec",
+		OPT_CODEC_DESC = "Codec (XZ or DEFLATE, default: XZ)",
+		OPT_CHUNK_SIZE = "s",
+		OPT_CHUNK_SIZE_LONG = "chunksize",
+		OPT_CHUNK_SIZE_DESC = "Uncompressed chunk size in MB (default: 4)",
+		TYPE_REVISION = "revision",
+		TYPE_METADATA = "metadata",
+		ERROR_MSG_UNKNOWN_TYPE = "Unknown type: %s";
+	
+	private static final int
+		DEFAULT_CHUNK_SIZE_MB = 4;
+	
+	public static void main(String[] args) throws IOException {
+		CommandLine cmd = parseArgs(args);
+		File inputFile = new File(cmd.getOptionValue(OPT_INPUT_FILE));
+		File outputFile = new File(cmd.getOptionValue(OPT_OUTPUT_FILE));
+		String type = cmd.getOptionValue(OPT_TYPE);
+		ChunkCodec codec = ChunkCodec.valueOf(
+				cmd.getOptionValue(OPT_CODEC, ChunkCodec.XZ.name()));
+		int chunkSize = 1024 * 1024 * Integer.parseInt(cmd.getOptionValue(
+				OPT_CHUNK_SIZE, Integer.toString(DEFAULT_CHUNK_SIZE_MB)));
+		
+		try (
+			InputStream inputStream = new SevenZInputStream(inputFile);
+			ChunkedFileWriter writer =
+					new ChunkedFileWriter(outputFile, codec, chunkSize);
+		) {
+			LineParser parser;
+			if (TYPE_REVISION.equals(type)) {
+				parser = new RevisionParser(writer, inputStream);
+			}
+			else if (TYPE_METADATA.equals(type)) {
+				parser = new MetadataParser(writer, inputStream);
+			}
+			else {
+				String e = String.format(ERROR_MSG_UNKNOWN_TYPE, type);
+				throw new IllegalArgumentException(e);
+			}
+			parser.consumeFile();
+		}
+	}
+	
+	private static CommandLine parseArgs(String[] args) {
+		Options options = new Options();
+		
+		Option input = new Option(OPT_INPUT_FILE, OPT_INPUT_FILE_LONG,
+				true, OPT_INPUT_FILE_DESC);
+		input.setRequired(true);
+		options.addOption(input);
+		
+		Option output = new Option(OPT_OUTPUT_FILE, OPT_OUTPUT_FILE_LONG,
+				true, OPT_OUTPUT_FILE_DESC);
+		output.setRequired(true);
+		options.addOption(output);
+		
+		Option type = new Option(OPT_TYPE, OPT_TYPE_LONG, true, OPT_TYPE_DESC);
+		type.setRequired(true);
+		options.addOption(type);
+		
+		Option codec = new Option(OPT_CODEC, OPT_CODEC_LONG, true,
+				OPT_CODEC_DESC);
+		codec.setRequired(false);
+		options.addOption(codec);
+		
+		Option chunkSize = new Option(OPT_CHUNK_SIZE, OPT_CHUNK_SIZE_LONG,
+				true, OPT_CHUNK_SIZE_DESC);
+		chunkSize.setRequired(false);
+		options.addOption(chunkSize);
+		
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd = null;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e) {
+			System.out.println(e.getMessage());
+			formatter.printHelp(CHUNK_CONVERTER, options);
+			System.exit(1);
+		}
+		return cmd;
+	}
+}
@@ -2,6 +2,9 @@ package org.wsdmcup17.dataserver;
 
 import java.io.File;
 
+import org.wsdmcup17.dataserver.result.FsyncPolicy;
+import org.wsdmcup17.dataserver.revision.RevisionProvider;
+
 public class Configuration {
 	
 	private static final String
@@ -15,12 +18,32 @@ public class Configuration {
 	private File tiraPath;
 	private boolean isInProductionMode;
 	private String tiraDatasetName;
+	private File cachePath;
+	private long firstRevisionId = -1;
+	private File framedFile;
+	private int ioThreads = 0;
+	private boolean isUsingVirtualThreads = false;
+	private int maxSessions = 100;
+	private long memoryBudget = 0;
+	private int maxQueuedSessions = 100;
+	private int workerThreads = Runtime.getRuntime().availableProcessors();
+	private int readAheadBufferSize = RevisionProvider.DEFAULT_BUFFER_SIZE;
+	private int metricsPort = 0;
+	private FsyncPolicy fsyncPolicy = FsyncPolicy.SESSION_END;
+	private int resultCommitMillis = 200;
+	private boolean isTcpNoDelay = true;
+	private int sendBufferSize = 0;
+	private int receiveBufferSize = 0;
+	private int maxWindowSize = SessionResources.BACKPRESSURE_WINDOW;
+	private int maxCompressionLevel = 6;
 	
 	public Configuration(String revisionFileName, String metadataFileName,
 			String outputPath, int port, String tiraPath,
 			String tiraDatasetName) {
-		this.revisionFile = new File(revisionFileName);
-		this.metadataFile = new File(metadataFileName);
+		this.revisionFile =
+				revisionFileName != null ? new File(revisionFileName) : null;
+		this.metadataFile =
+				metadataFileName != null ? new File(metadataFileName) : null;
 		this.outputPath = new File(outputPath);
 		this.port = port;
 		this.tiraPath = tiraPath != null ? new File(tiraPath) : null;
@@ -63,4 +86,219 @@ public class Configuration {
 	public boolean isInProductionMode() {
 		return isInProductionMode;
 	}
+	
+	/**
+	 * Returns the directory for decompressed input files shared by all
+	 * sessions, or <code>null</code> if every session decompresses the input
+	 * files on its own.
+	 */
+	public File getCachePath() {
+		return cachePath;
+	}
+	
+	public void setCachePath(String cachePath) {
+		this.cachePath = cachePath != null ? new File(cachePath) : null;
+	}
+	
+	/**
+	 * Returns the ID of the revision every session starts with, or -1 if
+	 * sessions start with the first revision of the revision file.
+	 */
+	public long getFirstRevisionId() {
+		return firstRevisionId;
+	}
+	
+	public void setFirstRevisionId(long firstRevisionId) {
+		this.firstRevisionId = firstRevisionId;
+	}
+	
+	/**
+	 * Returns the framed dataset created by the transcoder, or
+	 * <code>null</code> if sessions read the revision and metadata files.
+	 */
+	public File getFramedFile() {
+		return framedFile;
+	}
+	
+	public void setFramedFile(String framedFile) {
+		this.framedFile = framedFile != null ? new File(framedFile) : null;
+	}
+	
+	/**
+	 * Returns the number of selector threads of the event-driven server, or
+	 * 0 if every session is handled by threads of its own.
+	 */
+	public int getIoThreads() {
+		return ioThreads;
+	}
+	
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+	
+	/**
+	 * Returns whether the threads of every session are virtual threads
+	 * rather than platform threads.
+	 */
+	public boolean isUsingVirtualThreads() {
+		return isUsingVirtualThreads;
+	}
+	
+	public void setUsingVirtualThreads(boolean isUsingVirtualThreads) {
+		this.isUsingVirtualThreads = isUsingVirtualThreads;
+	}
+	
+	/**
+	 * Returns the maximum number of sessions running at the same time.
+	 */
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+	
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+	
+	/**
+	 * Returns the memory in bytes all running sessions may use together, or
+	 * 0 if there is no limit.
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * Returns the maximum number of sessions waiting for admission. Further
+	 * connections are refused.
+	 */
+	public int getMaxQueuedSessions() {
+		return maxQueuedSessions;
+	}
+	
+	public void setMaxQueuedSessions(int maxQueuedSessions) {
+		this.maxQueuedSessions = maxQueuedSessions;
+	}
+	
+	/**
+	 * Returns the number of threads of the event-driven server that read and
+	 * prepare the data sent to the clients.
+	 */
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+	
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+	
+	/**
+	 * Returns the number of bytes a session decompresses a 7z revision file
+	 * ahead of time at most.
+	 */
+	public int getReadAheadBufferSize() {
+		return readAheadBufferSize;
+	}
+	
+	public void setReadAheadBufferSize(int readAheadBufferSize) {
+		this.readAheadBufferSize = readAheadBufferSize;
+	}
+	
+	/**
+	 * Returns the local port of the plain-text metrics endpoint, or 0 if the
+	 * metrics are only exposed via JMX.
+	 */
+	public int getMetricsPort() {
+		return metricsPort;
+	}
+	
+	public void setMetricsPort(int metricsPort) {
+		this.metricsPort = metricsPort;
+	}
+	
+	/**
+	 * Returns when the result files are forced to disk.
+	 */
+	public FsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+	
+	public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+		this.fsyncPolicy = fsyncPolicy;
+	}
+	
+	/**
+	 * Returns the time after which scores are written to the result file at
+	 * the latest, and forced to disk with {@link FsyncPolicy#PERIODIC}.
+	 */
+	public int getResultCommitMillis() {
+		return resultCommitMillis;
+	}
+	
+	public void setResultCommitMillis(int resultCommitMillis) {
+		this.resultCommitMillis = resultCommitMillis;
+	}
+	
+	/**
+	 * Returns whether Nagle's algorithm is disabled on client sockets, which
+	 * is the default since the server already writes the frames in groups.
+	 */
+	public boolean isTcpNoDelay() {
+		return isTcpNoDelay;
+	}
+	
+	public void setTcpNoDelay(boolean isTcpNoDelay) {
+		this.isTcpNoDelay = isTcpNoDelay;
+	}
+	
+	/**
+	 * Returns the size of the send buffer of client sockets in bytes, or 0 to
+	 * keep the default of the operating system.
+	 */
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+	
+	public void setSendBufferSize(int sendBufferSize) {
+		this.sendBufferSize = sendBufferSize;
+	}
+	
+	/**
+	 * Returns the size of the receive buffer of client sockets in bytes, or 0
+	 * to keep the default of the operating system.
+	 */
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+	
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+	
+	/**
+	 * Returns the largest backpressure window a client may request in the
+	 * handshake.
+	 */
+	public int getMaxWindowSize() {
+		return maxWindowSize;
+	}
+	
+	public void setMaxWindowSize(int maxWindowSize) {
+		this.maxWindowSize = maxWindowSize;
+	}
+	
+	/**
+	 * Returns the highest Deflate level a client may request in the
+	 * handshake, or 0 if frames are never compressed.
+	 */
+	public int getMaxCompressionLevel() {
+		return maxCompressionLevel;
+	}
+	
+	public void setMaxCompressionLevel(int maxCompressionLevel) {
+		this.maxCompressionLevel = maxCompressionLevel;
+	}
 }
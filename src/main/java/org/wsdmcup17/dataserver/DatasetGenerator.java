@@ -0,0 +1,112 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.wsdmcup17.dataserver.dataset.SyntheticDataset;
+import org.wsdmcup17.dataserver.util.Distribution;
+
+/**
+ * Generates a 7z revision file and a 7z meta file with synthetic data, which
+ * the server accepts like the original files.
+ */
+public class DatasetGenerator {
+	
+	private static final String
+		DATASET_GENERATOR = "WSDM Cup 2017 Dataset Generator",
+		OPT_REVISION_FILE = "r",
+		OPT_REVISION_FILE_LONG = "revision",
+		OPT_REVISION_FILE_DESC = "Compressed 7z revision output file",
+		OPT_METADATA_FILE = "m",
+		OPT_METADATA_FILE_LONG = "metadata",
+		OPT_METADATA_FILE_DESC = "Compressed 7z meta output file",
+		OPT_REVISIONS = "n",
+		OPT_REVISIONS_LONG = "revisions",
+		OPT_REVISIONS_DESC = "Number of revisions",
+		OPT_SEED = "s",
+		OPT_SEED_LONG = "seed",
+		OPT_SEED_DESC = "Seed of the random data (default: 0)",
+		OPT_TEXT_LENGTH = "t",
+		OPT_TEXT_LENGTH_LONG = "textlength",
+		OPT_TEXT_LENGTH_DESC = "Distribution of the characters per revision " +
+			"text, fixed:<n>, uniform:<min>-<max>, or exponential:<mean> " +
+			"(default: exponential:2000)",
+		OPT_PAGE_LENGTH = "g",
+		OPT_PAGE_LENGTH_LONG = "pagelength",
+		OPT_PAGE_LENGTH_DESC = "Distribution of the revisions per page " +
+			"(default: exponential:3)",
+		DEFAULT_SEED = "0",
+		DEFAULT_TEXT_LENGTH = "exponential:2000",
+		DEFAULT_PAGE_LENGTH = "exponential:3",
+		LOG_MSG_DONE = "Wrote %d revisions to %s and %s.";
+	
+	public static void main(String[] args) throws IOException {
+		CommandLine cmd = parseArgs(args);
+		File revisionFile = new File(cmd.getOptionValue(OPT_REVISION_FILE));
+		File metadataFile = new File(cmd.getOptionValue(OPT_METADATA_FILE));
+		long revisions = Long.parseLong(cmd.getOptionValue(OPT_REVISIONS));
+		long seed = Long.parseLong(cmd.getOptionValue(OPT_SEED, DEFAULT_SEED));
+		Distribution textLength = Distribution.parse(
+				cmd.getOptionValue(OPT_TEXT_LENGTH, DEFAULT_TEXT_LENGTH));
+		Distribution pageLength = Distribution.parse(
+				cmd.getOptionValue(OPT_PAGE_LENGTH, DEFAULT_PAGE_LENGTH));
+		
+		new SyntheticDataset(seed, revisions, textLength, pageLength)
+				.writeSevenZFiles(revisionFile, metadataFile);
+		System.out.println(String.format(
+				LOG_MSG_DONE, revisions, revisionFile, metadataFile));
+	}
+	
+	private static CommandLine parseArgs(String[] args) {
+		Options options = new Options();
+		
+		Option revision = new Option(OPT_REVISION_FILE,
+				OPT_REVISION_FILE_LONG, true, OPT_REVISION_FILE_DESC);
+		revision.setRequired(true);
+		options.addOption(revision);
+		
+		Option metadata = new Option(OPT_METADATA_FILE,
+				OPT_METADATA_FILE_LONG, true, OPT_METADATA_FILE_DESC);
+		metadata.setRequired(true);
+		options.addOption(metadata);
+		
+		Option revisions = new Option(OPT_REVISIONS, OPT_REVISIONS_LONG,
+				true, OPT_REVISIONS_DESC);
+		revisions.setRequired(true);
+		options.addOption(revisions);
+		
+		Option seed = new Option(OPT_SEED, OPT_SEED_LONG, true, OPT_SEED_DESC);
+		seed.setRequired(false);
+		options.addOption(seed);
+		
+		Option textLength = new Option(OPT_TEXT_LENGTH, OPT_TEXT_LENGTH_LONG,
+				true, OPT_TEXT_LENGTH_DESC);
+		textLength.setRequired(false);
+		options.addOption(textLength);
+		
+		Option pageLength = new Option(OPT_PAGE_LENGTH, OPT_PAGE_LENGTH_LONG,
+				true, OPT_PAGE_LENGTH_DESC);
+		pageLength.setRequired(false);
+		options.addOption(pageLength);
+		
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd = null;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e) {
+			System.out.println(e.getMessage());
+			formatter.printHelp(DATASET_GENERATOR, options);
+			System.exit(1);
+		}
+		return cmd;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.zip.Deflater;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -13,6 +14,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.result.FsyncPolicy;
 
 import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.Logger;
@@ -52,6 +54,83 @@ public class Main {
 		OPT_TIRA_DATASET_NAME = "d",
 		OPT_TIRA_DATASET_NAME_LONG = "datasetname",
 		OPT_TIRA_DATASET_NAME_DESC = "TIRA dataset name",
+		OPT_CACHE_PATH = "c",
+		OPT_CACHE_PATH_LONG = "cachepath",
+		OPT_CACHE_PATH_DESC = "Path for decompressed input files",
+		OPT_FIRST_REVISION = "f",
+		OPT_FIRST_REVISION_LONG = "firstrevision",
+		OPT_FIRST_REVISION_DESC = "ID of the revision sessions start with",
+		OPT_FRAMED_FILE = "x",
+		OPT_FRAMED_FILE_LONG = "framedfile",
+		OPT_FRAMED_FILE_DESC =
+			"Framed dataset to serve instead of revision and metadata file",
+		OPT_IO_THREADS = "n",
+		OPT_IO_THREADS_LONG = "iothreads",
+		OPT_IO_THREADS_DESC =
+			"Number of selector threads (enables the event-driven server)",
+		OPT_WORKER_THREADS = "w",
+		OPT_WORKER_THREADS_LONG = "workerthreads",
+		OPT_WORKER_THREADS_DESC = "Number of worker threads of the " +
+			"event-driven server (default: number of cores)",
+		OPT_VIRTUAL_THREADS = "v",
+		OPT_VIRTUAL_THREADS_LONG = "virtualthreads",
+		OPT_VIRTUAL_THREADS_DESC =
+			"Run sessions on virtual threads (requires Java 21)",
+		OPT_MAX_SESSIONS = "s",
+		OPT_MAX_SESSIONS_LONG = "maxsessions",
+		OPT_MAX_SESSIONS_DESC =
+			"Maximum number of concurrent sessions (default: 100)",
+		OPT_MEMORY_BUDGET = "b",
+		OPT_MEMORY_BUDGET_LONG = "memorybudget",
+		OPT_MEMORY_BUDGET_DESC =
+			"Memory in MB all concurrent sessions may use (default: no limit)",
+		OPT_MAX_QUEUED_SESSIONS = "q",
+		OPT_MAX_QUEUED_SESSIONS_LONG = "queuelength",
+		OPT_MAX_QUEUED_SESSIONS_DESC =
+			"Maximum number of sessions waiting for admission (default: 100)",
+		OPT_READ_AHEAD = "a",
+		OPT_READ_AHEAD_LONG = "readahead",
+		OPT_READ_AHEAD_DESC = "Memory in MB for decompressing an input " +
+			"file ahead of time per session (default: 512)",
+		OPT_METRICS_PORT = "e",
+		OPT_METRICS_PORT_LONG = "metricsport",
+		OPT_METRICS_PORT_DESC =
+			"Local port of the plain-text metrics endpoint (default: none)",
+		OPT_FSYNC_POLICY = "y",
+		OPT_FSYNC_POLICY_LONG = "fsync",
+		OPT_FSYNC_POLICY_DESC = "When result files are forced to disk " +
+			"(NONE, PERIODIC, or SESSION_END, default: SESSION_END)",
+		OPT_COMMIT_INTERVAL = "g",
+		OPT_COMMIT_INTERVAL_LONG = "commitinterval",
+		OPT_COMMIT_INTERVAL_DESC = "Milliseconds after which scores are " +
+			"written to the result file at the latest (default: 200)",
+		OPT_NAGLE = "z",
+		OPT_NAGLE_LONG = "nagle",
+		OPT_NAGLE_DESC = "Enable Nagle's algorithm on client sockets",
+		OPT_SEND_BUFFER = "l",
+		OPT_SEND_BUFFER_LONG = "sendbuffer",
+		OPT_SEND_BUFFER_DESC =
+			"Send buffer of client sockets in KB (default: system default)",
+		OPT_RECEIVE_BUFFER = "u",
+		OPT_RECEIVE_BUFFER_LONG = "receivebuffer",
+		OPT_RECEIVE_BUFFER_DESC =
+			"Receive buffer of client sockets in KB (default: system default)",
+		OPT_MAX_WINDOW = "k",
+		OPT_MAX_WINDOW_LONG = "maxwindow",
+		OPT_MAX_WINDOW_DESC = "Largest backpressure window clients may " +
+			"request (default: 16)",
+		OPT_MAX_COMPRESSION_LEVEL = "j",
+		OPT_MAX_COMPRESSION_LEVEL_LONG = "maxlevel",
+		OPT_MAX_COMPRESSION_LEVEL_DESC = "Highest Deflate level clients " +
+			"may request, 0 disables compression (default: 6)",
+		ERROR_MSG_MISSING_INPUT =
+			"Missing required options: r, m (or x)",
+		ERROR_MSG_INVALID_COMMIT_INTERVAL =
+			"The commit interval (g) must be positive",
+		ERROR_MSG_INVALID_MAX_WINDOW =
+			"The largest backpressure window (k) must be positive",
+		ERROR_MSG_INVALID_MAX_COMPRESSION_LEVEL =
+			"The highest Deflate level (j) must be between 0 and 9",
 		LOG_PATTERN = "[%d{yyyy-MM-dd HH:mm:ss}] [%-5p] [%t] [%c{0}] %m%n",
 		UTF_8 = "UTF-8",
 		EXT_LOG = ".log";
@@ -71,6 +150,66 @@ public class Main {
 			cmd.getOptionValue(OPT_TIRA_PATH),
 			cmd.getOptionValue(OPT_TIRA_DATASET_NAME)
 		);
+		config.setCachePath(cmd.getOptionValue(OPT_CACHE_PATH));
+		config.setFramedFile(cmd.getOptionValue(OPT_FRAMED_FILE));
+		if (cmd.hasOption(OPT_IO_THREADS)) {
+			config.setIoThreads(
+				Integer.parseInt(cmd.getOptionValue(OPT_IO_THREADS)));
+		}
+		config.setUsingVirtualThreads(cmd.hasOption(OPT_VIRTUAL_THREADS));
+		if (cmd.hasOption(OPT_MAX_SESSIONS)) {
+			config.setMaxSessions(
+				Integer.parseInt(cmd.getOptionValue(OPT_MAX_SESSIONS)));
+		}
+		if (cmd.hasOption(OPT_MEMORY_BUDGET)) {
+			config.setMemoryBudget(1024L * 1024L *
+				Long.parseLong(cmd.getOptionValue(OPT_MEMORY_BUDGET)));
+		}
+		if (cmd.hasOption(OPT_MAX_QUEUED_SESSIONS)) {
+			config.setMaxQueuedSessions(
+				Integer.parseInt(cmd.getOptionValue(OPT_MAX_QUEUED_SESSIONS)));
+		}
+		if (cmd.hasOption(OPT_READ_AHEAD)) {
+			config.setReadAheadBufferSize(1024 * 1024 *
+				Integer.parseInt(cmd.getOptionValue(OPT_READ_AHEAD)));
+		}
+		if (cmd.hasOption(OPT_METRICS_PORT)) {
+			config.setMetricsPort(
+				Integer.parseInt(cmd.getOptionValue(OPT_METRICS_PORT)));
+		}
+		if (cmd.hasOption(OPT_FSYNC_POLICY)) {
+			config.setFsyncPolicy(
+				FsyncPolicy.valueOf(cmd.getOptionValue(OPT_FSYNC_POLICY)));
+		}
+		if (cmd.hasOption(OPT_COMMIT_INTERVAL)) {
+			config.setResultCommitMillis(
+				Integer.parseInt(cmd.getOptionValue(OPT_COMMIT_INTERVAL)));
+		}
+		config.setTcpNoDelay(!cmd.hasOption(OPT_NAGLE));
+		if (cmd.hasOption(OPT_SEND_BUFFER)) {
+			config.setSendBufferSize(1024 *
+				Integer.parseInt(cmd.getOptionValue(OPT_SEND_BUFFER)));
+		}
+		if (cmd.hasOption(OPT_RECEIVE_BUFFER)) {
+			config.setReceiveBufferSize(1024 *
+				Integer.parseInt(cmd.getOptionValue(OPT_RECEIVE_BUFFER)));
+		}
+		if (cmd.hasOption(OPT_MAX_WINDOW)) {
+			config.setMaxWindowSize(
+				Integer.parseInt(cmd.getOptionValue(OPT_MAX_WINDOW)));
+		}
+		if (cmd.hasOption(OPT_MAX_COMPRESSION_LEVEL)) {
+			config.setMaxCompressionLevel(Integer.parseInt(
+				cmd.getOptionValue(OPT_MAX_COMPRESSION_LEVEL)));
+		}
+		if (cmd.hasOption(OPT_WORKER_THREADS)) {
+			config.setWorkerThreads(
+				Integer.parseInt(cmd.getOptionValue(OPT_WORKER_THREADS)));
+		}
+		if (cmd.hasOption(OPT_FIRST_REVISION)) {
+			config.setFirstRevisionId(
+				Long.parseLong(cmd.getOptionValue(OPT_FIRST_REVISION)));
+		}
 		initLogger(config);
 		try {
 			Server server = new Server(config);
@@ -86,12 +225,12 @@ public class Main {
 	
 		Option input = new Option(OPT_REVISION_FILE, OPT_REVISION_FILE_LONG,
 				true, OPT_REVISION_FILE_DESC);
-		input.setRequired(true);
+		input.setRequired(false);
 		options.addOption(input);
 		
 		Option metadata = new Option(OPT_METADATA_FILE, OPT_METADATA_FILE_LONG,
 				true, OPT_METADATA_FILE_DESC);
-		metadata.setRequired(true);
+		metadata.setRequired(false);
 		options.addOption(metadata);
 	
 		Option outputPath = new Option(OPT_OUTPUT_PATH, OPT_OUTPUT_PATH_LONG,
@@ -112,6 +251,98 @@ public class Main {
 				OPT_TIRA_DATASET_NAME_LONG, true, OPT_TIRA_DATASET_NAME_DESC);
 		tiraDatasetName.setRequired(false);
 		options.addOption(tiraDatasetName);
+		
+		Option cachePath = new Option(OPT_CACHE_PATH, OPT_CACHE_PATH_LONG,
+				true, OPT_CACHE_PATH_DESC);
+		cachePath.setRequired(false);
+		options.addOption(cachePath);
+		
+		Option firstRevision = new Option(OPT_FIRST_REVISION,
+				OPT_FIRST_REVISION_LONG, true, OPT_FIRST_REVISION_DESC);
+		firstRevision.setRequired(false);
+		options.addOption(firstRevision);
+		
+		Option framedFile = new Option(OPT_FRAMED_FILE, OPT_FRAMED_FILE_LONG,
+				true, OPT_FRAMED_FILE_DESC);
+		framedFile.setRequired(false);
+		options.addOption(framedFile);
+		
+		Option ioThreads = new Option(OPT_IO_THREADS, OPT_IO_THREADS_LONG,
+				true, OPT_IO_THREADS_DESC);
+		ioThreads.setRequired(false);
+		options.addOption(ioThreads);
+		
+		Option workerThreads = new Option(OPT_WORKER_THREADS,
+				OPT_WORKER_THREADS_LONG, true, OPT_WORKER_THREADS_DESC);
+		workerThreads.setRequired(false);
+		options.addOption(workerThreads);
+		
+		Option virtualThreads = new Option(OPT_VIRTUAL_THREADS,
+				OPT_VIRTUAL_THREADS_LONG, false, OPT_VIRTUAL_THREADS_DESC);
+		virtualThreads.setRequired(false);
+		options.addOption(virtualThreads);
+		
+		Option maxSessions = new Option(OPT_MAX_SESSIONS,
+				OPT_MAX_SESSIONS_LONG, true, OPT_MAX_SESSIONS_DESC);
+		maxSessions.setRequired(false);
+		options.addOption(maxSessions);
+		
+		Option memoryBudget = new Option(OPT_MEMORY_BUDGET,
+				OPT_MEMORY_BUDGET_LONG, true, OPT_MEMORY_BUDGET_DESC);
+		memoryBudget.setRequired(false);
+		options.addOption(memoryBudget);
+		
+		Option maxQueuedSessions = new Option(OPT_MAX_QUEUED_SESSIONS,
+				OPT_MAX_QUEUED_SESSIONS_LONG, true,
+				OPT_MAX_QUEUED_SESSIONS_DESC);
+		maxQueuedSessions.setRequired(false);
+		options.addOption(maxQueuedSessions);
+		
+		Option readAhead = new Option(OPT_READ_AHEAD, OPT_READ_AHEAD_LONG,
+				true, OPT_READ_AHEAD_DESC);
+		readAhead.setRequired(false);
+		options.addOption(readAhead);
+		
+		Option metricsPort = new Option(OPT_METRICS_PORT,
+				OPT_METRICS_PORT_LONG, true, OPT_METRICS_PORT_DESC);
+		metricsPort.setRequired(false);
+		options.addOption(metricsPort);
+		
+		Option fsyncPolicy = new Option(OPT_FSYNC_POLICY,
+				OPT_FSYNC_POLICY_LONG, true, OPT_FSYNC_POLICY_DESC);
+		fsyncPolicy.setRequired(false);
+		options.addOption(fsyncPolicy);
+		
+		Option commitInterval = new Option(OPT_COMMIT_INTERVAL,
+				OPT_COMMIT_INTERVAL_LONG, true, OPT_COMMIT_INTERVAL_DESC);
+		commitInterval.setRequired(false);
+		options.addOption(commitInterval);
+		
+		Option nagle = new Option(OPT_NAGLE, OPT_NAGLE_LONG, false,
+				OPT_NAGLE_DESC);
+		nagle.setRequired(false);
+		options.addOption(nagle);
+		
+		Option sendBuffer = new Option(OPT_SEND_BUFFER, OPT_SEND_BUFFER_LONG,
+				true, OPT_SEND_BUFFER_DESC);
+		sendBuffer.setRequired(false);
+		options.addOption(sendBuffer);
+		
+		Option receiveBuffer = new Option(OPT_RECEIVE_BUFFER,
+				OPT_RECEIVE_BUFFER_LONG, true, OPT_RECEIVE_BUFFER_DESC);
+		receiveBuffer.setRequired(false);
+		options.addOption(receiveBuffer);
+		
+		Option maxWindow = new Option(OPT_MAX_WINDOW, OPT_MAX_WINDOW_LONG,
+				true, OPT_MAX_WINDOW_DESC);
+		maxWindow.setRequired(false);
+		options.addOption(maxWindow);
+		
+		Option maxCompressionLevel = new Option(OPT_MAX_COMPRESSION_LEVEL,
+				OPT_MAX_COMPRESSION_LEVEL_LONG, true,
+				OPT_MAX_COMPRESSION_LEVEL_DESC);
+		maxCompressionLevel.setRequired(false);
+		options.addOption(maxCompressionLevel);
 	
 		CommandLineParser parser = new DefaultParser();
 		HelpFormatter formatter = new HelpFormatter();
@@ -119,6 +350,27 @@ public class Main {
 	
 		try {
 			cmd = parser.parse(options, args);
+			if (!cmd.hasOption(OPT_FRAMED_FILE) && (
+					!cmd.hasOption(OPT_REVISION_FILE) ||
+					!cmd.hasOption(OPT_METADATA_FILE))) {
+				throw new ParseException(ERROR_MSG_MISSING_INPUT);
+			}
+			if (cmd.hasOption(OPT_COMMIT_INTERVAL) && Integer.parseInt(
+					cmd.getOptionValue(OPT_COMMIT_INTERVAL)) <= 0) {
+				throw new ParseException(ERROR_MSG_INVALID_COMMIT_INTERVAL);
+			}
+			if (cmd.hasOption(OPT_MAX_WINDOW) && Integer.parseInt(
+					cmd.getOptionValue(OPT_MAX_WINDOW)) <= 0) {
+				throw new ParseException(ERROR_MSG_INVALID_MAX_WINDOW);
+			}
+			if (cmd.hasOption(OPT_MAX_COMPRESSION_LEVEL)) {
+				int level = Integer.parseInt(
+						cmd.getOptionValue(OPT_MAX_COMPRESSION_LEVEL));
+				if (level < 0 || level > Deflater.BEST_COMPRESSION) {
+					throw new ParseException(
+							ERROR_MSG_INVALID_MAX_COMPRESSION_LEVEL);
+				}
+			}
 		} catch (ParseException e) {
 			System.out.println(e.getMessage());
 			formatter.printHelp(WSDM_CUP_2017_DATA_SERVER, options);
@@ -1,30 +1,42 @@
 package org.wsdmcup17.dataserver;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
-import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.wsdmcup17.dataserver.result.Result;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
 import org.wsdmcup17.dataserver.util.BinaryItem;
-import org.wsdmcup17.dataserver.util.SynchronizedBoundedBlockingMapQueue;
+import org.wsdmcup17.dataserver.util.FrameWriter;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
 
+/**
+ * Thread sending revisions and meta data to the client. The bytes of every
+ * item are written to the socket channel as they are, such that items backed
+ * by a memory-mapped file are never copied to the heap. Frames are collected
+ * and written with a single gathering write as soon as no further revision is
+ * ready to be sent, i.e., a queue is empty or the backpressure window is full.
+ * Frames are compressed if the client has agreed on compression.
+ */
 public class Multiplexer implements Runnable {
 	
 	private Map<String,String> contextMap;
 	
-	private OutputStream dataStreamPlain;
+	private FrameWriter frameWriter;
+	
+	private FrameCompressor compressor;
 	
 	BlockingQueue<BinaryItem>
 		revisionQueue,
 		metadataQueue;
 	
-	private SynchronizedBoundedBlockingMapQueue<Long, Result> mapQueue;
+	private BackpressureWindow window;
+	
+	private SessionMetrics metrics;
 	
 	private static final Logger LOG = LoggerFactory.getLogger(Multiplexer.class);
 	
@@ -38,23 +50,36 @@ public class Multiplexer implements Runnable {
 	private static final int
 		DELAY = 10000;
 
+	/**
+	 * @param dataChannel
+	 *            the channel to write to, which is not closed by the
+	 *            multiplexer because we may still receive data from the client
+	 * @param batchSize
+	 *            the number of frames written at once at most
+	 * @param compressor
+	 *            the compressor of the frames or <code>null</code> to send
+	 *            them uncompressed
+	 */
 	public Multiplexer(Map<String,String> contextMap,
-			OutputStream dataStreamPlain,
+			WritableByteChannel dataChannel,
 			BlockingQueue<BinaryItem> revisionQueue,
 			BlockingQueue<BinaryItem> metaDataQueue,
-			SynchronizedBoundedBlockingMapQueue<Long, Result> mapQueue) {
+			BackpressureWindow window, SessionMetrics metrics,
+			int batchSize, FrameCompressor compressor) {
 		this.contextMap = contextMap;
-		this.dataStreamPlain = dataStreamPlain;
+		this.frameWriter = new FrameWriter(dataChannel, batchSize);
+		this.compressor = compressor;
 		this.revisionQueue = revisionQueue;
 		this.metadataQueue = metaDataQueue;
-		this.mapQueue = mapQueue;
+		this.window = window;
+		this.metrics = metrics;
 	}
 
 	@Override
 	public void run() {
 		MDC.setContextMap(contextMap);
 		try {
-			sendData(dataStreamPlain);
+			sendData();
 		} catch (InterruptedException | IOException e) {
 			Thread.currentThread().interrupt();
 			LOG.error("", e);
@@ -62,27 +87,13 @@ public class Multiplexer implements Runnable {
 		}
 	}
 	
-	private void sendData(OutputStream dataStreamPlain)
-	throws InterruptedException, IOException {
-		try(
-			// Closing the output stream would result in closing the socket. We
-			// prevent this because we may still receive data from the client.
-			OutputStream dataStreamShielded =
-					new CloseShieldOutputStream(dataStreamPlain);
-			DataOutputStream dataStream =
-					new DataOutputStream(dataStreamShielded);
-		){
-			sendData(dataStream);
-		}
-	}
-	
-	private void sendData(DataOutputStream dataStream)
-	throws InterruptedException, IOException {
+	private void sendData() throws InterruptedException, IOException {
 		while (!Thread.currentThread().isInterrupted()) {
 			BinaryItem revision = revisionQueue.take();
 			BinaryItem metadata = metadataQueue.take();
 			long revisionId = revision.getRevisionId();
 			if (revisionId == Long.MAX_VALUE) {
+				frameWriter.flush();
 				LOG.debug(LOG_MSG_END_OF_DOCUMENT);
 				break;
 			}
@@ -90,21 +101,26 @@ public class Multiplexer implements Runnable {
 				if (System.currentTimeMillis() - lastMillis > DELAY) {
 					LOG.debug(String.format(
 						LOG_MSG_SENDING_REVISION_AT_QUEUE_SIZE, revisionId,
-						mapQueue.size()));
+						window.size()));
 					lastMillis = System.currentTimeMillis();
 				}
-				Result result = new Result(revisionId, null);
-				mapQueue.put(revision.getRevisionId(), result);
-				sendItem(metadata, dataStream);
-				sendItem(revision, dataStream);
+				window.put(revisionId);
+				int frameLength;
+				if (compressor != null) {
+					frameLength = frameWriter.addFrame(
+							compressor.compress(metadata, revision));
+				}
+				else {
+					frameLength = frameWriter.addFrame(metadata, revision);
+				}
+				metrics.revisionSent(frameLength);
+				// Never block with unsent frames
+				if (revisionQueue.isEmpty() || metadataQueue.isEmpty() ||
+						window.isFull() || frameWriter.isFull()) {
+					frameWriter.flush();
+				}
 			}
 		}
 	}
-	
-	private void sendItem(BinaryItem item, DataOutputStream dataStream)
-	throws IOException {
-		dataStream.writeInt(item.getBytes().length);
-		dataStream.write(item.getBytes(), 0, item.getBytes().length);
-	}
 
 }
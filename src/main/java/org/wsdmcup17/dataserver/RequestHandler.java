@@ -2,36 +2,38 @@ package org.wsdmcup17.dataserver;
 
 import java.io.File;
 
-import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.regex.Pattern;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
 
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.dataset.FramedDatasetProvider;
 import org.wsdmcup17.dataserver.metadata.MetadataProvider;
-import org.wsdmcup17.dataserver.result.Result;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
+import org.wsdmcup17.dataserver.protocol.Handshake;
 import org.wsdmcup17.dataserver.result.ResultParser;
-import org.wsdmcup17.dataserver.result.ResultPrinter;
 import org.wsdmcup17.dataserver.result.ResultRecorder;
 import org.wsdmcup17.dataserver.revision.RevisionProvider;
+import org.wsdmcup17.dataserver.store.DataStore;
+import org.wsdmcup17.dataserver.store.RevisionIndex;
 import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.FrameWriter;
 import org.wsdmcup17.dataserver.util.NonBlockingLineBufferedInputStream;
-import org.wsdmcup17.dataserver.util.SynchronizedBoundedBlockingMapQueue;
-
-import static ch.qos.logback.classic.ClassicConstants.FINALIZE_SESSION_MARKER;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+import org.wsdmcup17.dataserver.util.VirtualThreads;
 
 public class RequestHandler implements Runnable {
 
@@ -43,43 +45,51 @@ public class RequestHandler implements Runnable {
 		MDC_LOG_FILE_KEY = "logFile";
 	
 	private static final String
-		UUID_PATTERN = "^[0-9a-f]{8}-[0-9a-f]{4}-[1-5][0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}$",
-		TIRA_VM_STATE_PATH = "state/virtual-machines",
-		TIRA_CLIENT_IP_PREFIX = "141.54",
-		TIRA_RUN_DIR_PATTERN = "data/runs/%s/%s/%s/",
-		TIRA_PROTOTEXT_NAME = "run.prototext",
 		LOG_MSG_CONNECTED_TO = "Connected to %s.",
-		ERROR_MSG_INVALID_TOKEN = "Invalid access token: %s",
-		ERROR_MSG_INVALID_CLIENT = "Invalid client IP: %s",
 		THREAD_NAME_REVISION_PROVIDER = "%s: Revision Provider",
 		THREAD_NAME_METADATA_PROVIDER = "%s: Metadata Provider",
+		THREAD_NAME_FRAME_PROVIDER = "%s: Frame Provider",
 		THREAD_NAME_RESULT_RECORDER = "%s: Result Recorder",
-		THREAD_NAME_MULTIPLEXER = "%s: Multiplexer",
-		UTF_8 = "UTF-8",
-		EXT_CSV = ".csv",
-		EXT_SANDBOXED = ".sandboxed";
-	
-	private static final int
-		BACKPRESSURE_WINDOW = 16,
-		REVISIONS_TO_BUFFER = 128,
-		STREAM_BUFFER_SIZE = 10000;
+		THREAD_NAME_MULTIPLEXER = "%s: Multiplexer";
 
 	private Configuration config;
+	private DataStore dataStore;
+	private AccessControl accessControl;
+	private SessionResources resources;
+	private SessionContext session;
 	
-	private BlockingQueue<BinaryItem>
-		revisionQueue = new ArrayBlockingQueue<>(REVISIONS_TO_BUFFER),
-		metadataQueue = new ArrayBlockingQueue<>(REVISIONS_TO_BUFFER);
-	
-	private SynchronizedBoundedBlockingMapQueue<Long, Result>
-		mapQueue = new SynchronizedBoundedBlockingMapQueue<>(
-			BACKPRESSURE_WINDOW);
+	// Pooled buffers, released when the session ends
+	private BlockingQueue<BinaryItem> revisionQueue;
+	private BlockingQueue<BinaryItem> metadataQueue;
+	private BackpressureWindow window;
+	private byte[] lineBuffer;
 	
+	private RequestHandlerThreadGroup threadGroup;
+	private SessionMetrics metrics;
 	private Socket clientSocket;
 	private String accessToken;
+	private Handshake handshake;
+	private long queueingMillis;
 	
-	public RequestHandler(Configuration config, Socket clientSocket) {
+	public RequestHandler(Configuration config, DataStore dataStore,
+			SessionResources resources, Socket clientSocket) {
 		this.config = config;
+		this.dataStore = dataStore;
+		this.accessControl = new AccessControl(config);
+		this.resources = resources;
+		this.session = new SessionContext(config, accessControl, resources);
 		this.clientSocket = clientSocket;
+		this.revisionQueue = resources.acquireQueue();
+		this.metadataQueue = resources.acquireQueue();
+		this.window = resources.acquireWindow();
+		this.lineBuffer = resources.acquireLineBuffer();
+	}
+	
+	/**
+	 * Sets the time the session has waited for admission, for logging.
+	 */
+	public void setQueueingMillis(long queueingMillis) {
+		this.queueingMillis = queueingMillis;
 	}
 	
 	@Override
@@ -89,7 +99,7 @@ public class RequestHandler implements Runnable {
 			OutputStream dataStreamPlain = clientSocket.getOutputStream();
 		) {
 			InetAddress clientIP = clientSocket.getInetAddress();
-			checkClientValidity(clientIP);
+			accessControl.checkClientValidity(clientIP);
 			LOG.info(String.format(LOG_MSG_CONNECTED_TO, clientIP));
 			handleRequest(resultStreamPlain, dataStreamPlain);
 		}
@@ -99,34 +109,40 @@ public class RequestHandler implements Runnable {
 			throw new RuntimeException(e);
 		}
 		finally {
+			LOG.debug("Closing socket and releasing buffers...");
 			try {
-				LOG.debug("Closing socket and freeing memory...");
 				clientSocket.close();
-				
-				revisionQueue = null;
-				metadataQueue = null;
-				mapQueue = null;
-				
-				// Several calls are necessary to free heap space
-				System.gc();
-				System.gc();
-				System.gc();
-				
-				for (int i=0; i<6;i++) {
-					try {
-						Thread.sleep(10*1000);
-					} catch (InterruptedException e) {
-						LOG.error("", e);
-					}
-					System.gc();
-				}
-
 			}
 			catch (IOException e) {
 				LOG.error("", e);
 				throw new RuntimeException(e);
 			}
+			finally {
+				// The metrics are removed even if the socket failed to close.
+				session.close();
+				releaseResources();
+			}
+		}
+	}
+
+	/**
+	 * Returns the buffers of the session to the pool. Buffers that may still
+	 * be used by a thread of the session (which has not terminated because
+	 * of an error) are left to the garbage collector instead.
+	 */
+	private void releaseResources() {
+		if (threadGroup != null && !threadGroup.isTerminated()) {
+			return;
 		}
+		resources.releaseQueue(revisionQueue);
+		resources.releaseQueue(metadataQueue);
+		resources.releaseWindow(window);
+		resources.releaseLineBuffer(lineBuffer);
+		session.release();
+		revisionQueue = null;
+		metadataQueue = null;
+		window = null;
+		lineBuffer = null;
 	}
 
 	public void handleRequest(
@@ -135,112 +151,44 @@ public class RequestHandler implements Runnable {
 		try (
 			NonBlockingLineBufferedInputStream resultStream =
 				new NonBlockingLineBufferedInputStream(
-					resultStreamPlain, STREAM_BUFFER_SIZE);
+					resultStreamPlain, lineBuffer);
 		){ 
-			String accessToken = resultStream.readLine();
-			boolean tokenValid = checkTokenValidity(accessToken);
-			if (!tokenValid){
-				String e = String.format(ERROR_MSG_INVALID_TOKEN, accessToken);
-				throw new Error(e);
+			handshake = Handshake.parse(resultStream.readLine());
+			session.begin(handshake, queueingMillis);
+			accessToken = session.getAccessToken();
+			if (session.negotiate(window, FrameWriter.MAX_FRAMES)) {
+				dataStreamPlain.write(handshake.getResponse()
+						.getBytes(StandardCharsets.UTF_8));
 			}
-			
-			this.accessToken = accessToken;
-			MDC.put(MDC_ACCESS_TOKEN_KEY, accessToken);
-			MDC.put(MDC_LOG_FILE_KEY, 
-					Main.getLogFileForToken(
-							getRunDir(accessToken),
-							config.getPort(),
-							accessToken).getPath());
-			LOG.info("Handling request for token " + accessToken + "...");
-			
-			try {
-				File outputFile = getOutputFile(accessToken);
-				handleRequest(resultStream, dataStreamPlain, outputFile);
-			} finally {
-				LOG.info("Handling request for token "
-						+ accessToken + "...done.");
-				LOG.info(FINALIZE_SESSION_MARKER, "Finalize logger...");
-				MDC.remove(MDC_ACCESS_TOKEN_KEY);
-			}
-		}
-	}
-	
-	public boolean checkClientValidity(InetAddress clientIP) throws Error {
-		if (!config.isInProductionMode() ||
-			clientIP.getHostAddress().startsWith(TIRA_CLIENT_IP_PREFIX)) {
-			return true;
+			registerMetrics();
+			handleRequest(resultStream, dataStreamPlain);
 		}
-		String ipAddress = clientIP.getHostAddress();
-		String e = String.format(ERROR_MSG_INVALID_CLIENT, ipAddress);
-		throw new Error(e);
-	}
-
-	private boolean checkTokenValidity(String accessToken) throws IOException {
-		if (!config.isInProductionMode()) return true;
-		if (Pattern.matches(UUID_PATTERN, accessToken) &&
-			!getOutputFile(accessToken).exists() &&
-			isTiraRunInProgress(accessToken)
-		) {
-			return true;
-		}
-		else {
-			return false;
-		}
-	}
-
-	private boolean isTiraRunInProgress(String accessToken) throws IOException {
-		return getRunDir(accessToken) != null;
 	}
 	
-	private File getRunDir(String accessToken) throws IOException {
-		if (!config.isInProductionMode()) return config.getOutputPath();
-		File tiraPath = config.getTiraPath();
-		File vmStates = new File(tiraPath, TIRA_VM_STATE_PATH);
-		File[] stateFiles = vmStates.listFiles(new FilenameFilter() {
-			@Override
-			public boolean accept(File dir, String name) {
-				return name.endsWith(EXT_SANDBOXED);
-			}
-		});
-		String datasetName = config.getTiraDatasetName();
-		for (File stateFile : stateFiles) {
-			String filename = stateFile.getName();
-			String username = filename.substring(1, filename.indexOf('-'));
-			List<String> lines = FileUtils.readLines(stateFile, UTF_8);
-			if (lines.isEmpty()) continue;
-			String runId = lines.get(0).split("=")[1].trim();
-			File runDir = new File(tiraPath, String.format(
-					TIRA_RUN_DIR_PATTERN, datasetName, username, runId));
-			File runPrototext = new File(runDir, TIRA_PROTOTEXT_NAME);
-			if (!runPrototext.exists()) continue;
-			String contents = FileUtils.readFileToString(runPrototext, UTF_8);
-			if (contents.contains(accessToken)) {
-				return runDir;
-			}
-		}
-		return null;
-	}
-
 	private void handleRequest(
 		NonBlockingLineBufferedInputStream resultStream,
-		OutputStream dataStreamPlain, File outputFile
+		OutputStream dataStreamPlain
 	) throws InterruptedException, IOException {
-		try(
-			OutputStream fileOutputStream = new FileOutputStream(outputFile);
-			Writer writer = new OutputStreamWriter(fileOutputStream, UTF_8);
-			CSVPrinter csvPrinter =
-					new CSVPrinter(writer, ResultParser.CSV_FORMAT);
-		) {
-			ThreadGroup threadGroup = 
-					new RequestHandlerThreadGroup(accessToken);
+		ResultRecorder resultRecorder = session.openResultRecorder(
+				window, new ResultParser(resultStream));
+		try (FrameCompressor compressor = session.openCompressor()) {
+			threadGroup = new RequestHandlerThreadGroup(accessToken);
 			
-			Thread revisionThread = createRevisionProviderThread(threadGroup);
-			Thread metadataThread = createMetadataProviderThread(threadGroup);
+			Thread revisionThread;
+			Thread metadataThread;
+			if (dataStore.getFramedDataset() != null) {
+				// A single thread provides both revisions and meta data.
+				revisionThread = createFrameProviderThread(threadGroup);
+				metadataThread = revisionThread;
+			}
+			else {
+				revisionThread = createRevisionProviderThread(threadGroup);
+				metadataThread = createMetadataProviderThread(threadGroup);
+			}
 			Thread resultRecorderThread =
-					createResultRecorderThread(
-							threadGroup, resultStream, csvPrinter);
-			Thread multiplexerThread = 
-					createMultiplexerThread(threadGroup, dataStreamPlain);
+					createResultRecorderThread(threadGroup, resultRecorder);
+			Thread multiplexerThread = createMultiplexerThread(
+					threadGroup, dataStreamPlain, compressor);
 			
 			multiplexerThread.join();
 			revisionThread.join();
@@ -248,84 +196,165 @@ public class RequestHandler implements Runnable {
 			metadataThread.join();
 			clientSocket.shutdownOutput();
 			resultRecorderThread.join();
+			if (compressor != null) {
+				LOG.info(compressor.getSummary());
+			}
 		}
 	}
 
-	private Thread createRevisionProviderThread(ThreadGroup threadGroup) {
+	private void registerMetrics() {
+		metrics = session.openMetrics();
+		metrics.registerGauge(SessionMetrics.REVISION_QUEUE, revisionQueue::size);
+		metrics.registerGauge(SessionMetrics.METADATA_QUEUE, metadataQueue::size);
+		metrics.registerGauge(SessionMetrics.WINDOW, window::size);
+	}
+
+	private Thread createFrameProviderThread(
+			RequestHandlerThreadGroup threadGroup) {
+		FramedDatasetProvider frameProvider =
+				new FramedDatasetProvider(MDC.getCopyOfContextMap(),
+						revisionQueue, metadataQueue,
+						dataStore.getFramedDataset(),
+						config.getFirstRevisionId());
+		Thread frameThread =
+				threadGroup.newThread(frameProvider,
+					String.format(THREAD_NAME_FRAME_PROVIDER, accessToken));
+		frameThread.start();
+		return frameThread;
+	}
+
+	private Thread createRevisionProviderThread(
+			RequestHandlerThreadGroup threadGroup) {
 		RevisionProvider revisionProvider =
 				new RevisionProvider(MDC.getCopyOfContextMap(),
-						threadGroup, revisionQueue, config.getRevisionFile());
+						threadGroup, revisionQueue, config.getRevisionFile(),
+						dataStore.getRevisions(), dataStore.getRevisionIndex(),
+						config.getFirstRevisionId(),
+						config.getReadAheadBufferSize());
 		Thread revisionThread =
-				new Thread(threadGroup, revisionProvider,
+				threadGroup.newThread(revisionProvider,
 					String.format(THREAD_NAME_REVISION_PROVIDER, accessToken));
 		revisionThread.start();
 		return revisionThread;
 	}
 
-	private Thread createMetadataProviderThread(ThreadGroup threadGroup)
+	private Thread createMetadataProviderThread(
+			RequestHandlerThreadGroup threadGroup)
 	throws InterruptedException {
-		BinaryItem firstRevision = null;
-		while (firstRevision == null){
-			firstRevision = revisionQueue.peek();
-			Thread.sleep(100);
-		}
-		long revisionId = firstRevision.getRevisionId();
+		long revisionId = getFirstRevisionId();
 		File metadataFile = config.getMetadataFile();
 		MetadataProvider metadataProvider =
 				new MetadataProvider(MDC.getCopyOfContextMap(),
-						metadataQueue, metadataFile, revisionId);
+						metadataQueue, metadataFile, dataStore.getMetadata(),
+						dataStore.getMetadataIndex(), revisionId,
+						config.getReadAheadBufferSize());
 		Thread metaThread =
-				new Thread(threadGroup, metadataProvider,
+				threadGroup.newThread(metadataProvider,
 					String.format(THREAD_NAME_METADATA_PROVIDER, accessToken));
 		metaThread.start();
 		return metaThread;
 	}
 	
+	private long getFirstRevisionId() throws InterruptedException {
+		if (config.getFirstRevisionId() >= 0) {
+			return config.getFirstRevisionId();
+		}
+		RevisionIndex revisionIndex = dataStore.getRevisionIndex();
+		if (revisionIndex != null && revisionIndex.size() > 0) {
+			return revisionIndex.getRevisionId(0);
+		}
+		BinaryItem firstRevision = null;
+		while (firstRevision == null){
+			firstRevision = revisionQueue.peek();
+			Thread.sleep(100);
+		}
+		return firstRevision.getRevisionId();
+	}
+	
 	private Thread createResultRecorderThread(
-		ThreadGroup threadGroup,
-		NonBlockingLineBufferedInputStream resultStream, CSVPrinter csvPrinter
-	) {
-		ResultParser parser = new ResultParser(resultStream);
-		ResultPrinter printer = new ResultPrinter(csvPrinter);
-		ResultRecorder resultReceiver =
-				new ResultRecorder(MDC.getCopyOfContextMap(),
-						mapQueue, parser, printer);
+			RequestHandlerThreadGroup threadGroup,
+			ResultRecorder resultRecorder) {
 		Thread  resultReceiverThread =
-				new Thread(threadGroup, resultReceiver,
+				threadGroup.newThread(resultRecorder,
 						String.format(THREAD_NAME_RESULT_RECORDER, accessToken));
 		resultReceiverThread.start();
 		return resultReceiverThread;
 	}
 	
 	private Thread createMultiplexerThread(
-			ThreadGroup threadGroup, OutputStream dataStreamPlain) {
+			RequestHandlerThreadGroup threadGroup,
+			OutputStream dataStreamPlain, FrameCompressor compressor) {
+		WritableByteChannel dataChannel = clientSocket.getChannel();
+		if (dataChannel == null) {
+			// Closing the output stream would result in closing the socket. We
+			// prevent this because we may still receive data from the client.
+			dataChannel = Channels.newChannel(
+					new CloseShieldOutputStream(dataStreamPlain));
+		}
 		Multiplexer multiplexer = new Multiplexer(MDC.getCopyOfContextMap(),
-				dataStreamPlain, revisionQueue, metadataQueue, mapQueue);
+				dataChannel, revisionQueue, metadataQueue, window, metrics,
+				handshake.getBatchSize(), compressor);
 		Thread multiplexerThread = 
-				new Thread(threadGroup, multiplexer,
+				threadGroup.newThread(multiplexer,
 						String.format(THREAD_NAME_MULTIPLEXER, accessToken));
 		multiplexerThread.start();
 		return multiplexerThread;
 	}	
 
-	private File getOutputFile(String accessToken) {
-		String filename = accessToken + EXT_CSV;
-		return new File(config.getOutputPath(), filename);
-	}
-	
-	class RequestHandlerThreadGroup extends ThreadGroup{
+	/**
+	 * The threads of a session. If one of them fails, all of them are
+	 * interrupted.
+	 */
+	class RequestHandlerThreadGroup extends ThreadGroup
+	implements ThreadFactory {
+		
+		private List<Thread> threads = new CopyOnWriteArrayList<>();
 
 		public RequestHandlerThreadGroup(String name) {
 			super(name);
 		}
 		
+		/**
+		 * Creates a thread of this session, which is a virtual thread if so
+		 * configured. Virtual threads cannot be members of a thread group but
+		 * are handled the same way.
+		 */
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread;
+			if (config.isUsingVirtualThreads()) {
+				thread = VirtualThreads.newThread(runnable);
+				thread.setUncaughtExceptionHandler(this);
+			}
+			else {
+				thread = new Thread(this, runnable);
+			}
+			threads.add(thread);
+			return thread;
+		}
+		
+		public Thread newThread(Runnable runnable, String name) {
+			Thread thread = newThread(runnable);
+			thread.setName(name);
+			return thread;
+		}
+		
+		/**
+		 * Returns whether all threads of this session have terminated.
+		 */
+		public boolean isTerminated() {
+			for (Thread thread: threads) {
+				if (thread.isAlive()) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
 		@Override
 		public void uncaughtException(Thread t, Throwable e) {
 			LOG.error("Uncaught Exception in Thread " + t.getName(), e);
 			
-			Thread[] threads = new Thread[this.activeCount()];
-			
-			this.enumerate(threads);
 			for (Thread thread: threads){
 				thread.interrupt();
 			}
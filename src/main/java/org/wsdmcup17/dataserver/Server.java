@@ -1,13 +1,23 @@
 package org.wsdmcup17.dataserver;
 
-import java.net.ServerSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.metrics.MetricsEndpoint;
+import org.wsdmcup17.dataserver.metrics.MetricsMBean;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
+import org.wsdmcup17.dataserver.nio.NioServer;
+import org.wsdmcup17.dataserver.store.DataStore;
+import org.wsdmcup17.dataserver.util.VirtualThreads;
 
 public class Server {
 
@@ -15,7 +25,10 @@ public class Server {
 		LOG = LoggerFactory.getLogger(Server.class);
 	
 	private static final String
-		LOG_MSG_LISTENING_ON = "Listening on port %s.";
+		LOG_MSG_LISTENING_ON = "Listening on port %s.",
+		LOG_MSG_USING_VIRTUAL_THREADS = "Running sessions on virtual threads.",
+		LOG_MSG_NO_VIRTUAL_THREADS =
+			"Virtual threads require Java 21, using platform threads.";
 	
 	private static final int
 		PARALLELISM = 100;
@@ -29,11 +42,35 @@ public class Server {
 	void start() throws UnknownHostException {
 		int port = config.getPort();
 		LOG.info(String.format(LOG_MSG_LISTENING_ON, port));
-		ExecutorService es = Executors.newWorkStealingPool(PARALLELISM);
-		try (ServerSocket serverSocket = new ServerSocket(port)) {
+		ExecutorService es = createExecutorService();
+		// Sockets obtained from channels support writing memory-mapped data
+		// to the network without copying it to the heap.
+		try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+			// Accepted sockets inherit the receive buffer, which must be set
+			// before binding to take effect on the TCP window.
+			if (config.getReceiveBufferSize() > 0) {
+				serverChannel.setOption(StandardSocketOptions.SO_RCVBUF,
+						config.getReceiveBufferSize());
+			}
+			serverChannel.bind(new InetSocketAddress(port));
+			startMetrics();
+			DataStore dataStore = DataStore.open(config);
+			AdmissionController admissionController =
+					AdmissionController.create(config, dataStore);
+			SessionResources resources =
+					new SessionResources(config.getMaxSessions(),
+							config.getMaxWindowSize());
+			if (config.getIoThreads() > 0) {
+				new NioServer(config, dataStore, admissionController,
+						resources).serve(serverChannel);
+				return;
+			}
 			while (true) {
-				Socket clientSocket = serverSocket.accept();
-				es.execute(new RequestHandler(config, clientSocket));
+				Socket clientSocket = serverChannel.accept().socket();
+				configureSocket(config, clientSocket);
+				admissionController.admit(new BlockingSession(
+						config, dataStore, admissionController, resources, es,
+						clientSocket));
 			}
 		}
 		catch (Throwable e) {
@@ -43,4 +80,96 @@ public class Server {
 			es.shutdown();
 		}
 	}
+	
+	/**
+	 * Applies the configured options to an accepted client socket.
+	 */
+	public static void configureSocket(Configuration config, Socket socket)
+	throws SocketException {
+		socket.setTcpNoDelay(config.isTcpNoDelay());
+		if (config.getSendBufferSize() > 0) {
+			socket.setSendBufferSize(config.getSendBufferSize());
+		}
+	}
+	
+	/**
+	 * Exposes the metrics of the server via JMX and, if a port is configured,
+	 * via the plain-text endpoint.
+	 */
+	private void startMetrics() throws Exception {
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		MetricsMBean.register(registry);
+		if (config.getMetricsPort() > 0) {
+			new MetricsEndpoint(registry).start(config.getMetricsPort());
+		}
+	}
+	
+	/**
+	 * A session handled by a {@link RequestHandler} once it is admitted.
+	 */
+	private static class BlockingSession
+	implements AdmissionController.Session {
+		
+		private Configuration config;
+		private DataStore dataStore;
+		private AdmissionController admissionController;
+		private SessionResources resources;
+		private ExecutorService es;
+		private Socket clientSocket;
+		
+		BlockingSession(Configuration config, DataStore dataStore,
+				AdmissionController admissionController,
+				SessionResources resources, ExecutorService es,
+				Socket clientSocket) {
+			this.config = config;
+			this.dataStore = dataStore;
+			this.admissionController = admissionController;
+			this.resources = resources;
+			this.es = es;
+			this.clientSocket = clientSocket;
+		}
+		
+		@Override
+		public String getClient() {
+			return clientSocket.getRemoteSocketAddress().toString();
+		}
+		
+		@Override
+		public void start(long queueingMillis) {
+			RequestHandler requestHandler =
+					new RequestHandler(config, dataStore, resources,
+							clientSocket);
+			requestHandler.setQueueingMillis(queueingMillis);
+			es.execute(() -> {
+				try {
+					requestHandler.run();
+				}
+				finally {
+					admissionController.release();
+				}
+			});
+		}
+		
+		@Override
+		public void refuse() {
+			try {
+				clientSocket.close();
+			}
+			catch (IOException e) {
+				LOG.error("", e);
+			}
+		}
+	}
+	
+	private ExecutorService createExecutorService() {
+		if (config.isUsingVirtualThreads()) {
+			if (VirtualThreads.isSupported()) {
+				LOG.info(LOG_MSG_USING_VIRTUAL_THREADS);
+				return VirtualThreads.newThreadPerTaskExecutor();
+			}
+			LOG.warn(LOG_MSG_NO_VIRTUAL_THREADS);
+			config.setUsingVirtualThreads(false);
+		}
+		return Executors.newWorkStealingPool(PARALLELISM);
+	}
 }
@@ -0,0 +1,195 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.metrics.LatencyRecorder;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
+import org.wsdmcup17.dataserver.protocol.Handshake;
+import org.wsdmcup17.dataserver.result.ResultParser;
+import org.wsdmcup17.dataserver.result.ResultPrinter;
+import org.wsdmcup17.dataserver.result.ResultRecorder;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+import org.wsdmcup17.dataserver.util.ReusableWriter;
+
+import static ch.qos.logback.classic.ClassicConstants.FINALIZE_SESSION_MARKER;
+
+/**
+ * The setup and teardown every session does regardless of how it does its
+ * I/O: validating the access token, directing the log to the session's log
+ * file, agreeing on the session parameters, opening the metrics and the
+ * result file, and closing all of them when the session ends.
+ */
+public class SessionContext {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(SessionContext.class);
+	
+	private static final String
+		LOG_MSG_HANDLING_REQUEST = "Handling request for token %s...",
+		LOG_MSG_HANDLING_REQUEST_DONE = "Handling request for token %s...done.",
+		LOG_MSG_QUEUEING_TIME = "Session waited %d ms for admission.",
+		LOG_MSG_HANDSHAKE = "Agreed on %s.",
+		LOG_MSG_METRICS = "Publishing the metrics of the session as %s*.",
+		LOG_MSG_FINALIZE_LOGGER = "Finalize logger...",
+		ERROR_MSG_INVALID_TOKEN = "Invalid access token: %s";
+	
+	private Configuration config;
+	private AccessControl accessControl;
+	private SessionResources resources;
+	
+	private Map<String,String> contextMap = new HashMap<>();
+	private Handshake handshake;
+	private String accessToken;
+	private SessionMetrics metrics;
+	private ReusableWriter writer;
+	private ResultPrinter resultPrinter;
+	
+	public SessionContext(Configuration config, AccessControl accessControl,
+			SessionResources resources) {
+		this.config = config;
+		this.accessControl = accessControl;
+		this.resources = resources;
+	}
+	
+	/**
+	 * Validates the access token of the given handshake and directs the log
+	 * of the calling thread to the log file of the session.
+	 * 
+	 * @throws Error
+	 *             if the access token is invalid
+	 */
+	public void begin(Handshake handshake, long queueingMillis)
+	throws IOException {
+		String accessToken = handshake.getToken();
+		if (!accessControl.checkTokenValidity(accessToken)) {
+			String e = String.format(ERROR_MSG_INVALID_TOKEN, accessToken);
+			throw new Error(e);
+		}
+		this.handshake = handshake;
+		this.accessToken = accessToken;
+		contextMap.put(RequestHandler.MDC_ACCESS_TOKEN_KEY, accessToken);
+		contextMap.put(RequestHandler.MDC_LOG_FILE_KEY,
+				Main.getLogFileForToken(
+						accessControl.getRunDir(accessToken),
+						config.getPort(),
+						accessToken).getPath());
+		MDC.setContextMap(contextMap);
+		LOG.info(String.format(LOG_MSG_HANDLING_REQUEST, accessToken));
+		LOG.info(String.format(LOG_MSG_QUEUEING_TIME, queueingMillis));
+	}
+	
+	/**
+	 * Agrees on the parameters of the session and sets the capacity of the
+	 * given window accordingly.
+	 * 
+	 * @return whether the client has sent a handshake to be answered by
+	 *         {@link Handshake#getResponse()}
+	 */
+	public boolean negotiate(BackpressureWindow window, int maxBatchSize) {
+		handshake.negotiate(SessionResources.BACKPRESSURE_WINDOW,
+				config.getMaxWindowSize(), maxBatchSize,
+				config.getMaxCompressionLevel());
+		window.setCapacity(handshake.getWindowSize());
+		if (handshake.isRequested()) {
+			LOG.info(String.format(LOG_MSG_HANDSHAKE, handshake));
+			return true;
+		}
+		return false;
+	}
+	
+	public SessionMetrics openMetrics() {
+		metrics = new SessionMetrics(MetricsRegistry.getDefault());
+		LOG.info(String.format(LOG_MSG_METRICS, metrics.getPrefix()));
+		return metrics;
+	}
+	
+	/**
+	 * Returns the compressor of the frames or <code>null</code> if the client
+	 * has not agreed on compression.
+	 */
+	public FrameCompressor openCompressor() {
+		if (!handshake.isCompressed()) {
+			return null;
+		}
+		return new FrameCompressor(handshake.getCompressionLevel(), metrics);
+	}
+	
+	/**
+	 * Opens the result file of the session and returns a recorder writing the
+	 * results read by the given parser to it.
+	 */
+	public ResultRecorder openResultRecorder(BackpressureWindow window,
+			ResultParser resultParser) throws IOException {
+		File outputFile = accessControl.getOutputFile(accessToken);
+		writer = resources.acquireWriter();
+		resultPrinter = new ResultPrinter(writer, outputFile,
+				config.getFsyncPolicy(), config.getResultCommitMillis(),
+				metrics);
+		return new ResultRecorder(getContextMap(), window, resultParser,
+				resultPrinter, metrics.getLatencyRecorder());
+	}
+	
+	/**
+	 * Returns a copy of the logging context of the session for its threads.
+	 */
+	public Map<String,String> getContextMap() {
+		return new HashMap<>(contextMap);
+	}
+	
+	public String getAccessToken() {
+		return accessToken;
+	}
+	
+	/**
+	 * Closes the metrics, writes the latencies and closes the result file of
+	 * the session, as far as they have been opened, and finalizes its log.
+	 * Errors are logged. May block on the disk.
+	 */
+	public void close() {
+		if (metrics != null) {
+			metrics.close();
+		}
+		if (resultPrinter != null) {
+			writeLatencies();
+			try {
+				resultPrinter.close();
+			}
+			catch (IOException e) {
+				LOG.error("", e);
+			}
+		}
+		if (accessToken != null) {
+			LOG.info(String.format(LOG_MSG_HANDLING_REQUEST_DONE, accessToken));
+			LOG.info(FINALIZE_SESSION_MARKER, LOG_MSG_FINALIZE_LOGGER);
+			MDC.remove(RequestHandler.MDC_ACCESS_TOKEN_KEY);
+		}
+	}
+	
+	private void writeLatencies() {
+		LatencyRecorder latencyRecorder = metrics.getLatencyRecorder();
+		LOG.info(latencyRecorder.getSummary());
+		try {
+			latencyRecorder.writeTo(accessControl.getLatencyFile(accessToken));
+		}
+		catch (IOException e) {
+			LOG.error("", e);
+		}
+	}
+	
+	/**
+	 * Returns the writer of the result file to the pool. Must only be called
+	 * after {@link #close()} once no thread records results anymore.
+	 */
+	public void release() {
+		resources.releaseWriter(writer);
+		writer = null;
+	}
+}
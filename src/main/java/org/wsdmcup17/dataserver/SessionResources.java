@@ -0,0 +1,91 @@
+package org.wsdmcup17.dataserver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.wsdmcup17.dataserver.result.ResultPrinter;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.ObjectPool;
+import org.wsdmcup17.dataserver.util.ReusableWriter;
+
+/**
+ * Pools of the buffers every session needs. A session acquires its buffers
+ * when it starts and releases them as soon as it ends, such that the next
+ * session reuses them instead of the garbage collector reclaiming them.
+ */
+public class SessionResources {
+	
+	/**
+	 * The size of the backpressure window of clients not requesting a size
+	 * in the handshake.
+	 */
+	public static final int
+		BACKPRESSURE_WINDOW = 16,
+		REVISIONS_TO_BUFFER = 128,
+		LINE_BUFFER_SIZE = 10000,
+		RESULT_BUFFER_SIZE = 2 * ResultPrinter.COMMIT_BYTES;
+	
+	private ObjectPool<BlockingQueue<BinaryItem>> queues;
+	private ObjectPool<BackpressureWindow> windows;
+	private ObjectPool<byte[]> lineBuffers;
+	private ObjectPool<ReusableWriter> writers;
+	
+	/**
+	 * @param maxSessions
+	 *            the number of sessions whose buffers are kept for reuse
+	 * @param maxWindowSize
+	 *            the largest backpressure window a session may use
+	 */
+	public SessionResources(int maxSessions, int maxWindowSize) {
+		// A session needs a queue for revisions and one for meta data.
+		queues = new ObjectPool<>(2 * maxSessions,
+				() -> new ArrayBlockingQueue<>(REVISIONS_TO_BUFFER),
+				BlockingQueue::clear);
+		windows = new ObjectPool<>(maxSessions,
+				() -> new BackpressureWindow(maxWindowSize),
+				BackpressureWindow::reset);
+		lineBuffers = new ObjectPool<>(maxSessions,
+				() -> new byte[LINE_BUFFER_SIZE], buffer -> {});
+		writers = new ObjectPool<>(maxSessions,
+				() -> new ReusableWriter(RESULT_BUFFER_SIZE), writer -> {});
+	}
+	
+	public BlockingQueue<BinaryItem> acquireQueue() {
+		return queues.acquire();
+	}
+	
+	public void releaseQueue(BlockingQueue<BinaryItem> queue) {
+		queues.release(queue);
+	}
+	
+	public BackpressureWindow acquireWindow() {
+		return windows.acquire();
+	}
+	
+	public void releaseWindow(BackpressureWindow window) {
+		windows.release(window);
+	}
+	
+	public byte[] acquireLineBuffer() {
+		return lineBuffers.acquire();
+	}
+	
+	public void releaseLineBuffer(byte[] lineBuffer) {
+		lineBuffers.release(lineBuffer);
+	}
+	
+	/**
+	 * Returns a writer for the {@link ResultPrinter} of the session.
+	 */
+	public ReusableWriter acquireWriter() {
+		return writers.acquire();
+	}
+	
+	/**
+	 * Returns the given writer to the pool. The writer must have been closed.
+	 */
+	public void releaseWriter(ReusableWriter writer) {
+		writers.release(writer);
+	}
+}
@@ -0,0 +1,136 @@
+package org.wsdmcup17.dataserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.wsdmcup17.dataserver.dataset.FramedDataset;
+import org.wsdmcup17.dataserver.dataset.FramedDatasetWriter;
+import org.wsdmcup17.dataserver.metadata.MetadataProvider;
+import org.wsdmcup17.dataserver.revision.RevisionProvider;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Runs the revision and meta data pipeline of a session once and writes its
+ * output to a {@link FramedDataset}, which the server can send to clients
+ * without any parsing.
+ */
+public class Transcoder {
+	
+	private static final String
+		TRANSCODER = "WSDM Cup 2017 Transcoder",
+		OPT_REVISION_FILE = "r",
+		OPT_REVISION_FILE_LONG = "revision",
+		OPT_REVISION_FILE_DESC = "Revision file",
+		OPT_METADATA_FILE = "m",
+		OPT_METADATA_FILE_LONG = "metadata",
+		OPT_METADATA_FILE_DESC = "Metadata file",
+		OPT_OUTPUT_FILE = "o",
+		OPT_OUTPUT_FILE_LONG = "output",
+		OPT_OUTPUT_FILE_DESC = "Framed output file",
+		THREAD_NAME_REVISION_PROVIDER = "Revision Provider",
+		THREAD_NAME_METADATA_PROVIDER = "Metadata Provider",
+		LOG_MSG_DONE = "Wrote %d frames to %s.",
+		ERROR_MSG_MISSING_METADATA = "No meta data for revision %d";
+	
+	private static final int
+		REVISIONS_TO_BUFFER = 128;
+	
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+		CommandLine cmd = parseArgs(args);
+		File revisionFile = new File(cmd.getOptionValue(OPT_REVISION_FILE));
+		File metadataFile = new File(cmd.getOptionValue(OPT_METADATA_FILE));
+		File outputFile = new File(cmd.getOptionValue(OPT_OUTPUT_FILE));
+		
+		BlockingQueue<BinaryItem>
+			revisionQueue = new ArrayBlockingQueue<>(REVISIONS_TO_BUFFER),
+			metadataQueue = new ArrayBlockingQueue<>(REVISIONS_TO_BUFFER);
+		
+		// A failing provider would never terminate its item stream.
+		Thread mainThread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler =
+				(thread, e) -> mainThread.interrupt();
+		
+		RevisionProvider revisionProvider = new RevisionProvider(
+				new HashMap<>(), mainThread.getThreadGroup(), revisionQueue,
+				revisionFile, null, null, -1,
+				RevisionProvider.DEFAULT_BUFFER_SIZE);
+		Thread revisionThread = new Thread(
+				revisionProvider, THREAD_NAME_REVISION_PROVIDER);
+		revisionThread.setUncaughtExceptionHandler(handler);
+		revisionThread.start();
+		
+		BinaryItem revision = revisionQueue.take();
+		MetadataProvider metadataProvider = new MetadataProvider(
+				new HashMap<>(), metadataQueue, metadataFile, null, null,
+				revision.getRevisionId(), RevisionProvider.DEFAULT_BUFFER_SIZE);
+		Thread metadataThread = new Thread(
+				metadataProvider, THREAD_NAME_METADATA_PROVIDER);
+		metadataThread.setUncaughtExceptionHandler(handler);
+		metadataThread.setDaemon(true);
+		metadataThread.start();
+		
+		try (FramedDatasetWriter writer = new FramedDatasetWriter(outputFile)) {
+			while (revision.getRevisionId() != Long.MAX_VALUE) {
+				BinaryItem metadata = metadataQueue.take();
+				if (metadata.getRevisionId() == Long.MAX_VALUE) {
+					String e = String.format(ERROR_MSG_MISSING_METADATA,
+							revision.getRevisionId());
+					throw new IOException(e);
+				}
+				writer.writeFrame(metadata, revision);
+				revision = revisionQueue.take();
+			}
+			writer.complete();
+			System.out.println(String.format(
+					LOG_MSG_DONE, writer.size(), outputFile));
+		}
+		finally {
+			metadataProvider.stop();
+			metadataThread.interrupt();
+		}
+		revisionThread.join();
+	}
+	
+	private static CommandLine parseArgs(String[] args) {
+		Options options = new Options();
+		
+		Option revision = new Option(OPT_REVISION_FILE,
+				OPT_REVISION_FILE_LONG, true, OPT_REVISION_FILE_DESC);
+		revision.setRequired(true);
+		options.addOption(revision);
+		
+		Option metadata = new Option(OPT_METADATA_FILE,
+				OPT_METADATA_FILE_LONG, true, OPT_METADATA_FILE_DESC);
+		metadata.setRequired(true);
+		options.addOption(metadata);
+		
+		Option output = new Option(OPT_OUTPUT_FILE, OPT_OUTPUT_FILE_LONG,
+				true, OPT_OUTPUT_FILE_DESC);
+		output.setRequired(true);
+		options.addOption(output);
+		
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd = null;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e) {
+			System.out.println(e.getMessage());
+			formatter.printHelp(TRANSCODER, options);
+			System.exit(1);
+		}
+		return cmd;
+	}
+}
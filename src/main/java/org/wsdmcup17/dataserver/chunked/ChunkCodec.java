@@ -0,0 +1,154 @@
+package org.wsdmcup17.dataserver.chunked;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Compression codecs for the chunks of a {@link ChunkedFile}. Every chunk is
+ * compressed independently of all other chunks. The codec is stored in the
+ * file by its code, which must never change.
+ */
+public enum ChunkCodec {
+	
+	/**
+	 * Raw Deflate, which decompresses fastest.
+	 */
+	DEFLATE(0) {
+		@Override
+		byte[] compress(byte[] bytes, int length) {
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			try {
+				deflater.setInput(bytes, 0, length);
+				deflater.finish();
+				ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4);
+				byte[] buffer = new byte[BUFFER_SIZE];
+				while (!deflater.finished()) {
+					int n = deflater.deflate(buffer);
+					out.write(buffer, 0, n);
+				}
+				return out.toByteArray();
+			}
+			finally {
+				deflater.end();
+			}
+		}
+		
+		@Override
+		byte[] decompress(byte[] bytes, int uncompressedLength)
+		throws IOException {
+			Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(bytes);
+				byte[] result = new byte[uncompressedLength];
+				int length = 0;
+				while (length < uncompressedLength && !inflater.finished()) {
+					int n = inflater.inflate(
+							result, length, uncompressedLength - length);
+					if (n == 0 && inflater.needsInput()) {
+						break;
+					}
+					length += n;
+				}
+				checkLength(length, uncompressedLength);
+				return result;
+			}
+			catch (DataFormatException e) {
+				throw new IOException(e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+	},
+	
+	/**
+	 * XZ (LZMA2), which compresses about as well as the 7z files.
+	 */
+	XZ(1) {
+		@Override
+		byte[] compress(byte[] bytes, int length) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(length / 8);
+			try (OutputStream xzOut =
+					new XZOutputStream(out, new LZMA2Options())) {
+				xzOut.write(bytes, 0, length);
+			}
+			return out.toByteArray();
+		}
+		
+		@Override
+		byte[] decompress(byte[] bytes, int uncompressedLength)
+		throws IOException {
+			byte[] result = new byte[uncompressedLength];
+			try (InputStream in =
+					new XZInputStream(new ByteArrayInputStream(bytes))) {
+				int length = IOUtils.read(in, result);
+				checkLength(length, uncompressedLength);
+				if (in.read() != -1) {
+					checkLength(uncompressedLength + 1, uncompressedLength);
+				}
+			}
+			return result;
+		}
+	};
+	
+	private static final String
+		ERROR_MSG_WRONG_CHUNK_LENGTH =
+			"Chunk decompressed to %d instead of %d bytes",
+		ERROR_MSG_UNKNOWN_CODE = "Unknown codec %d";
+	
+	private static final int
+		BUFFER_SIZE = 64 * 1024;
+	
+	private int code;
+	
+	private ChunkCodec(int code) {
+		this.code = code;
+	}
+	
+	/**
+	 * Returns the code identifying this codec in a {@link ChunkedFile}.
+	 */
+	public int getCode() {
+		return code;
+	}
+	
+	/**
+	 * Returns the codec with the given code.
+	 * 
+	 * @throws IOException
+	 *             if there is no such codec
+	 */
+	public static ChunkCodec forCode(int code) throws IOException {
+		for (ChunkCodec codec : values()) {
+			if (codec.code == code) {
+				return codec;
+			}
+		}
+		throw new IOException(String.format(ERROR_MSG_UNKNOWN_CODE, code));
+	}
+	
+	abstract byte[] compress(byte[] bytes, int length) throws IOException;
+	
+	abstract byte[] decompress(byte[] bytes, int uncompressedLength)
+	throws IOException;
+	
+	private static void checkLength(int length, int expectedLength)
+	throws IOException {
+		if (length != expectedLength) {
+			String e = String.format(ERROR_MSG_WRONG_CHUNK_LENGTH,
+					length, expectedLength);
+			throw new IOException(e);
+		}
+	}
+}
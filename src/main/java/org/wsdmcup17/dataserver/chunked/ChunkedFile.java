@@ -0,0 +1,195 @@
+package org.wsdmcup17.dataserver.chunked;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file storing a revision or meta data stream as independently compressed
+ * chunks, which can be decompressed in parallel.
+ * 
+ * Every chunk contains complete items (as created by the parsers), i.e.,
+ * chunks are aligned to revision boundaries. The file consists of a header,
+ * the compressed chunks, a chunk directory and a trailer:
+ * 
+ * <pre>
+ * header:    magic (int64), version (int32), codec (int16), flags (int16)
+ * chunks:    compressed bytes
+ * directory: number of chunks (int32), and for every chunk: ID of its first
+ *            revision (int64), offset (int64), compressed length (int32),
+ *            uncompressed length (int32)
+ * trailer:   offset of the directory (int64), magic (int64)
+ * </pre>
+ * 
+ * All numbers are encoded in network byte order. The codec is given by
+ * {@link ChunkCodec#getCode()}. If bit 0 of the flags is set, the revision
+ * IDs of all items are ascending, such that a stream can start right at the
+ * chunk of a given revision.
+ */
+public class ChunkedFile {
+	
+	static final long
+		MAGIC = 0x5744564343484b31L; // "WDVCCHK1"
+	
+	static final int
+		VERSION = 2,
+		HEADER_SIZE = 16,
+		FLAG_SORTED = 1,
+		TRAILER_SIZE = 16,
+		DIRECTORY_ENTRY_SIZE = 24;
+	
+	private static final String
+		ERROR_MSG_NOT_A_CHUNKED_FILE = "Not a chunked file: %s",
+		ERROR_MSG_UNSUPPORTED_VERSION = "Unsupported version %d: %s",
+		ERROR_MSG_UNEXPECTED_END_OF_FILE = "Unexpected end of file";
+	
+	private File file;
+	private ChunkCodec codec;
+	private boolean isSorted;
+	private long[] firstRevisionIds;
+	private long[] offsets;
+	private int[] compressedLengths;
+	private int[] uncompressedLengths;
+	
+	private ChunkedFile(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Returns whether the given file is a chunked file (regardless of its
+	 * name).
+	 */
+	public static boolean isChunkedFile(File file) throws IOException {
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE + TRAILER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = read(channel, 0, Long.BYTES);
+			return header.getLong() == MAGIC;
+		}
+	}
+	
+	/**
+	 * Reads the header and the chunk directory of the given file.
+	 */
+	public static ChunkedFile open(File file) throws IOException {
+		ChunkedFile chunkedFile = new ChunkedFile(file);
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC) {
+				String e = String.format(ERROR_MSG_NOT_A_CHUNKED_FILE, file);
+				throw new IOException(e);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				String e = String.format(ERROR_MSG_UNSUPPORTED_VERSION,
+						version, file);
+				throw new IOException(e);
+			}
+			chunkedFile.codec = ChunkCodec.forCode(header.getShort());
+			chunkedFile.isSorted = (header.getShort() & FLAG_SORTED) != 0;
+			
+			ByteBuffer trailer = read(channel,
+					channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+			long directoryOffset = trailer.getLong();
+			if (trailer.getLong() != MAGIC) {
+				String e = String.format(ERROR_MSG_NOT_A_CHUNKED_FILE, file);
+				throw new IOException(e);
+			}
+			
+			int count = read(channel, directoryOffset, Integer.BYTES).getInt();
+			ByteBuffer directory = read(channel,
+					directoryOffset + Integer.BYTES,
+					count * DIRECTORY_ENTRY_SIZE);
+			chunkedFile.firstRevisionIds = new long[count];
+			chunkedFile.offsets = new long[count];
+			chunkedFile.compressedLengths = new int[count];
+			chunkedFile.uncompressedLengths = new int[count];
+			for (int i = 0; i < count; i++) {
+				chunkedFile.firstRevisionIds[i] = directory.getLong();
+				chunkedFile.offsets[i] = directory.getLong();
+				chunkedFile.compressedLengths[i] = directory.getInt();
+				chunkedFile.uncompressedLengths[i] = directory.getInt();
+			}
+		}
+		return chunkedFile;
+	}
+	
+	static ByteBuffer read(FileChannel channel, long position, int length)
+	throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException(ERROR_MSG_UNEXPECTED_END_OF_FILE);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	public ChunkCodec getCodec() {
+		return codec;
+	}
+	
+	public int getNumberOfChunks() {
+		return offsets.length;
+	}
+	
+	/**
+	 * Returns the ID of the first revision in the given chunk.
+	 */
+	public long getFirstRevisionId(int chunk) {
+		return firstRevisionIds[chunk];
+	}
+	
+	/**
+	 * Returns the chunk containing the given revision if the revision IDs are
+	 * ascending, and the first chunk otherwise.
+	 * 
+	 * @param revisionId
+	 *            the ID of the revision or -1 for the first chunk
+	 */
+	public int findChunk(long revisionId) {
+		if (!isSorted || revisionId < 0 || firstRevisionIds.length == 0) {
+			return 0;
+		}
+		int chunk = Arrays.binarySearch(firstRevisionIds, revisionId);
+		if (chunk < 0) {
+			// The chunk before the insertion point
+			chunk = Math.max(0, -chunk - 2);
+		}
+		return chunk;
+	}
+	
+	public long getOffset(int chunk) {
+		return offsets[chunk];
+	}
+	
+	public int getCompressedLength(int chunk) {
+		return compressedLengths[chunk];
+	}
+	
+	public int getUncompressedLength(int chunk) {
+		return uncompressedLengths[chunk];
+	}
+	
+	/**
+	 * Returns the uncompressed length of the largest chunk.
+	 */
+	public int getMaxUncompressedLength() {
+		int maxLength = 0;
+		for (int length : uncompressedLengths) {
+			maxLength = Math.max(maxLength, length);
+		}
+		return maxLength;
+	}
+}
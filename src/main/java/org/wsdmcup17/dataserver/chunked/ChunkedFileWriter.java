@@ -0,0 +1,227 @@
+package org.wsdmcup17.dataserver.chunked;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.ItemProcessor;
+
+/**
+ * Writes the items forwarded by a parser to a {@link ChunkedFile}. Items are
+ * collected until a chunk has reached the given size and chunks are
+ * compressed in parallel.
+ * 
+ * The chunks are written to a temporary file, which replaces the given file
+ * when the writer is closed after the parser has forwarded the end of the
+ * item stream. Otherwise, e.g., if parsing failed, the temporary file is
+ * deleted, such that an incomplete file never looks like a valid one.
+ */
+public class ChunkedFileWriter implements ItemProcessor, Closeable {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(ChunkedFileWriter.class);
+	
+	private static final String
+		EXT_TMP = ".tmp",
+		ERROR_MSG_INCOMPLETE = "Item stream incomplete, %s not written";
+	
+	private static final int
+		PARALLELISM = Runtime.getRuntime().availableProcessors();
+	
+	private File file;
+	private File tmpFile;
+	private ChunkCodec codec;
+	private int chunkSize;
+	private FileOutputStream fileOut;
+	private DataOutputStream out;
+	private long offset = 0;
+	private ExecutorService compressors =
+			Executors.newFixedThreadPool(PARALLELISM);
+	private Deque<PendingChunk> pendingChunks = new ArrayDeque<>();
+	
+	private byte[] curChunk;
+	private int curLength = 0;
+	private long curFirstRevisionId;
+	
+	private long[] firstRevisionIds = new long[0];
+	private long[] offsets = new long[0];
+	private int[] compressedLengths = new int[0];
+	private int[] uncompressedLengths = new int[0];
+	private int count = 0;
+	private long lastRevisionId = Long.MIN_VALUE;
+	private boolean isSorted = true;
+	private boolean isComplete = false;
+	
+	public ChunkedFileWriter(File file, ChunkCodec codec, int chunkSize)
+	throws IOException {
+		this.file = file;
+		this.tmpFile = new File(file.getPath() + EXT_TMP);
+		this.codec = codec;
+		this.chunkSize = chunkSize;
+		this.curChunk = new byte[chunkSize];
+		this.fileOut = new FileOutputStream(tmpFile);
+		this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+		// The flags are written when closing.
+		out.writeLong(ChunkedFile.MAGIC);
+		out.writeInt(ChunkedFile.VERSION);
+		out.writeShort(codec.getCode());
+		out.writeShort(0);
+		offset = ChunkedFile.HEADER_SIZE;
+	}
+
+	@Override
+	public void processItem(BinaryItem item) {
+		if (item.getRevisionId() == Long.MAX_VALUE) { // end of file
+			isComplete = true;
+			return;
+		}
+		if (item.getRevisionId() <= lastRevisionId) {
+			isSorted = false;
+		}
+		lastRevisionId = item.getRevisionId();
+		try {
+			if (curLength > 0 && curLength + item.getLength() > chunkSize) {
+				submitChunk();
+			}
+			if (curLength == 0) {
+				curFirstRevisionId = item.getRevisionId();
+			}
+			if (curLength + item.getLength() > curChunk.length) {
+				curChunk = Arrays.copyOf(curChunk, curLength + item.getLength());
+			}
+			for (ByteBuffer buffer : item.getBuffers()) {
+				int n = buffer.remaining();
+				buffer.get(curChunk, curLength, n);
+				curLength += n;
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			LOG.error("", e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void submitChunk() throws IOException, InterruptedException {
+		byte[] bytes = curChunk;
+		int length = curLength;
+		PendingChunk chunk = new PendingChunk();
+		chunk.firstRevisionId = curFirstRevisionId;
+		chunk.uncompressedLength = length;
+		chunk.future = compressors.submit(() -> codec.compress(bytes, length));
+		pendingChunks.addLast(chunk);
+		curChunk = new byte[chunkSize];
+		curLength = 0;
+		while (pendingChunks.size() > PARALLELISM) {
+			writeChunk(pendingChunks.removeFirst());
+		}
+	}
+	
+	private void writeChunk(PendingChunk chunk)
+	throws IOException, InterruptedException {
+		byte[] compressed;
+		try {
+			compressed = chunk.future.get();
+		}
+		catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		if (count == offsets.length) {
+			int capacity = Math.max(16, 2 * count);
+			firstRevisionIds = Arrays.copyOf(firstRevisionIds, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			compressedLengths = Arrays.copyOf(compressedLengths, capacity);
+			uncompressedLengths = Arrays.copyOf(uncompressedLengths, capacity);
+		}
+		firstRevisionIds[count] = chunk.firstRevisionId;
+		offsets[count] = offset;
+		compressedLengths[count] = compressed.length;
+		uncompressedLengths[count] = chunk.uncompressedLength;
+		count++;
+		out.write(compressed);
+		offset += compressed.length;
+	}
+
+	/**
+	 * Completes the file if the end of the item stream has been forwarded,
+	 * and deletes the temporary file otherwise.
+	 * 
+	 * @throws IOException
+	 *             if the file could not be completed
+	 */
+	@Override
+	public void close() throws IOException {
+		boolean isWritten = false;
+		try {
+			if (isComplete) {
+				writeRemainder();
+				isWritten = true;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		finally {
+			compressors.shutdownNow();
+			out.close();
+			if (!isWritten) {
+				Files.deleteIfExists(tmpFile.toPath());
+			}
+		}
+		if (!isWritten) {
+			throw new IOException(String.format(ERROR_MSG_INCOMPLETE, file));
+		}
+		Files.move(tmpFile.toPath(), file.toPath(),
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private void writeRemainder() throws IOException, InterruptedException {
+		if (curLength > 0) {
+			submitChunk();
+		}
+		while (!pendingChunks.isEmpty()) {
+			writeChunk(pendingChunks.removeFirst());
+		}
+		long directoryOffset = offset;
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeLong(firstRevisionIds[i]);
+			out.writeLong(offsets[i]);
+			out.writeInt(compressedLengths[i]);
+			out.writeInt(uncompressedLengths[i]);
+		}
+		out.writeLong(directoryOffset);
+		out.writeLong(ChunkedFile.MAGIC);
+		out.flush();
+		if (isSorted) {
+			// The flags follow the magic, version and codec.
+			fileOut.getChannel().write(ByteBuffer.wrap(new byte[] {
+				0, (byte) ChunkedFile.FLAG_SORTED }),
+				Long.BYTES + Integer.BYTES + Short.BYTES);
+		}
+		fileOut.getChannel().force(true);
+	}
+	
+	private static class PendingChunk {
+		long firstRevisionId;
+		int uncompressedLength;
+		Future<byte[]> future;
+	}
+}
@@ -0,0 +1,186 @@
+package org.wsdmcup17.dataserver.chunked;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.wsdmcup17.dataserver.metrics.Counter;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
+
+/**
+ * An input stream reading the decompressed contents of a {@link ChunkedFile}.
+ * 
+ * The chunks ahead of the current read position are decompressed in parallel
+ * by a worker pool shared by all streams, and are returned in order. A stream
+ * decompresses at most as many chunks ahead as fit into its lookahead size
+ * (but at least one), and not more than twice the number of cores, which
+ * already keeps all decompressors busy.
+ */
+public class ChunkedInputStream extends InputStream {
+	
+	private static final String
+		THREAD_NAME_DECOMPRESSOR = "Chunk Decompressor %d",
+		METRIC_DECOMPRESSED_BYTES = "input.decompressedBytes";
+	
+	private static final Counter DECOMPRESSED_BYTES =
+		MetricsRegistry.getDefault().counter(METRIC_DECOMPRESSED_BYTES);
+	
+	private static final int
+		PARALLELISM = Runtime.getRuntime().availableProcessors(),
+		MAX_LOOKAHEAD_CHUNKS = 2 * PARALLELISM;
+	
+	private static final ExecutorService
+		DECOMPRESSORS = Executors.newFixedThreadPool(PARALLELISM,
+				new DaemonThreadFactory());
+	
+	private ChunkedFile chunkedFile;
+	private FileChannel channel;
+	private int lookaheadSize;
+	private int nextChunk = 0;
+	private Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+	// Uncompressed bytes of the pending chunks
+	private long pendingSize = 0;
+	
+	private byte[] curChunk = new byte[0];
+	private int curPosition = 0;
+	
+	/**
+	 * Opens a stream starting at the chunk containing the given revision,
+	 * such that the preceding chunks are not decompressed, if the chunked
+	 * file allows for it.
+	 * 
+	 * @param firstRevisionId
+	 *            the ID of the revision or -1 to start at the beginning
+	 * @param lookaheadSize
+	 *            the uncompressed bytes to decompress ahead of the read
+	 *            position at most
+	 * @see ChunkedFile#findChunk(long)
+	 */
+	public ChunkedInputStream(File file, long firstRevisionId,
+			int lookaheadSize) throws IOException {
+		this.chunkedFile = ChunkedFile.open(file);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.lookaheadSize = lookaheadSize;
+		this.nextChunk = chunkedFile.findChunk(firstRevisionId);
+		submitChunks();
+	}
+	
+	/**
+	 * Returns the decompressed bytes a stream of the given file holds at
+	 * most, i.e., the chunks decompressed ahead and the current chunk.
+	 */
+	public static long getMaxBufferSize(File file, int lookaheadSize)
+	throws IOException {
+		long maxChunkSize = ChunkedFile.open(file).getMaxUncompressedLength();
+		long maxLookaheadSize = Math.min(
+				Math.max(lookaheadSize, maxChunkSize),
+				MAX_LOOKAHEAD_CHUNKS * maxChunkSize);
+		return maxLookaheadSize + maxChunkSize;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		return curChunk[curPosition++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int n = Math.min(len, curChunk.length - curPosition);
+		System.arraycopy(curChunk, curPosition, b, off, n);
+		curPosition += n;
+		return n;
+	}
+	
+	@Override
+	public int available() {
+		return curChunk.length - curPosition;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		for (Future<byte[]> future : pendingChunks) {
+			future.cancel(true);
+		}
+		pendingChunks.clear();
+		channel.close();
+	}
+	
+	private boolean ensureAvailable() throws IOException {
+		while (curPosition == curChunk.length) {
+			if (pendingChunks.isEmpty()) {
+				return false;
+			}
+			try {
+				curChunk = pendingChunks.removeFirst().get();
+				curPosition = 0;
+				pendingSize -= curChunk.length;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+			catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+			submitChunks();
+		}
+		return true;
+	}
+	
+	private void submitChunks() {
+		while (pendingChunks.size() < MAX_LOOKAHEAD_CHUNKS &&
+				nextChunk < chunkedFile.getNumberOfChunks()) {
+			int length = chunkedFile.getUncompressedLength(nextChunk);
+			if (!pendingChunks.isEmpty() &&
+					pendingSize + length > lookaheadSize) {
+				break;
+			}
+			int chunk = nextChunk++;
+			pendingChunks.addLast(
+					DECOMPRESSORS.submit(() -> decompress(chunk)));
+			pendingSize += length;
+		}
+	}
+	
+	private byte[] decompress(int chunk) throws IOException {
+		byte[] compressed = ChunkedFile.read(channel,
+				chunkedFile.getOffset(chunk),
+				chunkedFile.getCompressedLength(chunk)).array();
+		byte[] decompressed = chunkedFile.getCodec().decompress(compressed,
+				chunkedFile.getUncompressedLength(chunk));
+		DECOMPRESSED_BYTES.add(decompressed.length);
+		return decompressed;
+	}
+	
+	private static class DaemonThreadFactory implements ThreadFactory {
+		
+		private AtomicInteger counter = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, String.format(
+					THREAD_NAME_DECOMPRESSOR, counter.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package org.wsdmcup17.dataserver.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.util.MappedFile;
+
+/**
+ * A file storing the data stream of a session in exactly the layout sent to
+ * the client, i.e., revision boundaries, revision IDs and the pairing of meta
+ * data and revisions have been computed offline by the {@link
+ * org.wsdmcup17.dataserver.Transcoder Transcoder}. Serving the file requires
+ * no parsing at all.
+ * 
+ * The file consists of a header, the frames, a sequence index and a trailer:
+ * 
+ * <pre>
+ * header:  magic (int64), version (int32), flags (int32)
+ * frames:  for every revision: length of the meta data (int32), meta data,
+ *          length of the revision (int32), revision
+ * index:   number of frames (int32), and for every frame: revision ID (int64),
+ *          offset of the frame (int64)
+ * trailer: offset of the index (int64), magic (int64)
+ * </pre>
+ * 
+ * All numbers are encoded in network byte order. If bit 0 of the flags is
+ * set, the frames are sorted by revision ID, such that the index can be
+ * searched by bisection. The file is memory-mapped.
+ */
+public class FramedDataset {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(FramedDataset.class);
+	
+	static final long
+		MAGIC = 0x5744564346524d31L; // "WDVCFRM1"
+	
+	static final int
+		VERSION = 1,
+		HEADER_SIZE = 16,
+		TRAILER_SIZE = 16,
+		INDEX_ENTRY_SIZE = 16,
+		FLAG_SORTED = 1;
+	
+	private static final String
+		LOG_MSG_USING = "Using framed dataset %s (%d frames).",
+		ERROR_MSG_NOT_A_FRAMED_FILE = "Not a framed dataset: %s",
+		ERROR_MSG_UNSUPPORTED_VERSION = "Unsupported version %d: %s";
+	
+	private MappedFile file;
+	private boolean isSorted;
+	private int size;
+	private LongBuffer index;
+	
+	private FramedDataset(MappedFile file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Maps the given file and reads its header and sequence index.
+	 */
+	public static FramedDataset open(File file) throws IOException {
+		FramedDataset dataset = new FramedDataset(new MappedFile(file));
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE + TRAILER_SIZE) {
+				String e = String.format(ERROR_MSG_NOT_A_FRAMED_FILE, file);
+				throw new IOException(e);
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC) {
+				String e = String.format(ERROR_MSG_NOT_A_FRAMED_FILE, file);
+				throw new IOException(e);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				String e = String.format(ERROR_MSG_UNSUPPORTED_VERSION,
+						version, file);
+				throw new IOException(e);
+			}
+			dataset.isSorted = (header.getInt() & FLAG_SORTED) != 0;
+			
+			ByteBuffer trailer = channel.map(MapMode.READ_ONLY,
+					channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+			long indexOffset = trailer.getLong();
+			if (trailer.getLong() != MAGIC) {
+				String e = String.format(ERROR_MSG_NOT_A_FRAMED_FILE, file);
+				throw new IOException(e);
+			}
+			
+			dataset.size = dataset.file.getInt(indexOffset);
+			dataset.index = channel.map(MapMode.READ_ONLY,
+					indexOffset + Integer.BYTES,
+					(long) INDEX_ENTRY_SIZE * dataset.size).asLongBuffer();
+		}
+		LOG.info(String.format(LOG_MSG_USING, file, dataset.size));
+		return dataset;
+	}
+	
+	public File getFile() {
+		return file.getFile();
+	}
+	
+	/**
+	 * Returns the number of frames.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the position of the frame with the given revision ID or -1 if
+	 * there is no such frame. The sequence index is in stream order, which is
+	 * searched by bisection if it is sorted by ID and scanned linearly
+	 * otherwise.
+	 */
+	public int indexOf(long revisionId) {
+		if (isSorted) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int position = (low + high) >>> 1;
+				long midRevisionId = getRevisionId(position);
+				if (midRevisionId < revisionId) {
+					low = position + 1;
+				}
+				else if (midRevisionId > revisionId) {
+					high = position - 1;
+				}
+				else {
+					return position;
+				}
+			}
+			return -1;
+		}
+		for (int position = 0; position < size; position++) {
+			if (getRevisionId(position) == revisionId) {
+				return position;
+			}
+		}
+		return -1;
+	}
+	
+	public long getRevisionId(int position) {
+		return index.get(2 * position);
+	}
+	
+	/**
+	 * Returns the offset of the given frame, i.e., of its meta data length.
+	 */
+	public long getOffset(int position) {
+		return index.get(2 * position + 1);
+	}
+	
+	/**
+	 * Returns the given frame including the lengths as slices of the memory
+	 * mapping (without copying any bytes).
+	 */
+	public ByteBuffer[] getFrame(int position) {
+		long offset = getOffset(position);
+		long revisionOffset = offset + Integer.BYTES + file.getInt(offset);
+		int length = (int) (revisionOffset - offset) +
+				Integer.BYTES + file.getInt(revisionOffset);
+		return file.slice(offset, length);
+	}
+	
+	/**
+	 * Returns the meta data of the given frame as slices of the memory mapping
+	 * (without the length and without copying any bytes).
+	 */
+	public ByteBuffer[] getMetadata(int position) {
+		long offset = getOffset(position);
+		return file.slice(offset + Integer.BYTES, file.getInt(offset));
+	}
+	
+	/**
+	 * Returns the revision of the given frame as slices of the memory mapping
+	 * (without the length and without copying any bytes).
+	 */
+	public ByteBuffer[] getRevision(int position) {
+		long offset = getOffset(position);
+		offset += Integer.BYTES + file.getInt(offset);
+		return file.slice(offset + Integer.BYTES, file.getInt(offset));
+	}
+}
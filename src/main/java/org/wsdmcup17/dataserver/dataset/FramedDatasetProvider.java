@@ -0,0 +1,85 @@
+package org.wsdmcup17.dataserver.dataset;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Thread putting the revisions and meta data of a {@link FramedDataset} into
+ * the respective queues. The items are slices of the memory-mapped file, i.e.,
+ * nothing is parsed or copied. Both item streams are terminated with a
+ * sentinel.
+ */
+public class FramedDatasetProvider implements Runnable {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(FramedDatasetProvider.class);
+	
+	private static final String
+		LOG_MSG_END_OF_FILE = "end of file reached",
+		LOG_MSG_THREAD_INTERRUPTED = "Thread interrupted",
+		ERROR_MSG_UNKNOWN_REVISION = "Revision %d not found in %s";
+	
+	private Map<String,String> contextMap;
+	private BlockingQueue<BinaryItem> revisionQueue;
+	private BlockingQueue<BinaryItem> metadataQueue;
+	private FramedDataset dataset;
+	private long firstRevisionId;
+	
+	/**
+	 * @param firstRevisionId
+	 *            the ID of the first revision to provide or -1 to start with
+	 *            the first frame
+	 */
+	public FramedDatasetProvider(Map<String,String> contextMap,
+			BlockingQueue<BinaryItem> revisionQueue,
+			BlockingQueue<BinaryItem> metadataQueue,
+			FramedDataset dataset, long firstRevisionId) {
+		this.contextMap = contextMap;
+		this.revisionQueue = revisionQueue;
+		this.metadataQueue = metadataQueue;
+		this.dataset = dataset;
+		this.firstRevisionId = firstRevisionId;
+	}
+	
+	@Override
+	public void run() {
+		MDC.setContextMap(contextMap);
+		try {
+			provideFrames();
+		}
+		catch (InterruptedException e) {
+			// Reset the interrupt flag.
+			Thread.currentThread().interrupt();
+			LOG.debug(LOG_MSG_THREAD_INTERRUPTED);
+		}
+	}
+	
+	private void provideFrames() throws InterruptedException {
+		int position = 0;
+		if (firstRevisionId >= 0) {
+			position = dataset.indexOf(firstRevisionId);
+			if (position == -1) {
+				String e = String.format(ERROR_MSG_UNKNOWN_REVISION,
+						firstRevisionId, dataset.getFile());
+				throw new IllegalStateException(e);
+			}
+		}
+		for (; position < dataset.size(); position++) {
+			long revisionId = dataset.getRevisionId(position);
+			metadataQueue.put(
+					new BinaryItem(revisionId, dataset.getMetadata(position)));
+			revisionQueue.put(
+					new BinaryItem(revisionId, dataset.getRevision(position)));
+		}
+		LOG.debug(LOG_MSG_END_OF_FILE);
+		
+		// send sentinels to indicate end of item streams
+		revisionQueue.put(new BinaryItem(Long.MAX_VALUE, new byte[0]));
+		metadataQueue.put(new BinaryItem(Long.MAX_VALUE, new byte[0]));
+	}
+}
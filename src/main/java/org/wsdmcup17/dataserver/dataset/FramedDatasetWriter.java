@@ -0,0 +1,149 @@
+package org.wsdmcup17.dataserver.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.ChannelUtils;
+
+/**
+ * Writes a {@link FramedDataset}. Frames are written in the order they are
+ * sent to the client and the sequence index is written on closing.
+ * 
+ * The frames are written to a temporary file, which replaces the given file
+ * on closing if the dataset has been marked as complete. Otherwise, the
+ * temporary file is deleted.
+ */
+public class FramedDatasetWriter implements Closeable {
+	
+	private static final String
+		EXT_TMP = ".tmp",
+		ERROR_MSG_INCOMPLETE = "Dataset incomplete, %s not written";
+	
+	private static final int
+		INITIAL_CAPACITY = 1024;
+	
+	private File file;
+	private File tmpFile;
+	private FileOutputStream fileOut;
+	private DataOutputStream out;
+	private WritableByteChannel channel;
+	private long offset;
+	
+	private long[] revisionIds = new long[INITIAL_CAPACITY];
+	private long[] offsets = new long[INITIAL_CAPACITY];
+	private int size = 0;
+	private boolean isSorted = true;
+	private boolean isComplete = false;
+	
+	public FramedDatasetWriter(File file) throws IOException {
+		this.file = file;
+		tmpFile = new File(file.getPath() + EXT_TMP);
+		fileOut = new FileOutputStream(tmpFile);
+		out = new DataOutputStream(new BufferedOutputStream(fileOut));
+		channel = Channels.newChannel(out);
+		// The flags are written when closing.
+		out.writeLong(FramedDataset.MAGIC);
+		out.writeInt(FramedDataset.VERSION);
+		out.writeInt(0);
+		offset = FramedDataset.HEADER_SIZE;
+	}
+	
+	/**
+	 * Writes the frame of the given revision and its meta data.
+	 */
+	public void writeFrame(BinaryItem metadata, BinaryItem revision)
+	throws IOException {
+		if (size == revisionIds.length) {
+			revisionIds = Arrays.copyOf(revisionIds, 2 * size);
+			offsets = Arrays.copyOf(offsets, 2 * size);
+		}
+		if (size > 0 && revision.getRevisionId() <= revisionIds[size - 1]) {
+			isSorted = false;
+		}
+		revisionIds[size] = revision.getRevisionId();
+		offsets[size] = offset;
+		size++;
+		writeItem(metadata);
+		writeItem(revision);
+	}
+	
+	private void writeItem(BinaryItem item) throws IOException {
+		out.writeInt(item.getLength());
+		ChannelUtils.writeFully(channel, item.getBuffers());
+		offset += Integer.BYTES + item.getLength();
+	}
+	
+	/**
+	 * Returns the number of frames written so far.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Marks the dataset as complete, such that it is written on closing.
+	 */
+	public void complete() {
+		isComplete = true;
+	}
+	
+	/**
+	 * Writes the index and replaces the given file if the dataset is
+	 * complete, and deletes the temporary file otherwise.
+	 * 
+	 * @throws IOException
+	 *             if the dataset could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		boolean isWritten = false;
+		try {
+			if (isComplete) {
+				writeIndex();
+				isWritten = true;
+			}
+		}
+		finally {
+			out.close();
+			if (!isWritten) {
+				Files.deleteIfExists(tmpFile.toPath());
+			}
+		}
+		if (!isWritten) {
+			throw new IOException(String.format(ERROR_MSG_INCOMPLETE, file));
+		}
+		Files.move(tmpFile.toPath(), file.toPath(),
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private void writeIndex() throws IOException {
+		long indexOffset = offset;
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeLong(revisionIds[i]);
+			out.writeLong(offsets[i]);
+		}
+		out.writeLong(indexOffset);
+		out.writeLong(FramedDataset.MAGIC);
+		out.flush();
+		if (isSorted) {
+			ByteBuffer flags = ByteBuffer.allocate(Integer.BYTES);
+			flags.putInt(0, FramedDataset.FLAG_SORTED);
+			// The flags follow the magic and the version.
+			fileOut.getChannel().write(flags, Long.BYTES + Integer.BYTES);
+		}
+		fileOut.getChannel().force(true);
+	}
+}
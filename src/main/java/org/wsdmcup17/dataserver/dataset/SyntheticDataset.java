@@ -0,0 +1,282 @@
+package org.wsdmcup17.dataserver.dataset;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethod;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethodConfiguration;
+import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
+import org.tukaani.xz.LZMA2Options;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+import org.wsdmcup17.dataserver.util.Distribution;
+
+/**
+ * Generates a revision file and a meta file in the formats of the WSDM Cup
+ * files, such that the server can be tested without the original data.
+ * 
+ * The revisions are laid out as in the Wikidata dumps, which is what
+ * {@link RevisionParser} relies on, and the meta file has a header line as
+ * expected by {@link MetadataParser}. Both files only depend on the seed and
+ * the distributions given, such that runs on generated data can be compared.
+ */
+public class SyntheticDataset {
+	
+	private static final String
+		XML_HEADER = "<mediawiki " +
+			"xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" " +
+			"xml:lang=\"en\">\n" +
+			"  <siteinfo>\n" +
+			"    <sitename>Wikidata</sitename>\n" +
+			"    <dbname>wikidatawiki</dbname>\n" +
+			"  </siteinfo>\n",
+		XML_FOOTER = "</mediawiki>\n",
+		PAGE_HEADER = "  <page>\n" +
+			"    <title>Q%d</title>\n" +
+			"    <ns>0</ns>\n" +
+			"    <id>%d</id>\n",
+		PAGE_FOOTER = "  </page>\n",
+		REVISION_HEADER = "    <revision>\n" +
+			"      <id>%d</id>\n",
+		PARENT_ID = "      <parentid>%d</parentid>\n",
+		REVISION_BODY = "      <timestamp>%s</timestamp>\n" +
+			"      <contributor>\n" +
+			"        <username>User%d</username>\n" +
+			"        <id>%d</id>\n" +
+			"      </contributor>\n" +
+			"      <comment>/* wbsetlabel-add:1|en */ Q%d</comment>\n" +
+			"      <model>wikibase-item</model>\n" +
+			"      <format>application/json</format>\n" +
+			"      <text xml:space=\"preserve\">",
+		REVISION_FOOTER = "</text>\n" +
+			"      <sha1>%s</sha1>\n" +
+			"    </revision>\n",
+		TEXT_HEADER = "{&quot;type&quot;:&quot;item&quot;," +
+			"&quot;id&quot;:&quot;Q%d&quot;,&quot;labels&quot;:{&quot;en&quot;:" +
+			"{&quot;language&quot;:&quot;en&quot;,&quot;value&quot;:&quot;",
+		TEXT_FOOTER = " ünï&quot;}}}",
+		METADATA_HEADER = "REVISION_ID,REVISION_SESSION_ID," +
+			"USER_COUNTRY_CODE,USER_CONTINENT_CODE,USER_TIME_ZONE," +
+			"USER_REGION_CODE,USER_CITY_NAME,USER_COUNTY_NAME,REVISION_TAGS\n",
+		METADATA_REGISTERED_USER = "%d,%d,,,,,,,%s\n",
+		METADATA_ANONYMOUS_USER = "%d,%d,%s,%s\n",
+		SHA1_DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz",
+		SEVEN_Z_EXTENSION = ".7z";
+	
+	// Location columns of anonymous users
+	private static final String[] LOCATIONS = {
+		"US,NA,-300,NY,New York,New York",
+		"DE,EU,60,BE,Berlin,Berlin",
+		"IN,AS,330,MH,Mumbai,Mumbai Suburban",
+		"BR,SA,-180,SP,São Paulo,São Paulo",
+		"AU,OC,600,NSW,Sydney,\"Sydney, City of\"",
+	};
+	
+	// Words the texts consist of, such that they compress about as well as
+	// the original texts
+	private static final String[] WORDS = {
+		"label", "description", "alias", "claim", "statement", "reference",
+		"qualifier", "property", "value", "item", "entity", "datatype",
+		"wikibase", "string", "time", "quantity", "globe", "coordinate",
+		"monolingualtext", "external", "identifier", "url", "commons",
+		"media", "rank", "normal", "preferred", "deprecated", "snak",
+		"hash", "sitelink", "badges", "enwiki", "dewiki", "frwiki",
+		"human", "city", "country", "river", "mountain", "painting", "film",
+		"album", "species", "genus", "family", "taxon", "island", "lake",
+		"village", "municipality", "school", "church", "street", "station",
+		"born", "died", "award", "member", "occupation", "language", "named",
+		"instance", "subclass"
+	};
+	
+	private static final String[] TAGS = {
+		"", "", "", "\"#wikidata-ui\"", "\"#wikidata-ui,mobile edit\""
+	};
+	
+	private static final long
+		FIRST_REVISION_ID = 1,
+		// 2016-03-01T00:00:00Z
+		FIRST_TIMESTAMP = 1456790400;
+	
+	private static final int
+		// Compresses several times faster than the default preset 6
+		LZMA2_PRESET = 1,
+		SHA1_LENGTH = 31,
+		// Per mill of revisions by anonymous users
+		ANONYMOUS_PER_MILL = 200,
+		// Per mill of revisions starting a new session
+		NEW_SESSION_PER_MILL = 300,
+		USERS = 100000;
+	
+	private long seed;
+	private long revisions;
+	private Distribution textLength;
+	private Distribution pageLength;
+	
+	private StringBuilder text = new StringBuilder();
+	
+	/**
+	 * @param revisions
+	 *            the number of revisions to generate
+	 * @param textLength
+	 *            the distribution of the number of characters of the text of
+	 *            a revision
+	 * @param pageLength
+	 *            the distribution of the number of revisions of a page
+	 */
+	public SyntheticDataset(long seed, long revisions,
+			Distribution textLength, Distribution pageLength) {
+		this.seed = seed;
+		this.revisions = revisions;
+		this.textLength = textLength;
+		this.pageLength = pageLength;
+	}
+	
+	/**
+	 * Writes the revision file and the meta file as single entries of 7z
+	 * files, which are named like the files without the extension ".7z".
+	 */
+	public void writeSevenZFiles(File revisionFile, File metadataFile)
+	throws IOException {
+		// A 7z file is not truncated when it is opened
+		Files.deleteIfExists(revisionFile.toPath());
+		Files.deleteIfExists(metadataFile.toPath());
+		try (
+			SevenZOutputFile revisionArchive = new SevenZOutputFile(revisionFile);
+			SevenZOutputFile metadataArchive = new SevenZOutputFile(metadataFile);
+			Writer revisionWriter = openEntry(revisionArchive, revisionFile);
+			Writer metadataWriter = openEntry(metadataArchive, metadataFile);
+		){
+			write(revisionWriter, metadataWriter);
+			revisionWriter.flush();
+			revisionArchive.closeArchiveEntry();
+			metadataWriter.flush();
+			metadataArchive.closeArchiveEntry();
+		}
+	}
+	
+	private static Writer openEntry(SevenZOutputFile archive, File file)
+	throws IOException {
+		String name = file.getName();
+		if (name.endsWith(SEVEN_Z_EXTENSION)) {
+			name = name.substring(0, name.length() - SEVEN_Z_EXTENSION.length());
+		}
+		archive.setContentMethods(Collections.singletonList(
+				new SevenZMethodConfiguration(SevenZMethod.LZMA2,
+						new LZMA2Options(LZMA2_PRESET))));
+		SevenZArchiveEntry entry = new SevenZArchiveEntry();
+		entry.setName(name);
+		archive.putArchiveEntry(entry);
+		return new BufferedWriter(new OutputStreamWriter(
+				new SevenZEntryOutputStream(archive), StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Writes the uncompressed revision file and meta file.
+	 */
+	public void write(Writer revisionWriter, Writer metadataWriter)
+	throws IOException {
+		Random random = new Random(seed);
+		revisionWriter.write(XML_HEADER);
+		metadataWriter.write(METADATA_HEADER);
+		
+		long revisionId = FIRST_REVISION_ID;
+		long timestamp = FIRST_TIMESTAMP;
+		long sessionId = 0;
+		for (long page = 0, written = 0; written < revisions; page++) {
+			revisionWriter.write(String.format(PAGE_HEADER, page, page));
+			long pageRevisions = Math.min(revisions - written,
+					Math.max(1, Math.round(pageLength.next(random))));
+			// The first revision of a page has no parent.
+			long parentId = -1;
+			for (long i = 0; i < pageRevisions; i++) {
+				revisionId += 1 + random.nextInt(3);
+				timestamp += random.nextInt(30);
+				if (random.nextInt(1000) < NEW_SESSION_PER_MILL) {
+					sessionId++;
+				}
+				writeRevision(revisionWriter, random, page, revisionId,
+						parentId, timestamp);
+				writeMetadata(metadataWriter, random, revisionId, sessionId);
+				parentId = revisionId;
+			}
+			revisionWriter.write(PAGE_FOOTER);
+			written += pageRevisions;
+		}
+		revisionWriter.write(XML_FOOTER);
+	}
+	
+	private void writeRevision(Writer writer, Random random, long page,
+			long revisionId, long parentId, long timestamp)
+	throws IOException {
+		int user = random.nextInt(USERS);
+		int length = (int) Math.min(Integer.MAX_VALUE / 2,
+				Math.round(textLength.next(random)));
+		
+		writer.write(String.format(REVISION_HEADER, revisionId));
+		if (parentId >= 0) {
+			writer.write(String.format(PARENT_ID, parentId));
+		}
+		writer.write(String.format(REVISION_BODY,
+				Instant.ofEpochSecond(timestamp), user, user, page));
+		writer.write(String.format(TEXT_HEADER, page));
+		text.setLength(0);
+		while (text.length() < length) {
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		text.setLength(length);
+		writer.append(text);
+		writer.write(TEXT_FOOTER);
+		
+		char[] sha1 = new char[SHA1_LENGTH];
+		for (int i = 0; i < sha1.length; i++) {
+			sha1[i] = SHA1_DIGITS.charAt(random.nextInt(SHA1_DIGITS.length()));
+		}
+		writer.write(String.format(REVISION_FOOTER, new String(sha1)));
+	}
+	
+	private static void writeMetadata(Writer writer, Random random,
+			long revisionId, long sessionId) throws IOException {
+		String tags = TAGS[random.nextInt(TAGS.length)];
+		if (random.nextInt(1000) < ANONYMOUS_PER_MILL) {
+			String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+			writer.write(String.format(METADATA_ANONYMOUS_USER, revisionId,
+					sessionId, location, tags));
+		}
+		else {
+			writer.write(String.format(METADATA_REGISTERED_USER, revisionId,
+					sessionId, tags));
+		}
+	}
+	
+	/**
+	 * Writes to the current entry of a 7z file.
+	 */
+	private static class SevenZEntryOutputStream extends OutputStream {
+		
+		private SevenZOutputFile archive;
+		
+		public SevenZEntryOutputStream(SevenZOutputFile archive) {
+			this.archive = archive;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			archive.write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			archive.write(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.wsdmcup17.dataserver.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.wsdmcup17.dataserver.metrics.Counter;
+import org.wsdmcup17.dataserver.metrics.Histogram;
+
+/**
+ * The aggregate measurements of all clients of a load test round.
+ * 
+ * A client is stalled by the server if it waits for the next revision
+ * although its backpressure window is not full, i.e., the server could send
+ * data but does not.
+ */
+public class LoadReport {
+	
+	public static final String
+		HEADER = "SESSIONS,REVISIONS,REVISIONS_PER_SECOND,MB_PER_SECOND," +
+			"TTFB_P50_MS,TTFB_MAX_MS,STALLS,STALL_P99_MS,STALL_MAX_MS," +
+			"STALLED_SECONDS,ERRORS";
+	
+	private static final String
+		ROW = "%d,%d,%.0f,%.1f,%.1f,%.1f,%d,%.1f,%.1f,%.1f,%d";
+	
+	private static final long
+		// Shorter waits for data are not counted as stalls
+		STALL_THRESHOLD_MICROS = 1000;
+	
+	private int sessions;
+	private long startNanos;
+	private long endNanos;
+	
+	private Counter revisions = new Counter();
+	private Counter bytes = new Counter();
+	private Counter errors = new Counter();
+	private Counter stalledMicros = new Counter();
+	private Histogram timeToFirstByteMicros = new Histogram();
+	private Histogram stallMicros = new Histogram();
+	
+	public LoadReport(int sessions) {
+		this.sessions = sessions;
+	}
+	
+	public void start() {
+		startNanos = System.nanoTime();
+	}
+	
+	public void stop() {
+		endNanos = System.nanoTime();
+	}
+	
+	public void firstByteReceived(long micros) {
+		timeToFirstByteMicros.record(micros);
+	}
+	
+	public void revisionReceived(long frameBytes) {
+		revisions.increment();
+		bytes.add(frameBytes);
+	}
+	
+	public void stalled(long micros) {
+		if (micros >= STALL_THRESHOLD_MICROS) {
+			stallMicros.record(micros);
+			stalledMicros.add(micros);
+		}
+	}
+	
+	public void failed() {
+		errors.increment();
+	}
+	
+	public long getRevisions() {
+		return revisions.get();
+	}
+	
+	@Override
+	public String toString() {
+		double seconds = Math.max(1, endNanos - startNanos) / 1e9;
+		return String.format(Locale.ROOT, ROW, sessions, revisions.get(),
+				revisions.get() / seconds,
+				bytes.get() / seconds / (1024 * 1024),
+				toMillis(timeToFirstByteMicros.getPercentile(0.5)),
+				toMillis(timeToFirstByteMicros.getMax()),
+				stallMicros.getCount(),
+				toMillis(stallMicros.getPercentile(0.99)),
+				toMillis(stallMicros.getMax()),
+				stalledMicros.get() / (double) TimeUnit.SECONDS.toMicros(1),
+				errors.get());
+	}
+	
+	private static double toMillis(long micros) {
+		return micros / 1000.0;
+	}
+}
@@ -0,0 +1,217 @@
+package org.wsdmcup17.dataserver.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.wsdmcup17.dataserver.util.Distribution;
+
+/**
+ * Simulates clients to measure how the server copes with a growing number of
+ * concurrent sessions.
+ * 
+ * For every given number of sessions, one round is run in which that many
+ * clients connect at the same time and receive and score revisions until
+ * the server has sent all of them. Every round is reported as a CSV row.
+ */
+public class LoadTester {
+	
+	private static final String
+		LOAD_TESTER = "WSDM Cup 2017 Load Tester",
+		OPT_HOST = "h",
+		OPT_HOST_LONG = "host",
+		OPT_HOST_DESC = "Host of the server (default: 127.0.0.1)",
+		OPT_PORT = "p",
+		OPT_PORT_LONG = "port",
+		OPT_PORT_DESC = "Port of the server",
+		OPT_SESSIONS = "n",
+		OPT_SESSIONS_LONG = "sessions",
+		OPT_SESSIONS_DESC = "Comma-separated numbers of concurrent sessions, " +
+			"one round each (default: 1)",
+		OPT_TOKEN = "k",
+		OPT_TOKEN_LONG = "token",
+		OPT_TOKEN_DESC = "Prefix of the access tokens (default: loadtest)",
+		OPT_DELAY = "d",
+		OPT_DELAY_LONG = "delay",
+		OPT_DELAY_DESC = "Scoring delay, fixed:<ms>, uniform:<min>-<max>, " +
+			"or exponential:<mean> (default: fixed:0)",
+		OPT_LIMIT = "l",
+		OPT_LIMIT_LONG = "limit",
+		OPT_LIMIT_DESC = "Number of revisions after which a session is " +
+			"closed (default: all revisions)",
+		OPT_HANDSHAKE = "x",
+		OPT_HANDSHAKE_LONG = "handshake",
+		OPT_HANDSHAKE_DESC = "Request -w, -b, and -c in a handshake instead " +
+			"of sending only the token line",
+		OPT_WINDOW = "w",
+		OPT_WINDOW_LONG = "window",
+		OPT_WINDOW_DESC = "Backpressure window requested in the handshake " +
+			"(default: 16)",
+		OPT_BATCH = "b",
+		OPT_BATCH_LONG = "batch",
+		OPT_BATCH_DESC = "Frames per batch requested in the handshake " +
+			"(default: 64)",
+		OPT_COMPRESSION = "c",
+		OPT_COMPRESSION_LONG = "compression",
+		OPT_COMPRESSION_DESC = "Deflate level requested in the handshake, " +
+			"0 for uncompressed frames (default: 0)",
+		OPT_OUTPUT_FILE = "o",
+		OPT_OUTPUT_FILE_LONG = "output",
+		OPT_OUTPUT_FILE_DESC = "CSV file the rounds are written to",
+		DEFAULT_HOST = "127.0.0.1",
+		DEFAULT_SESSIONS = "1",
+		DEFAULT_TOKEN = "loadtest",
+		DEFAULT_DELAY = "fixed:0",
+		DEFAULT_WINDOW = "16",
+		DEFAULT_BATCH = "64",
+		DEFAULT_COMPRESSION = "0",
+		TOKEN = "%s-%d-%d",
+		THREAD_NAME_CLIENT = "Client %s";
+	
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+		CommandLine cmd = parseArgs(args);
+		String host = cmd.getOptionValue(OPT_HOST, DEFAULT_HOST);
+		int port = Integer.parseInt(cmd.getOptionValue(OPT_PORT));
+		String tokenPrefix = cmd.getOptionValue(OPT_TOKEN, DEFAULT_TOKEN);
+		Distribution delay = Distribution.parse(
+				cmd.getOptionValue(OPT_DELAY, DEFAULT_DELAY));
+		long limit = Long.parseLong(cmd.getOptionValue(OPT_LIMIT, "-1"));
+		boolean handshake = cmd.hasOption(OPT_HANDSHAKE);
+		int window = Integer.parseInt(
+				cmd.getOptionValue(OPT_WINDOW, DEFAULT_WINDOW));
+		int batch = Integer.parseInt(
+				cmd.getOptionValue(OPT_BATCH, DEFAULT_BATCH));
+		int compression = Integer.parseInt(
+				cmd.getOptionValue(OPT_COMPRESSION, DEFAULT_COMPRESSION));
+		
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+				Runtime.getRuntime().availableProcessors());
+		List<String> rows = new ArrayList<>();
+		rows.add(LoadReport.HEADER);
+		System.out.println(LoadReport.HEADER);
+		try {
+			String[] rounds =
+					cmd.getOptionValue(OPT_SESSIONS, DEFAULT_SESSIONS).split(",");
+			for (int round = 0; round < rounds.length; round++) {
+				int sessions = Integer.parseInt(rounds[round].trim());
+				LoadReport report = new LoadReport(sessions);
+				List<Thread> threads = new ArrayList<>();
+				for (int i = 0; i < sessions; i++) {
+					String token = String.format(TOKEN, tokenPrefix, round, i);
+					SimulatedClient client = new SimulatedClient(host, port,
+							token, delay, limit, handshake, window, batch,
+							compression, scheduler, report);
+					threads.add(new Thread(client,
+							String.format(THREAD_NAME_CLIENT, token)));
+				}
+				report.start();
+				for (Thread thread : threads) {
+					thread.start();
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				report.stop();
+				rows.add(report.toString());
+				System.out.println(report);
+			}
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+		
+		if (cmd.hasOption(OPT_OUTPUT_FILE)) {
+			File outputFile = new File(cmd.getOptionValue(OPT_OUTPUT_FILE));
+			try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(
+					outputFile.toPath(), StandardCharsets.UTF_8))) {
+				for (String row : rows) {
+					writer.println(row);
+				}
+			}
+		}
+	}
+	
+	private static CommandLine parseArgs(String[] args) {
+		Options options = new Options();
+		
+		Option host = new Option(OPT_HOST, OPT_HOST_LONG, true, OPT_HOST_DESC);
+		host.setRequired(false);
+		options.addOption(host);
+		
+		Option port = new Option(OPT_PORT, OPT_PORT_LONG, true, OPT_PORT_DESC);
+		port.setRequired(true);
+		options.addOption(port);
+		
+		Option sessions = new Option(OPT_SESSIONS, OPT_SESSIONS_LONG, true,
+				OPT_SESSIONS_DESC);
+		sessions.setRequired(false);
+		options.addOption(sessions);
+		
+		Option token = new Option(OPT_TOKEN, OPT_TOKEN_LONG, true,
+				OPT_TOKEN_DESC);
+		token.setRequired(false);
+		options.addOption(token);
+		
+		Option delay = new Option(OPT_DELAY, OPT_DELAY_LONG, true,
+				OPT_DELAY_DESC);
+		delay.setRequired(false);
+		options.addOption(delay);
+		
+		Option limit = new Option(OPT_LIMIT, OPT_LIMIT_LONG, true,
+				OPT_LIMIT_DESC);
+		limit.setRequired(false);
+		options.addOption(limit);
+		
+		Option handshake = new Option(OPT_HANDSHAKE, OPT_HANDSHAKE_LONG,
+				false, OPT_HANDSHAKE_DESC);
+		handshake.setRequired(false);
+		options.addOption(handshake);
+		
+		Option window = new Option(OPT_WINDOW, OPT_WINDOW_LONG, true,
+				OPT_WINDOW_DESC);
+		window.setRequired(false);
+		options.addOption(window);
+		
+		Option batch = new Option(OPT_BATCH, OPT_BATCH_LONG, true,
+				OPT_BATCH_DESC);
+		batch.setRequired(false);
+		options.addOption(batch);
+		
+		Option compression = new Option(OPT_COMPRESSION, OPT_COMPRESSION_LONG,
+				true, OPT_COMPRESSION_DESC);
+		compression.setRequired(false);
+		options.addOption(compression);
+		
+		Option output = new Option(OPT_OUTPUT_FILE, OPT_OUTPUT_FILE_LONG,
+				true, OPT_OUTPUT_FILE_DESC);
+		output.setRequired(false);
+		options.addOption(output);
+		
+		CommandLineParser parser = new DefaultParser();
+		HelpFormatter formatter = new HelpFormatter();
+		CommandLine cmd = null;
+		
+		try {
+			cmd = parser.parse(options, args);
+		} catch (ParseException e) {
+			System.out.println(e.getMessage());
+			formatter.printHelp(LOAD_TESTER, options);
+			System.exit(1);
+		}
+		return cmd;
+	}
+}
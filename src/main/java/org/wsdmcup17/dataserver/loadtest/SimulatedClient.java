@@ -0,0 +1,321 @@
+package org.wsdmcup17.dataserver.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.SessionResources;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
+import org.wsdmcup17.dataserver.protocol.Handshake;
+import org.wsdmcup17.dataserver.util.Distribution;
+
+/**
+ * A client connecting to the server, receiving revisions, and scoring each
+ * of them after a random delay.
+ * 
+ * By default, the client only sends its token line, like the clients of
+ * version 1 of the protocol, and assumes the default window of the server.
+ * Otherwise, it requests the window, batch size, and compression of the
+ * session in a handshake and uses the values the server has agreed on.
+ * Revisions are received by the thread running the client, scores are sent
+ * by a scheduler shared by all clients.
+ */
+public class SimulatedClient implements Runnable {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(SimulatedClient.class);
+	
+	private static final String
+		CRLF = "\r\n",
+		RESULT_HEADER = "REVISION_ID,VANDALISM_SCORE" + CRLF,
+		RESULT_LINE = "%d,%s" + CRLF,
+		SCORE = "0.5",
+		ERROR_MSG_NO_HANDSHAKE = "The server has not answered the handshake",
+		ERROR_MSG_INVALID_METADATA = "No revision ID in meta data",
+		ERROR_MSG_INVALID_FRAME = "Truncated compressed item";
+	
+	private static final int
+		BUFFER_SIZE = 65536;
+	
+	private static final byte[]
+		DICTIONARY = FrameCompressor.getDictionary();
+	
+	private String host;
+	private int port;
+	private String accessToken;
+	private Distribution delay;
+	private long maxRevisions;
+	private boolean sendsHandshake;
+	private int windowSize;
+	private int batchSize;
+	private int compressionLevel;
+	private ScheduledExecutorService scheduler;
+	private LoadReport report;
+	
+	private Random random;
+	private OutputStream output;
+	private int agreedWindowSize = SessionResources.BACKPRESSURE_WINDOW;
+	private Inflater inflater;
+	private byte[] plainMetadata = new byte[BUFFER_SIZE];
+	private IOException sendException;
+	
+	// Revisions received but not scored yet
+	private AtomicInteger unscored = new AtomicInteger();
+	
+	/**
+	 * @param delay
+	 *            the distribution of the time to score a revision in
+	 *            milliseconds
+	 * @param maxRevisions
+	 *            the number of revisions after which the client closes the
+	 *            connection or -1 to receive all revisions
+	 * @param sendsHandshake
+	 *            whether the client requests the following values in a
+	 *            handshake or only sends its token line
+	 * @param compressionLevel
+	 *            the requested Deflate level, or 0 for uncompressed frames
+	 */
+	public SimulatedClient(String host, int port, String accessToken,
+			Distribution delay, long maxRevisions, boolean sendsHandshake,
+			int windowSize, int batchSize, int compressionLevel,
+			ScheduledExecutorService scheduler, LoadReport report) {
+		this.host = host;
+		this.port = port;
+		this.accessToken = accessToken;
+		this.delay = delay;
+		this.maxRevisions = maxRevisions;
+		this.sendsHandshake = sendsHandshake;
+		this.windowSize = windowSize;
+		this.batchSize = batchSize;
+		this.compressionLevel = compressionLevel;
+		this.scheduler = scheduler;
+		this.report = report;
+		this.random = new Random(accessToken.hashCode());
+	}
+	
+	@Override
+	public void run() {
+		long startNanos = System.nanoTime();
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			output = new BufferedOutputStream(socket.getOutputStream());
+			if (sendsHandshake) {
+				send(Handshake.createRequest(accessToken, windowSize,
+						batchSize, compressionLevel) + RESULT_HEADER);
+			}
+			else {
+				send(accessToken + CRLF + RESULT_HEADER);
+			}
+			
+			DataInputStream input = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream(), BUFFER_SIZE));
+			if (sendsHandshake) {
+				Handshake agreed = Handshake.parseResponse(readLine(input));
+				agreedWindowSize = agreed.getWindowSize();
+				if (agreed.isCompressed()) {
+					inflater = new Inflater();
+				}
+			}
+			if (receive(input, startNanos)) {
+				awaitScores();
+				socket.shutdownOutput();
+				drain(input);
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			LOG.error(accessToken, e);
+			report.failed();
+		}
+		finally {
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+	
+	// Reads the answer to the handshake up to the line ending.
+	private static String readLine(DataInputStream input) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = input.read()) != '\n') {
+			if (c == -1) {
+				throw new IOException(ERROR_MSG_NO_HANDSHAKE);
+			}
+			if (c != '\r') {
+				line.append((char) c);
+			}
+		}
+		return line.toString();
+	}
+	
+	/**
+	 * Receives revisions until the server closes its output stream.
+	 * 
+	 * @return whether all revisions have been received
+	 */
+	private boolean receive(DataInputStream input, long startNanos)
+	throws IOException {
+		byte[] metadata = new byte[BUFFER_SIZE];
+		byte[] revision = new byte[BUFFER_SIZE];
+		long received = 0;
+		
+		while (maxRevisions < 0 || received < maxRevisions) {
+			long waitNanos = System.nanoTime();
+			boolean isWindowOpen = unscored.get() < agreedWindowSize;
+			int metadataLength;
+			try {
+				metadataLength = input.readInt();
+			}
+			catch (EOFException e) {
+				return true;
+			}
+			long nowNanos = System.nanoTime();
+			if (received == 0) {
+				report.firstByteReceived(
+						TimeUnit.NANOSECONDS.toMicros(nowNanos - startNanos));
+			}
+			else if (isWindowOpen) {
+				report.stalled(
+						TimeUnit.NANOSECONDS.toMicros(nowNanos - waitNanos));
+			}
+			
+			metadata = readFully(input, metadata, metadataLength);
+			int revisionLength = input.readInt();
+			revision = readFully(input, revision, revisionLength);
+			long revisionId = inflater == null ?
+					parseRevisionId(metadata, metadataLength) :
+					parseRevisionId(plainMetadata,
+							inflate(metadata, metadataLength));
+			report.revisionReceived(8L + metadataLength + revisionLength);
+			received++;
+			
+			unscored.incrementAndGet();
+			scheduler.schedule(() -> score(revisionId),
+					(long) (delay.next(random) * 1000), TimeUnit.MICROSECONDS);
+			checkSendException();
+		}
+		return false;
+	}
+	
+	private static byte[] readFully(DataInputStream input, byte[] buffer,
+			int length) throws IOException {
+		if (buffer.length < length) {
+			buffer = new byte[length];
+		}
+		input.readFully(buffer, 0, length);
+		return buffer;
+	}
+	
+	/**
+	 * Decompresses the given item into the buffer for decompressed meta data
+	 * and returns its length. Every item is compressed on its own with the
+	 * preset dictionary of the server.
+	 */
+	private int inflate(byte[] item, int length) throws IOException {
+		inflater.reset();
+		inflater.setInput(item, 0, length);
+		int plainLength = 0;
+		try {
+			while (!inflater.finished()) {
+				if (plainLength == plainMetadata.length) {
+					plainMetadata = Arrays.copyOf(plainMetadata,
+							2 * plainMetadata.length);
+				}
+				int n = inflater.inflate(plainMetadata, plainLength,
+						plainMetadata.length - plainLength);
+				if (n == 0 && inflater.needsDictionary()) {
+					inflater.setDictionary(DICTIONARY);
+				}
+				else if (n == 0 && inflater.needsInput()) {
+					throw new IOException(ERROR_MSG_INVALID_FRAME);
+				}
+				plainLength += n;
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		return plainLength;
+	}
+	
+	// The first frame also contains the header of the meta data, hence the
+	// revision ID is taken from the last line.
+	private static long parseRevisionId(byte[] metadata, int length)
+	throws IOException {
+		int end = length;
+		while (end > 0 && (metadata[end - 1] == '\r' ||
+				metadata[end - 1] == '\n')) {
+			end--;
+		}
+		int start = end;
+		while (start > 0 && metadata[start - 1] != '\n') {
+			start--;
+		}
+		long revisionId = 0;
+		int i = start;
+		for (; i < end && metadata[i] >= '0' && metadata[i] <= '9'; i++) {
+			revisionId = revisionId * 10 + (metadata[i] - '0');
+		}
+		if (i == start) {
+			throw new IOException(ERROR_MSG_INVALID_METADATA);
+		}
+		return revisionId;
+	}
+	
+	private void score(long revisionId) {
+		try {
+			send(String.format(RESULT_LINE, revisionId, SCORE));
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				sendException = e;
+			}
+		}
+		finally {
+			synchronized (this) {
+				unscored.decrementAndGet();
+				notifyAll();
+			}
+		}
+	}
+	
+	private synchronized void send(String text) throws IOException {
+		output.write(text.getBytes(StandardCharsets.UTF_8));
+		output.flush();
+	}
+	
+	private synchronized void checkSendException() throws IOException {
+		if (sendException != null) {
+			throw sendException;
+		}
+	}
+	
+	private synchronized void awaitScores()
+	throws IOException, InterruptedException {
+		while (unscored.get() > 0) {
+			wait();
+		}
+		checkSendException();
+	}
+	
+	// Waits until the server has closed the connection.
+	private static void drain(DataInputStream input) throws IOException {
+		while (input.read() != -1) {
+			// Ignore
+		}
+	}
+}
@@ -10,6 +10,10 @@ import org.wsdmcup17.dataserver.util.LineParser;
  * Parses a CSV file containing Wikidata metadata and creates a
  * {@link BinaryItem} for every revision. The items are forwarded to the given
  * {@link ItemProcessor}.
+ * 
+ * The first line is skipped as the header unless it starts with a revision
+ * ID, which is the case if the input starts in the middle of the file, e.g.,
+ * at a chunk of a chunked file.
  */
 public class MetadataParser extends LineParser {
 	
@@ -20,19 +24,31 @@ public class MetadataParser extends LineParser {
 	}	
 
 	@Override
-	protected void consumeLine(String line) {
-		if (line == null){ // end of file
-			return;
-		}
-		
-		if (isFirstLine) {
-			isFirstLine = false;
-		}
-		else {
-			curRevisionId = Long.valueOf(line.substring(0, line.indexOf(',')));
+	protected void consumeLine(byte[] line, int offset, int length) {
+		boolean isHeader = isFirstLine &&
+				(length == 0 || line[offset] < '0' || line[offset] > '9');
+		isFirstLine = false;
+		if (!isHeader) {
+			int idLength = indexOf(line, offset, length, (byte) ',');
+			curRevisionId = parseLong(line, offset, idLength);
 			endItem();
 			processLastItem();
 		}
 	}
+	
+	/**
+	 * Returns the position of the given byte relative to the line offset.
+	 * 
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the line does not contain the byte
+	 */
+	private static int indexOf(byte[] line, int offset, int length, byte b) {
+		for (int i = 0; i < length; i++) {
+			if (line[offset + i] == b) {
+				return i;
+			}
+		}
+		throw new StringIndexOutOfBoundsException(-1);
+	}
 }
 
@@ -9,52 +9,114 @@ import java.util.concurrent.BlockingQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.store.IndexedItemReader;
+import org.wsdmcup17.dataserver.store.MaterializedFile;
+import org.wsdmcup17.dataserver.store.RevisionIndex;
 import org.wsdmcup17.dataserver.util.BinaryItem;
 import org.wsdmcup17.dataserver.util.FilterProcessor;
 import org.wsdmcup17.dataserver.util.ItemProcessor;
 import org.wsdmcup17.dataserver.util.QueueProcessor;
-import org.wsdmcup17.dataserver.util.SevenZInputStream;
+import org.wsdmcup17.dataserver.util.InputFiles;
 
 /**
  * Thread reading meta data from a file, parsing the data and putting it into a
- * queue.
+ * queue. If a materialized metadata file with an index is available, the meta
+ * data is read from there without parsing, starting right at the first
+ * revision of the session.
  */
 public class MetadataProvider implements Runnable {
 	
 	private static final Logger
 		LOG = LoggerFactory.getLogger(MetadataProvider.class);
 	
+	private static final String
+		ERROR_MSG_UNKNOWN_REVISION = "Revision %d not found in %s";
+	
 	Map<String,String> contextMap;
 
 	private BlockingQueue<BinaryItem> queue;
 	private File file;
+	private MaterializedFile materializedFile;
+	private RevisionIndex index;
 	private long firstRevision;
+	private int lookaheadSize;
 	private MetadataParser parser;
+	private IndexedItemReader reader;
 	
+	/**
+	 * @param materializedFile
+	 *            the materialized metadata file or <code>null</code>
+	 * @param index
+	 *            the index of the materialized file or <code>null</code>
+	 * @param lookaheadSize
+	 *            the bytes a chunked file is decompressed ahead at most
+	 */
 	public MetadataProvider(Map<String,String> contextMap,
-			BlockingQueue<BinaryItem> queue, File file, long firstRevision) {
+			BlockingQueue<BinaryItem> queue, File file,
+			MaterializedFile materializedFile, RevisionIndex index,
+			long firstRevision, int lookaheadSize) {
 		this.contextMap = contextMap;
 		this.queue = queue;
 		this.file = file;
+		this.materializedFile = materializedFile;
+		this.index = index;
 		this.firstRevision = firstRevision;
+		this.lookaheadSize = lookaheadSize;
 	}	
 
 	@Override
 	public void run() {
 		MDC.setContextMap(contextMap);
+		try {
+			if (materializedFile != null && index != null) {
+				consumeIndexedFile();
+			}
+			else {
+				consumeFile();
+			}
+		}
+		catch (IOException e) {
+			LOG.error("", e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void consumeIndexedFile() throws IOException {
+		int firstPosition = index.indexOf(firstRevision);
+		if (firstPosition == -1) {
+			String e = String.format(ERROR_MSG_UNKNOWN_REVISION,
+					firstRevision, index.getFile());
+			throw new IllegalStateException(e);
+		}
+		reader = new IndexedItemReader(new QueueProcessor(queue),
+				materializedFile, index, firstPosition);
+		reader.consumeFile();
+	}
+	
+	private void consumeFile() throws IOException {
 		ItemProcessor nextProcessor = new QueueProcessor(queue);
 		nextProcessor = new FilterProcessor(nextProcessor, firstRevision);
-		try (InputStream inputStream = new SevenZInputStream(file)) {
+		try (InputStream inputStream = openInputStream()) {
 			parser = new MetadataParser(nextProcessor, inputStream);
 			parser.consumeFile();
 		}
-		catch (IOException e) {
-			LOG.error("", e);
-			throw new RuntimeException(e);
+	}
+	
+	private InputStream openInputStream() throws IOException {
+		if (materializedFile != null) {
+			return materializedFile.openStream(0);
+		}
+		else {
+			return InputFiles.open(file, firstRevision, lookaheadSize);
 		}
 	}
 	
 	public void stop(){
-		parser.stop();
+		if (parser != null) {
+			parser.stop();
+		}
+		if (reader != null) {
+			reader.stop();
+		}
 	}
 }
@@ -0,0 +1,30 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. Threads incrementing the same counter
+ * hardly contend.
+ */
+public class Counter implements Metric {
+	
+	private LongAdder count = new LongAdder();
+	
+	public void increment() {
+		count.increment();
+	}
+	
+	public void add(long n) {
+		count.add(n);
+	}
+	
+	public long get() {
+		return count.sum();
+	}
+	
+	@Override
+	public void collect(String name, Map<String,Number> values) {
+		values.put(name, get());
+	}
+}
@@ -0,0 +1,18 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.Map;
+
+/**
+ * A value that is read whenever the metrics are collected, e.g., the size of
+ * a queue.
+ */
+@FunctionalInterface
+public interface Gauge extends Metric {
+	
+	long getValue();
+	
+	@Override
+	default void collect(String name, Map<String,Number> values) {
+		values.put(name, getValue());
+	}
+}
@@ -0,0 +1,125 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of non-negative values, e.g., of latencies.
+ * 
+ * Values are counted in buckets whose width doubles every
+ * {@link #SUB_BUCKETS} buckets, such that percentiles are accurate to about
+ * 6% of the value while recording a value takes a single atomic increment.
+ */
+public class Histogram implements Metric {
+	
+	private static final String
+		SUFFIX_COUNT = ".count",
+		SUFFIX_MEAN = ".mean",
+		SUFFIX_P50 = ".p50",
+		SUFFIX_P99 = ".p99",
+		SUFFIX_MAX = ".max";
+	
+	private static final int
+		SUB_BUCKET_BITS = 4,
+		SUB_BUCKETS = 1 << SUB_BUCKET_BITS,
+		// Values below are counted exactly
+		LINEAR_BUCKETS = 2 * SUB_BUCKETS,
+		BUCKETS = LINEAR_BUCKETS +
+			(Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private LongAdder count = new LongAdder();
+	private LongAdder sum = new LongAdder();
+	private AtomicLong max = new AtomicLong();
+	
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long currentMax;
+		while (value > (currentMax = max.get()) &&
+				!max.compareAndSet(currentMax, value)) {
+			// Retry
+		}
+	}
+	
+	/**
+	 * Removes all recorded values. Must not be called while values are
+	 * recorded.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+	
+	/**
+	 * Returns the value below or at which the given fraction of the recorded
+	 * values lies, or 0 if no value has been recorded.
+	 * 
+	 * @param quantile
+	 *            the fraction between 0 and 1, e.g., 0.99
+	 */
+	public long getPercentile(double quantile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	@Override
+	public void collect(String name, Map<String,Number> values) {
+		values.put(name + SUFFIX_COUNT, getCount());
+		values.put(name + SUFFIX_MEAN, getMean());
+		values.put(name + SUFFIX_P50, getPercentile(0.5));
+		values.put(name + SUFFIX_P99, getPercentile(0.99));
+		values.put(name + SUFFIX_MAX, getMax());
+	}
+	
+	static int indexOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	static long getHighestValue(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,149 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long the client of a session takes to score a revision, i.e.,
+ * the time from sending a revision until receiving its score.
+ * 
+ * The time a revision is sent is taken when it enters the backpressure
+ * window, just before it is written to the socket. Hence, a latency also
+ * includes the time the revision waits for the other frames of its batch
+ * and for the socket, and the time of the transfer in both directions.
+ * 
+ * Latencies are kept in a histogram over the whole session, which is
+ * published live, and in a histogram of the current interval of
+ * {@link #INTERVAL_SECONDS}. When an interval ends, its histogram is reduced
+ * to a row of the time series and reused for the next interval. The time
+ * series and the totals are written to a CSV file when the session ends.
+ */
+public class LatencyRecorder {
+	
+	public static final int
+		INTERVAL_SECONDS = 10;
+	
+	private static final String
+		HEADER = "INTERVAL_START_SECONDS,REVISIONS,P50_MICROS,P99_MICROS," +
+			"MAX_MICROS",
+		TOTAL = "TOTAL",
+		ROW = "%s,%d,%d,%d,%d",
+		SUMMARY = "Scored %d revisions with a latency of %d us (p50), " +
+			"%d us (p99), %d us (max).";
+	
+	private static final int
+		INITIAL_CAPACITY = 64,
+		// Interval, count, p50, p99 and max of a row
+		ROW_LENGTH = 5;
+	
+	private Histogram sessionHistogram;
+	private Histogram serverHistogram;
+	private long startNanos = System.nanoTime();
+	
+	// Accessed by the thread recording the scores only
+	private Histogram intervalHistogram = new Histogram();
+	private long interval = 0;
+	private long[] rows = new long[INITIAL_CAPACITY * ROW_LENGTH];
+	private int rowCount = 0;
+	
+	/**
+	 * @param sessionHistogram
+	 *            the histogram of the session in microseconds
+	 * @param serverHistogram
+	 *            the histogram of all sessions in microseconds
+	 */
+	public LatencyRecorder(Histogram sessionHistogram,
+			Histogram serverHistogram) {
+		this.sessionHistogram = sessionHistogram;
+		this.serverHistogram = serverHistogram;
+	}
+	
+	/**
+	 * Records the latency of a revision that has been sent at the given time
+	 * and scored now. Must only be called by one thread.
+	 * 
+	 * @param sendNanos
+	 *            the time the revision has been sent as returned by
+	 *            {@link System#nanoTime()}
+	 */
+	public void record(long sendNanos) {
+		long nowNanos = System.nanoTime();
+		long micros = TimeUnit.NANOSECONDS.toMicros(nowNanos - sendNanos);
+		sessionHistogram.record(micros);
+		serverHistogram.record(micros);
+		long currentInterval = TimeUnit.NANOSECONDS.toSeconds(
+				nowNanos - startNanos) / INTERVAL_SECONDS;
+		if (currentInterval != interval) {
+			endInterval();
+			interval = currentInterval;
+		}
+		intervalHistogram.record(micros);
+	}
+	
+	/**
+	 * Adds the current interval to the time series unless it is empty.
+	 */
+	private void endInterval() {
+		if (intervalHistogram.getCount() == 0) {
+			return;
+		}
+		if (rowCount * ROW_LENGTH == rows.length) {
+			rows = Arrays.copyOf(rows, 2 * rows.length);
+		}
+		int offset = rowCount * ROW_LENGTH;
+		rows[offset] = interval;
+		rows[offset + 1] = intervalHistogram.getCount();
+		rows[offset + 2] = intervalHistogram.getPercentile(0.5);
+		rows[offset + 3] = intervalHistogram.getPercentile(0.99);
+		rows[offset + 4] = intervalHistogram.getMax();
+		rowCount++;
+		intervalHistogram.reset();
+	}
+	
+	public Histogram getSessionHistogram() {
+		return sessionHistogram;
+	}
+	
+	/**
+	 * Returns a one-line summary of the latencies of the session.
+	 */
+	public String getSummary() {
+		return String.format(SUMMARY, sessionHistogram.getCount(),
+				sessionHistogram.getPercentile(0.5),
+				sessionHistogram.getPercentile(0.99),
+				sessionHistogram.getMax());
+	}
+	
+	/**
+	 * Writes the time series and the totals of the session as CSV file.
+	 * Intervals without scores are omitted. Must be called by the thread
+	 * recording the scores or after it has stopped, and only once.
+	 */
+	public void writeTo(File file) throws IOException {
+		endInterval();
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(
+				file.toPath(), StandardCharsets.UTF_8))) {
+			writer.println(HEADER);
+			for (int offset = 0; offset < rowCount * ROW_LENGTH;
+					offset += ROW_LENGTH) {
+				writer.println(String.format(ROW,
+						String.valueOf(rows[offset] * INTERVAL_SECONDS),
+						rows[offset + 1], rows[offset + 2], rows[offset + 3],
+						rows[offset + 4]));
+			}
+			writer.println(String.format(ROW, TOTAL,
+					sessionHistogram.getCount(),
+					sessionHistogram.getPercentile(0.5),
+					sessionHistogram.getPercentile(0.99),
+					sessionHistogram.getMax()));
+			if (writer.checkError()) {
+				throw new IOException(file.toString());
+			}
+		}
+	}
+}
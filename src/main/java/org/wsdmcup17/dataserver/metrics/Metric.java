@@ -0,0 +1,16 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.Map;
+
+/**
+ * A metric kept by a {@link MetricsRegistry}.
+ */
+public interface Metric {
+	
+	/**
+	 * Puts the current values of this metric into the given map. A metric
+	 * with a single value puts it under the given name, other metrics put
+	 * their values under the given name followed by a suffix.
+	 */
+	void collect(String name, Map<String,Number> values);
+}
@@ -0,0 +1,68 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the values of a {@link MetricsRegistry} as plain text, one
+ * <code>name value</code> pair per line, over HTTP on the loopback
+ * interface, such that it can be scraped by local monitoring only.
+ */
+public class MetricsEndpoint {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(MetricsEndpoint.class);
+	
+	private static final String
+		PATH = "/metrics",
+		CONTENT_TYPE = "text/plain; charset=utf-8",
+		LOG_MSG_STARTED = "Serving metrics at http://%s:%d" + PATH;
+	
+	private static final int
+		HTTP_OK = 200;
+	
+	private MetricsRegistry registry;
+	private HttpServer server;
+	
+	public MetricsEndpoint(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+	
+	public void start(int port) throws IOException {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		server = HttpServer.create(new InetSocketAddress(address, port), 0);
+		server.createContext(PATH, this::handle);
+		server.start();
+		LOG.info(String.format(LOG_MSG_STARTED,
+				address.getHostAddress(), port));
+	}
+	
+	public void stop() {
+		server.stop(0);
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String,Number> entry:
+				registry.getValues().entrySet()) {
+			text.append(entry.getKey()).append(' ')
+				.append(entry.getValue()).append('\n');
+		}
+		byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(HTTP_OK, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
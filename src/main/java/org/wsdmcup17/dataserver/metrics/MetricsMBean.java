@@ -0,0 +1,99 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the values of a {@link MetricsRegistry} as read-only attributes of
+ * a single MBean, whose attributes change as sessions come and go.
+ */
+public class MetricsMBean implements DynamicMBean {
+	
+	public static final String
+		OBJECT_NAME = "org.wsdmcup17.dataserver:type=Metrics";
+	
+	private static final String
+		DESCRIPTION = "Metrics of the WSDM Cup 2017 data server",
+		ERROR_MSG_READ_ONLY = "Metrics are read-only";
+	
+	private MetricsRegistry registry;
+	
+	public MetricsMBean(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+	
+	/**
+	 * Registers an MBean for the given registry with the platform MBean
+	 * server.
+	 */
+	public static void register(MetricsRegistry registry)
+	throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(
+				new MetricsMBean(registry), new ObjectName(OBJECT_NAME));
+	}
+	
+	@Override
+	public Object getAttribute(String attribute)
+	throws AttributeNotFoundException {
+		Number value = registry.getValues().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+	
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String,Number> values = registry.getValues();
+		AttributeList list = new AttributeList();
+		for (String attribute: attributes) {
+			Number value = values.get(attribute);
+			if (value != null) {
+				list.add(new Attribute(attribute, value));
+			}
+		}
+		return list;
+	}
+	
+	@Override
+	public void setAttribute(Attribute attribute) {
+		throw new UnsupportedOperationException(ERROR_MSG_READ_ONLY);
+	}
+	
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+	
+	@Override
+	public Object invoke(String actionName, Object[] params,
+			String[] signature) {
+		throw new UnsupportedOperationException(actionName);
+	}
+	
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (Map.Entry<String,Number> entry:
+				registry.getValues().entrySet()) {
+			attributes.add(new MBeanAttributeInfo(entry.getKey(),
+					entry.getValue().getClass().getName(), entry.getKey(),
+					true, false, false));
+		}
+		return new MBeanInfo(getClass().getName(), DESCRIPTION,
+				attributes.toArray(new MBeanAttributeInfo[0]), null,
+				new MBeanOperationInfo[0], null);
+	}
+}
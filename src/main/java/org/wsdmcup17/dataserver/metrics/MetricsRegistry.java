@@ -0,0 +1,70 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The metrics of a server by name. Names consist of dot-separated parts,
+ * e.g., <code>session.&lt;token&gt;.revisionsSent</code>.
+ * 
+ * Components obtain their metrics once and update them without any lookup,
+ * so keeping metrics costs hardly more than the updates themselves.
+ */
+public class MetricsRegistry {
+	
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+	
+	private ConcurrentMap<String,Metric> metrics =
+			new ConcurrentSkipListMap<>();
+	
+	/**
+	 * Returns the registry shared by all components of the server.
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Returns the counter with the given name, which is created if
+	 * necessary.
+	 */
+	public Counter counter(String name) {
+		return (Counter) metrics.computeIfAbsent(name, n -> new Counter());
+	}
+	
+	/**
+	 * Returns the histogram with the given name, which is created if
+	 * necessary.
+	 */
+	public Histogram histogram(String name) {
+		return (Histogram) metrics.computeIfAbsent(name, n -> new Histogram());
+	}
+	
+	/**
+	 * Registers the given gauge, replacing any metric of the same name.
+	 */
+	public void register(String name, Gauge gauge) {
+		metrics.put(name, gauge);
+	}
+	
+	/**
+	 * Removes all metrics whose names start with the given prefix.
+	 */
+	public void removeAll(String prefix) {
+		metrics.keySet().removeIf(name -> name.startsWith(prefix));
+	}
+	
+	/**
+	 * Returns the current values of all metrics sorted by name.
+	 */
+	public SortedMap<String,Number> getValues() {
+		SortedMap<String,Number> values = new TreeMap<>();
+		for (Map.Entry<String,Metric> entry: metrics.entrySet()) {
+			entry.getValue().collect(entry.getKey(), values);
+		}
+		return values;
+	}
+}
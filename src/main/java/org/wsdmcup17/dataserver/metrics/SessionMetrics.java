@@ -0,0 +1,170 @@
+package org.wsdmcup17.dataserver.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of a single session, which are removed when the session ends.
+ * Revisions and bytes sent are also added to the totals of the server.
+ */
+public class SessionMetrics {
+	
+	public static final String
+		REVISION_QUEUE = "revisionQueue",
+		METADATA_QUEUE = "metadataQueue",
+		FRAME_QUEUE = "frameQueue",
+		WINDOW = "window";
+	
+	private static final String
+		PREFIX = "session.%d.",
+		REVISIONS_SENT = "revisionsSent",
+		BYTES_SENT = "bytesSent",
+		TOTAL_SESSIONS = "server.sessions",
+		TOTAL_REVISIONS_SENT = "server.revisionsSent",
+		TOTAL_BYTES_SENT = "server.bytesSent",
+		REVISION_SIZE = "server.revisionBytes",
+		LATENCY = "latencyMicros",
+		TOTAL_LATENCY = "server.latencyMicros",
+		RESULT_BYTES = "resultBytes",
+		TOTAL_RESULT_BYTES = "server.resultBytes",
+		RESULT_COMMIT = "server.resultCommitMicros",
+		RESULT_FSYNC = "server.resultFsyncMicros",
+		COMPRESSION_INPUT_BYTES = "compressionInputBytes",
+		COMPRESSION_OUTPUT_BYTES = "compressionOutputBytes",
+		TOTAL_COMPRESSION_INPUT_BYTES = "server.compressionInputBytes",
+		TOTAL_COMPRESSION_OUTPUT_BYTES = "server.compressionOutputBytes",
+		COMPRESSION = "server.compressionMicros";
+	
+	private static final AtomicLong SESSION_IDS = new AtomicLong();
+	
+	private MetricsRegistry registry;
+	private String prefix;
+	
+	private Counter revisionsSent;
+	private Counter bytesSent;
+	private Counter totalRevisionsSent;
+	private Counter totalBytesSent;
+	private Histogram revisionSize;
+	private LatencyRecorder latencyRecorder;
+	private Counter resultBytes;
+	private Counter totalResultBytes;
+	private Histogram resultCommit;
+	private Histogram resultFsync;
+	private Counter compressionInputBytes;
+	private Counter compressionOutputBytes;
+	private Counter totalCompressionInputBytes;
+	private Counter totalCompressionOutputBytes;
+	private Histogram compression;
+	
+	/**
+	 * Registers the metrics of a new session. They are named by a number
+	 * counting the sessions of the server rather than by the access token,
+	 * which is secret but would be published along with the metrics.
+	 */
+	public SessionMetrics(MetricsRegistry registry) {
+		this.registry = registry;
+		this.prefix = String.format(PREFIX, SESSION_IDS.incrementAndGet());
+		revisionsSent = registry.counter(prefix + REVISIONS_SENT);
+		bytesSent = registry.counter(prefix + BYTES_SENT);
+		totalRevisionsSent = registry.counter(TOTAL_REVISIONS_SENT);
+		totalBytesSent = registry.counter(TOTAL_BYTES_SENT);
+		revisionSize = registry.histogram(REVISION_SIZE);
+		latencyRecorder = new LatencyRecorder(
+				registry.histogram(prefix + LATENCY),
+				registry.histogram(TOTAL_LATENCY));
+		resultBytes = registry.counter(prefix + RESULT_BYTES);
+		totalResultBytes = registry.counter(TOTAL_RESULT_BYTES);
+		resultCommit = registry.histogram(RESULT_COMMIT);
+		resultFsync = registry.histogram(RESULT_FSYNC);
+		compressionInputBytes =
+				registry.counter(prefix + COMPRESSION_INPUT_BYTES);
+		compressionOutputBytes =
+				registry.counter(prefix + COMPRESSION_OUTPUT_BYTES);
+		totalCompressionInputBytes =
+				registry.counter(TOTAL_COMPRESSION_INPUT_BYTES);
+		totalCompressionOutputBytes =
+				registry.counter(TOTAL_COMPRESSION_OUTPUT_BYTES);
+		compression = registry.histogram(COMPRESSION);
+		registry.counter(TOTAL_SESSIONS).increment();
+	}
+	
+	/**
+	 * Returns the prefix of the names of the metrics of this session.
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+	
+	/**
+	 * Returns the recorder of the time the client takes to score revisions.
+	 */
+	public LatencyRecorder getLatencyRecorder() {
+		return latencyRecorder;
+	}
+	
+	/**
+	 * Registers a gauge of this session, e.g., the size of one of its queues.
+	 */
+	public void registerGauge(String name, Gauge gauge) {
+		registry.register(prefix + name, gauge);
+	}
+	
+	/**
+	 * Counts a revision that has been sent along with its meta data.
+	 * 
+	 * @param bytes
+	 *            the number of bytes sent including the length fields
+	 */
+	public void revisionSent(long bytes) {
+		revisionsSent.increment();
+		bytesSent.add(bytes);
+		totalRevisionsSent.increment();
+		totalBytesSent.add(bytes);
+		revisionSize.record(bytes);
+	}
+	
+	/**
+	 * Counts results that have been written to the result file at once.
+	 * 
+	 * @param nanos
+	 *            the time writing took
+	 */
+	public void resultsCommitted(long bytes, long nanos) {
+		resultBytes.add(bytes);
+		totalResultBytes.add(bytes);
+		resultCommit.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+	
+	/**
+	 * Records the time forcing the result file to disk took.
+	 */
+	public void resultsSynced(long nanos) {
+		resultFsync.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+	
+	/**
+	 * Counts a frame that has been compressed.
+	 * 
+	 * @param inputBytes
+	 *            the number of bytes of the frame including the length fields
+	 * @param outputBytes
+	 *            the number of bytes of the compressed frame
+	 * @param nanos
+	 *            the time compressing took
+	 */
+	public void frameCompressed(long inputBytes, long outputBytes,
+			long nanos) {
+		compressionInputBytes.add(inputBytes);
+		compressionOutputBytes.add(outputBytes);
+		totalCompressionInputBytes.add(inputBytes);
+		totalCompressionOutputBytes.add(outputBytes);
+		compression.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+	
+	/**
+	 * Removes the metrics of this session from the registry.
+	 */
+	public void close() {
+		registry.removeAll(prefix);
+	}
+}
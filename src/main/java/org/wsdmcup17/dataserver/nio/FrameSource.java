@@ -0,0 +1,21 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * A stream of frames, i.e., of the bytes sent to the client for a revision:
+ * the length of the meta data, the meta data, the length of the revision and
+ * the revision.
+ */
+interface FrameSource extends Closeable {
+	
+	/**
+	 * Returns the next frame as an item with the ID of its revision. The end
+	 * of the stream is indicated by a sentinel with revision ID
+	 * {@link Long#MAX_VALUE}.
+	 */
+	BinaryItem next() throws IOException;
+}
@@ -0,0 +1,33 @@
+package org.wsdmcup17.dataserver.nio;
+
+import org.wsdmcup17.dataserver.dataset.FramedDataset;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Pulls the frames of a {@link FramedDataset}, which are slices of the
+ * memory-mapped file.
+ */
+class FramedDatasetFrameSource implements FrameSource {
+	
+	private FramedDataset dataset;
+	private int position;
+	
+	FramedDatasetFrameSource(FramedDataset dataset, int firstPosition) {
+		this.dataset = dataset;
+		this.position = firstPosition;
+	}
+	
+	@Override
+	public BinaryItem next() {
+		if (position == dataset.size()) {
+			return new BinaryItem(Long.MAX_VALUE, new byte[0]);
+		}
+		BinaryItem frame = new BinaryItem(dataset.getRevisionId(position),
+				dataset.getFrame(position));
+		position++;
+		return frame;
+	}
+	
+	@Override
+	public void close() { }
+}
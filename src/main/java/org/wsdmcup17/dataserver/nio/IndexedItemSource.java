@@ -0,0 +1,37 @@
+package org.wsdmcup17.dataserver.nio;
+
+import org.wsdmcup17.dataserver.store.MaterializedFile;
+import org.wsdmcup17.dataserver.store.RevisionIndex;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Pulls the items of a {@link MaterializedFile} by means of its
+ * {@link RevisionIndex}. The items are slices of the memory-mapped file.
+ */
+class IndexedItemSource implements ItemSource {
+	
+	private MaterializedFile file;
+	private RevisionIndex index;
+	private int position;
+	
+	IndexedItemSource(MaterializedFile file, RevisionIndex index,
+			int firstPosition) {
+		this.file = file;
+		this.index = index;
+		this.position = firstPosition;
+	}
+	
+	@Override
+	public BinaryItem next() {
+		if (position == index.size()) {
+			return new BinaryItem(Long.MAX_VALUE, new byte[0]);
+		}
+		BinaryItem item = new BinaryItem(index.getRevisionId(position),
+				file.slice(index.getOffset(position), index.getLength(position)));
+		position++;
+		return item;
+	}
+	
+	@Override
+	public void close() { }
+}
@@ -0,0 +1,74 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread multiplexing the I/O of many sessions by means of a selector. Other
+ * threads hand over work to the loop with {@link #execute(Runnable)}, since
+ * the channels of a loop must only be accessed by the loop itself.
+ */
+class IoLoop implements Runnable {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(IoLoop.class);
+	
+	private Selector selector;
+	private Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	
+	IoLoop() throws IOException {
+		selector = Selector.open();
+	}
+	
+	/**
+	 * Runs the given task in the loop thread.
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+	
+	/**
+	 * Registers the given channel with the selector of this loop. Must only
+	 * be called by the loop thread.
+	 */
+	SelectionKey register(SelectableChannel channel, int ops,
+			NioSession session) throws IOException {
+		return channel.register(selector, ops, session);
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				selector.select();
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					task.run();
+				}
+				Iterator<SelectionKey> keys =
+						selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid()) {
+						((NioSession) key.attachment()).handle(key);
+					}
+				}
+			}
+		}
+		catch (IOException | ClosedSelectorException e) {
+			LOG.error("", e);
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * A stream of revision or meta data items that are pulled one by one, such
+ * that a worker thread can stop producing items as soon as enough items have
+ * been buffered for a session.
+ */
+interface ItemSource extends Closeable {
+	
+	/**
+	 * Returns the next item. The end of the stream is indicated by a
+	 * sentinel with revision ID {@link Long#MAX_VALUE}.
+	 */
+	BinaryItem next() throws IOException;
+}
@@ -0,0 +1,96 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.AccessControl;
+import org.wsdmcup17.dataserver.AdmissionController;
+import org.wsdmcup17.dataserver.Configuration;
+import org.wsdmcup17.dataserver.Server;
+import org.wsdmcup17.dataserver.SessionResources;
+import org.wsdmcup17.dataserver.store.DataStore;
+
+/**
+ * Event-driven server handling all sessions with a fixed number of threads.
+ * 
+ * Every session is assigned to one of several {@link IoLoop}s, which send
+ * the data, read the scores and enforce the backpressure window without
+ * blocking. Reading and parsing the data is done by a bounded pool of worker
+ * threads, which buffer a limited number of revisions per session ahead of
+ * time.
+ */
+public class NioServer {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(NioServer.class);
+	
+	private static final String
+		LOG_MSG_STARTED = "Started %d I/O threads and %d worker threads.",
+		THREAD_NAME_IO_LOOP = "I/O Loop %d",
+		THREAD_NAME_WORKER = "Worker %d";
+	
+	private Configuration config;
+	private DataStore dataStore;
+	private AccessControl accessControl;
+	private AdmissionController admissionController;
+	private SessionResources resources;
+	
+	public NioServer(Configuration config, DataStore dataStore,
+			AdmissionController admissionController,
+			SessionResources resources) {
+		this.config = config;
+		this.dataStore = dataStore;
+		this.accessControl = new AccessControl(config);
+		this.admissionController = admissionController;
+		this.resources = resources;
+	}
+	
+	/**
+	 * Accepts connections on the given channel until the thread is
+	 * interrupted.
+	 */
+	public void serve(ServerSocketChannel serverChannel) throws IOException {
+		IoLoop[] loops = new IoLoop[config.getIoThreads()];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new IoLoop();
+			Thread thread = new Thread(loops[i],
+					String.format(THREAD_NAME_IO_LOOP, i + 1));
+			thread.setDaemon(true);
+			thread.start();
+		}
+		AtomicInteger workerCount = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(
+			config.getWorkerThreads(),
+			runnable -> {
+				Thread thread = new Thread(runnable, String.format(
+						THREAD_NAME_WORKER, workerCount.incrementAndGet()));
+				thread.setDaemon(true);
+				return thread;
+			});
+		LOG.info(String.format(
+				LOG_MSG_STARTED, loops.length, config.getWorkerThreads()));
+		try {
+			int next = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				SocketChannel channel = serverChannel.accept();
+				Server.configureSocket(config, channel.socket());
+				channel.configureBlocking(false);
+				IoLoop loop = loops[next];
+				next = (next + 1) % loops.length;
+				NioSession session = new NioSession(config, dataStore,
+						accessControl, admissionController, resources, loop,
+						workers, channel);
+				admissionController.admit(session);
+			}
+		}
+		finally {
+			workers.shutdown();
+		}
+	}
+}
@@ -0,0 +1,594 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.AccessControl;
+import org.wsdmcup17.dataserver.AdmissionController;
+import org.wsdmcup17.dataserver.Configuration;
+import org.wsdmcup17.dataserver.RequestHandler;
+import org.wsdmcup17.dataserver.SessionContext;
+import org.wsdmcup17.dataserver.SessionResources;
+import org.wsdmcup17.dataserver.dataset.FramedDataset;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.protocol.FrameCompressor;
+import org.wsdmcup17.dataserver.protocol.Handshake;
+import org.wsdmcup17.dataserver.result.ResultParser;
+import org.wsdmcup17.dataserver.result.ResultRecorder;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+import org.wsdmcup17.dataserver.store.DataStore;
+import org.wsdmcup17.dataserver.store.RevisionIndex;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.InputFiles;
+
+/**
+ * A session of the {@link NioServer}. The protocol is the same as for the
+ * {@link RequestHandler}.
+ * 
+ * All socket I/O is done by the session's {@link IoLoop}, which never waits
+ * for files. Validating the access token, opening the input files, producing
+ * frames, recording the scores parsed by the loop and tearing down the
+ * session are done by worker threads, which hand over to the loop by means of
+ * {@link IoLoop#execute(Runnable)}. Frames are produced in batches until
+ * {@link SessionResources#REVISIONS_TO_BUFFER} frames are buffered, and a new
+ * batch is started when the loop has sent half of them. If the client has
+ * agreed on compression, frames are compressed while they are produced.
+ */
+class NioSession implements AdmissionController.Session {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(NioSession.class);
+	
+	private static final String
+		LOG_MSG_CONNECTED_TO = "Connected to %s.",
+		LOG_MSG_END_OF_DOCUMENT = "XML document completely send",
+		ERROR_MSG_LINE_TOO_LONG_FOR_BUFFER = "Line too long for buffer",
+		ERROR_MSG_INVALID_LINE_ENDING = "Invalid Line Ending ",
+		ERROR_MSG_UNKNOWN_REVISION = "Revision %d not found in %s";
+	
+	private static final int
+		REVISIONS_TO_BUFFER = SessionResources.REVISIONS_TO_BUFFER,
+		// Every frame is written as soon as it is ready.
+		BATCH_SIZE = 1;
+	
+	private enum State { READING_TOKEN, STARTING, STREAMING, CLOSED }
+	
+	/**
+	 * An action of the session that is run by the loop thread.
+	 */
+	private interface Action {
+		void run() throws Exception;
+	}
+	
+	/**
+	 * A score parsed by the loop thread that is yet to be recorded.
+	 */
+	private static class Score {
+		long revisionId;
+		float score;
+		
+		Score(long revisionId, float score) {
+			this.revisionId = revisionId;
+			this.score = score;
+		}
+	}
+	
+	private Configuration config;
+	private DataStore dataStore;
+	private AccessControl accessControl;
+	private AdmissionController admissionController;
+	private SessionResources resources;
+	private SessionContext session;
+	private IoLoop loop;
+	private ExecutorService workers;
+	private SocketChannel channel;
+	private SelectionKey key;
+	
+	private volatile State state = State.READING_TOKEN;
+	private Map<String,String> contextMap = new HashMap<>();
+	private Handshake handshake;
+	private long queueingMillis;
+	
+	// Accessed by the loop thread only; the buffers are pooled
+	private ByteBuffer lineBuffer;
+	private ResultParser resultParser = new ResultParser(null);
+	private boolean isHeaderRead = false;
+	private ByteBuffer handshakeResponse;
+	private ByteBuffer[] pendingFrame;
+	private int pendingFrameLength;
+	private boolean isOutputShutdown = false;
+	
+	// Shared between the loop thread and the worker threads. The window is
+	// filled by the loop and emptied by the worker recording the scores.
+	private BackpressureWindow window;
+	private ResultRecorder resultRecorder;
+	private Queue<Score> scores = new ConcurrentLinkedQueue<>();
+	private AtomicBoolean isRecording = new AtomicBoolean();
+	private volatile boolean isInputShutdown = false;
+	private FrameSource frameSource;
+	private FrameCompressor compressor;
+	private BlockingQueue<BinaryItem> frames;
+	private AtomicBoolean isProducing = new AtomicBoolean();
+	private volatile boolean isSourceExhausted = false;
+	private volatile SessionMetrics metrics;
+	
+	NioSession(Configuration config, DataStore dataStore,
+			AccessControl accessControl,
+			AdmissionController admissionController,
+			SessionResources resources, IoLoop loop,
+			ExecutorService workers, SocketChannel channel) {
+		this.config = config;
+		this.dataStore = dataStore;
+		this.accessControl = accessControl;
+		this.admissionController = admissionController;
+		this.resources = resources;
+		this.session = new SessionContext(config, accessControl, resources);
+		this.loop = loop;
+		this.workers = workers;
+		this.channel = channel;
+	}
+	
+	@Override
+	public String getClient() {
+		return channel.socket().getRemoteSocketAddress().toString();
+	}
+	
+	@Override
+	public void start(long queueingMillis) {
+		this.queueingMillis = queueingMillis;
+		this.lineBuffer = ByteBuffer.wrap(resources.acquireLineBuffer());
+		this.window = resources.acquireWindow();
+		this.frames = resources.acquireQueue();
+		loop.execute(this::open);
+	}
+	
+	@Override
+	public void refuse() {
+		try {
+			channel.close();
+		}
+		catch (IOException e) {
+			LOG.error("", e);
+		}
+	}
+	
+	/**
+	 * Registers the session with its loop. Must be run by the loop thread.
+	 */
+	private void open() {
+		dispatch(() -> {
+			key = loop.register(channel, SelectionKey.OP_READ, this);
+			accessControl.checkClientValidity(
+					channel.socket().getInetAddress());
+			LOG.info(String.format(LOG_MSG_CONNECTED_TO,
+					channel.socket().getInetAddress()));
+		});
+	}
+	
+	/**
+	 * Handles the events of the given key. Must be run by the loop thread.
+	 */
+	void handle(SelectionKey key) {
+		dispatch(() -> {
+			if (key.isReadable()) {
+				handleRead();
+			}
+			if (state == State.STREAMING && key.isWritable()) {
+				handleWrite();
+			}
+		});
+	}
+	
+	private void dispatch(Action action) {
+		MDC.setContextMap(contextMap);
+		try {
+			if (state != State.CLOSED) {
+				action.run();
+			}
+		}
+		catch (Throwable e) {
+			fail(e);
+		}
+		finally {
+			MDC.clear();
+		}
+	}
+	
+	private void fail(Throwable e) {
+		LOG.error("", e);
+		close();
+	}
+	
+	private void execute(Action action) {
+		loop.execute(() -> dispatch(action));
+	}
+	
+	private void handleRead() throws IOException {
+		int n = channel.read(lineBuffer);
+		if (n == -1) {
+			if (state == State.STREAMING) {
+				// The session is closed once the last scores are recorded.
+				isInputShutdown = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				scheduleRecording();
+			}
+			else {
+				close();
+			}
+			return;
+		}
+		consumeLines();
+		scheduleRecording();
+	}
+	
+	private void consumeLines() throws IOException {
+		lineBuffer.flip();
+		byte[] bytes = lineBuffer.array();
+		int lineStart = 0;
+		int end = lineBuffer.limit();
+		for (int i = 0; i < end - 1 && isReadingLines(); i++) {
+			if (bytes[i] == '\r') {
+				if (bytes[i + 1] != '\n') {
+					throw new IOException(
+							ERROR_MSG_INVALID_LINE_ENDING + bytes[i + 1]);
+				}
+				consumeLine(bytes, lineStart, i - lineStart);
+				lineStart = i + 2;
+				i++;
+			}
+		}
+		lineBuffer.position(lineStart);
+		lineBuffer.compact();
+		if (!lineBuffer.hasRemaining()) {
+			throw new IOException(ERROR_MSG_LINE_TOO_LONG_FOR_BUFFER);
+		}
+	}
+	
+	private boolean isReadingLines() {
+		return state == State.READING_TOKEN || state == State.STREAMING;
+	}
+	
+	private void consumeLine(byte[] bytes, int offset, int length)
+	throws IOException {
+		if (state == State.READING_TOKEN) {
+			handshake = Handshake.parse(
+					new String(bytes, offset, length, StandardCharsets.UTF_8));
+			state = State.STARTING;
+			key.interestOps(0);
+			workers.execute(this::prepare);
+		}
+		else if (!isHeaderRead) {
+			resultParser.checkHeader(
+					new String(bytes, offset, length, StandardCharsets.UTF_8));
+			isHeaderRead = true;
+		}
+		else {
+			resultParser.parseLine(bytes, offset, length);
+			scores.add(new Score(resultParser.getRevisionId(),
+					resultParser.getScore()));
+		}
+	}
+	
+	/**
+	 * Validates the access token and opens the files of the session. Run by
+	 * a worker thread.
+	 */
+	private void prepare() {
+		// Holding the lock, the session is not torn down while being opened.
+		synchronized (session) {
+			try {
+				if (state == State.CLOSED) {
+					return;
+				}
+				session.begin(handshake, queueingMillis);
+				contextMap = session.getContextMap();
+				if (session.negotiate(window, BATCH_SIZE)) {
+					handshakeResponse = ByteBuffer.wrap(handshake.getResponse()
+							.getBytes(StandardCharsets.UTF_8));
+				}
+				metrics = session.openMetrics();
+				metrics.registerGauge(SessionMetrics.FRAME_QUEUE, frames::size);
+				metrics.registerGauge(SessionMetrics.WINDOW, window::size);
+				compressor = session.openCompressor();
+				resultRecorder = session.openResultRecorder(window, resultParser);
+				frameSource = openFrameSource();
+				execute(this::startStreaming);
+			}
+			catch (Throwable e) {
+				loop.execute(() -> dispatch(() -> fail(e)));
+			}
+			finally {
+				MDC.clear();
+			}
+		}
+	}
+	
+	private FrameSource openFrameSource() throws IOException {
+		long firstRevisionId = config.getFirstRevisionId();
+		FramedDataset dataset = dataStore.getFramedDataset();
+		if (dataset != null) {
+			int firstPosition =
+					firstRevisionId < 0 ? 0 : dataset.indexOf(firstRevisionId);
+			return new FramedDatasetFrameSource(dataset, firstPosition);
+		}
+		
+		ItemSource revisions;
+		RevisionIndex revisionIndex = dataStore.getRevisionIndex();
+		if (revisionIndex != null) {
+			int firstPosition = firstRevisionId < 0 ?
+					0 : revisionIndex.indexOf(firstRevisionId);
+			if (firstRevisionId < 0 && revisionIndex.size() > 0) {
+				firstRevisionId = revisionIndex.getRevisionId(0);
+			}
+			revisions = new IndexedItemSource(
+					dataStore.getRevisions(), revisionIndex, firstPosition);
+		}
+		else {
+			InputStream inputStream = InputFiles.open(
+					config.getRevisionFile(), firstRevisionId,
+					config.getReadAheadBufferSize());
+			ParserItemSource parserSource = new ParserItemSource(
+					inputStream, RevisionParser::new, firstRevisionId);
+			revisions = parserSource;
+			if (firstRevisionId < 0) {
+				firstRevisionId = parserSource.peek().getRevisionId();
+			}
+		}
+		
+		RevisionIndex metadataIndex = dataStore.getMetadataIndex();
+		try {
+			ItemSource metadata;
+			if (metadataIndex != null) {
+				int firstPosition = metadataIndex.indexOf(firstRevisionId);
+				if (firstPosition == -1) {
+					String e = String.format(ERROR_MSG_UNKNOWN_REVISION,
+							firstRevisionId, metadataIndex.getFile());
+					throw new IllegalStateException(e);
+				}
+				metadata = new IndexedItemSource(
+						dataStore.getMetadata(), metadataIndex, firstPosition);
+			}
+			else {
+				InputStream inputStream = InputFiles.open(
+						config.getMetadataFile(), firstRevisionId,
+						config.getReadAheadBufferSize());
+				metadata = new ParserItemSource(
+						inputStream, MetadataParser::new, firstRevisionId);
+			}
+			return new PairedFrameSource(revisions, metadata);
+		}
+		catch (IOException | RuntimeException e) {
+			revisions.close();
+			throw e;
+		}
+	}
+	
+	private void startStreaming() throws IOException {
+		state = State.STREAMING;
+		key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		scheduleProduction();
+		// The client may have sent results along with the token.
+		consumeLines();
+		scheduleRecording();
+	}
+	
+	private void scheduleRecording() {
+		if ((!scores.isEmpty() || isInputShutdown) &&
+				isRecording.compareAndSet(false, true)) {
+			workers.execute(this::record);
+		}
+	}
+	
+	/**
+	 * Records the parsed scores and writes the complete results to the result
+	 * file. Closes the session once the client has sent all scores. Run by
+	 * one worker thread at a time.
+	 */
+	private void record() {
+		MDC.setContextMap(contextMap);
+		try {
+			synchronized (session) {
+				Score score;
+				while (state == State.STREAMING &&
+						(score = scores.poll()) != null) {
+					resultRecorder.recordResult(
+							score.revisionId, score.score);
+				}
+				if (state == State.STREAMING && isInputShutdown &&
+						scores.isEmpty()) {
+					resultRecorder.checkMissingResults();
+					execute(this::close);
+				}
+			}
+			isRecording.set(false);
+			execute(this::resumeAfterRecording);
+		}
+		catch (Throwable e) {
+			loop.execute(() -> dispatch(() -> fail(e)));
+		}
+		finally {
+			MDC.clear();
+		}
+	}
+	
+	private void resumeAfterRecording() throws IOException {
+		// Scores may have arrived while the worker was finishing.
+		scheduleRecording();
+		// Recorded scores may have made space in the window.
+		resumeWriting();
+	}
+	
+	private void scheduleProduction() {
+		if (!isSourceExhausted && frames.size() <= REVISIONS_TO_BUFFER / 2 &&
+				isProducing.compareAndSet(false, true)) {
+			workers.execute(this::produce);
+		}
+	}
+	
+	/**
+	 * Fills the frame buffer. Run by a worker thread.
+	 */
+	private void produce() {
+		MDC.setContextMap(contextMap);
+		try {
+			synchronized (frameSource) {
+				while (state == State.STREAMING && !isSourceExhausted &&
+						frames.remainingCapacity() > 0) {
+					BinaryItem frame = frameSource.next();
+					if (frame.getRevisionId() == Long.MAX_VALUE) {
+						isSourceExhausted = true;
+					}
+					else if (compressor != null) {
+						frame = compressor.compress(frame);
+					}
+					frames.add(frame);
+				}
+			}
+			isProducing.set(false);
+			execute(this::resumeWriting);
+		}
+		catch (Throwable e) {
+			loop.execute(() -> dispatch(() -> fail(e)));
+		}
+		finally {
+			MDC.clear();
+		}
+	}
+	
+	private void resumeWriting() throws IOException {
+		if (state == State.STREAMING) {
+			handleWrite();
+		}
+	}
+	
+	private void handleWrite() throws IOException {
+		if (handshakeResponse != null) {
+			channel.write(handshakeResponse);
+			if (handshakeResponse.hasRemaining()) {
+				setWriteInterest(true);
+				return;
+			}
+			handshakeResponse = null;
+		}
+		while (true) {
+			if (pendingFrame == null) {
+				if (isOutputShutdown || window.isFull()) {
+					setWriteInterest(false);
+					return;
+				}
+				BinaryItem frame = frames.poll();
+				scheduleProduction();
+				if (frame == null) {
+					setWriteInterest(false);
+					return;
+				}
+				if (frame.getRevisionId() == Long.MAX_VALUE) {
+					LOG.debug(LOG_MSG_END_OF_DOCUMENT);
+					channel.shutdownOutput();
+					isOutputShutdown = true;
+					setWriteInterest(false);
+					return;
+				}
+				window.offer(frame.getRevisionId());
+				pendingFrame = frame.getBuffers();
+				pendingFrameLength = frame.getLength();
+			}
+			channel.write(pendingFrame);
+			if (hasRemaining(pendingFrame)) {
+				setWriteInterest(true);
+				return;
+			}
+			pendingFrame = null;
+			metrics.revisionSent(pendingFrameLength);
+		}
+	}
+	
+	private static boolean hasRemaining(ByteBuffer[] buffers) {
+		for (int i = buffers.length - 1; i >= 0; i--) {
+			if (buffers[i].hasRemaining()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void setWriteInterest(boolean isInterested) {
+		int ops = key.interestOps();
+		if (isInterested) {
+			key.interestOps(ops | SelectionKey.OP_WRITE);
+		}
+		else {
+			key.interestOps(ops & ~SelectionKey.OP_WRITE);
+		}
+	}
+	
+	/**
+	 * Closes the connection. The rest of the session is torn down by a worker
+	 * thread, since closing the files may wait for the disk.
+	 */
+	private void close() {
+		if (state == State.CLOSED) {
+			return;
+		}
+		state = State.CLOSED;
+		admissionController.release();
+		try {
+			channel.close();
+		}
+		catch (IOException e) {
+			LOG.error("", e);
+		}
+		workers.execute(this::tearDown);
+	}
+	
+	/**
+	 * Closes the frame source and the files of the session and releases its
+	 * buffers once no worker thread opens the session, produces frames or
+	 * records scores anymore. Run by a worker thread.
+	 */
+	private void tearDown() {
+		MDC.setContextMap(contextMap);
+		try {
+			synchronized (session) {
+				if (frameSource != null) {
+					synchronized (frameSource) {
+						try {
+							frameSource.close();
+						}
+						catch (IOException e) {
+							LOG.error("", e);
+						}
+					}
+				}
+				if (compressor != null) {
+					LOG.info(compressor.getSummary());
+					compressor.close();
+				}
+				session.close();
+			}
+			session.release();
+			resources.releaseWindow(window);
+			resources.releaseLineBuffer(lineBuffer.array());
+			resources.releaseQueue(frames);
+		}
+		finally {
+			MDC.clear();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Pairs the items of a revision source with the items of a meta data source,
+ * like the {@link org.wsdmcup17.dataserver.Multiplexer Multiplexer} does.
+ */
+class PairedFrameSource implements FrameSource {
+	
+	private ItemSource revisions;
+	private ItemSource metadata;
+	
+	PairedFrameSource(ItemSource revisions, ItemSource metadata) {
+		this.revisions = revisions;
+		this.metadata = metadata;
+	}
+	
+	@Override
+	public BinaryItem next() throws IOException {
+		BinaryItem revision = revisions.next();
+		if (revision.getRevisionId() == Long.MAX_VALUE) {
+			return revision;
+		}
+		BinaryItem metadataItem = metadata.next();
+		ByteBuffer[] metadataBuffers = metadataItem.getBuffers();
+		ByteBuffer[] revisionBuffers = revision.getBuffers();
+		ByteBuffer[] buffers = new ByteBuffer[
+				metadataBuffers.length + revisionBuffers.length + 2];
+		int i = 0;
+		buffers[i++] = lengthOf(metadataItem);
+		for (ByteBuffer buffer : metadataBuffers) {
+			buffers[i++] = buffer;
+		}
+		buffers[i++] = lengthOf(revision);
+		for (ByteBuffer buffer : revisionBuffers) {
+			buffers[i++] = buffer;
+		}
+		return new BinaryItem(revision.getRevisionId(), buffers);
+	}
+	
+	private static ByteBuffer lengthOf(BinaryItem item) {
+		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+		buffer.putInt(item.getLength());
+		buffer.flip();
+		return buffer;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			revisions.close();
+		}
+		finally {
+			metadata.close();
+		}
+	}
+}
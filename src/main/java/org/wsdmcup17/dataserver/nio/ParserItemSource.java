@@ -0,0 +1,68 @@
+package org.wsdmcup17.dataserver.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.wsdmcup17.dataserver.store.RevisionIndex.ParserFactory;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.FilterProcessor;
+import org.wsdmcup17.dataserver.util.ItemProcessor;
+import org.wsdmcup17.dataserver.util.LineParser;
+
+/**
+ * Pulls items from a parser by letting it consume the input stream piecemeal
+ * until it has produced the next item.
+ */
+class ParserItemSource implements ItemSource, ItemProcessor {
+	
+	private InputStream inputStream;
+	private LineParser parser;
+	private Deque<BinaryItem> items = new ArrayDeque<>();
+	private boolean hasMoreBytes = true;
+	
+	/**
+	 * @param firstRevisionId
+	 *            the ID of the first revision to provide or -1 to start at the
+	 *            beginning of the file
+	 */
+	ParserItemSource(InputStream inputStream, ParserFactory parserFactory,
+			long firstRevisionId) {
+		this.inputStream = inputStream;
+		ItemProcessor processor = this;
+		if (firstRevisionId >= 0) {
+			processor = new FilterProcessor(processor, firstRevisionId);
+		}
+		this.parser = parserFactory.create(processor, inputStream);
+	}
+	
+	@Override
+	public void processItem(BinaryItem item) {
+		items.addLast(item);
+	}
+	
+	@Override
+	public BinaryItem next() throws IOException {
+		BinaryItem item = peek();
+		items.pollFirst();
+		return item;
+	}
+	
+	/**
+	 * Returns the next item without removing it from the stream.
+	 */
+	BinaryItem peek() throws IOException {
+		while (items.isEmpty() && hasMoreBytes) {
+			hasMoreBytes = parser.consumeBuffer();
+		}
+		BinaryItem item = items.peekFirst();
+		// The sentinel is repeated once the parser has been exhausted.
+		return item != null ? item : new BinaryItem(Long.MAX_VALUE, new byte[0]);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+}
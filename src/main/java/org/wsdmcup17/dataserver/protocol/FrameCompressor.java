@@ -0,0 +1,183 @@
+package org.wsdmcup17.dataserver.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+
+/**
+ * Compresses the meta data and the revision of frames for clients that have
+ * agreed on {@link Handshake#COMPRESSION_DEFLATE}. Both are compressed on
+ * their own in the zlib format with the preset dictionary
+ * {@value #DICTIONARY_RESOURCE}, which contains strings common in the
+ * revision and meta files, such that every item can be decompressed on its
+ * own and even small items compress well.
+ * 
+ * A compressor is used by one thread at a time and reuses its buffers for
+ * all frames. It must be closed to release the memory of the
+ * {@link Deflater}.
+ */
+public class FrameCompressor implements Closeable {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(FrameCompressor.class);
+	
+	/**
+	 * The preset dictionary, a resource next to this class.
+	 */
+	public static final String
+		DICTIONARY_RESOURCE = "dictionary.txt";
+	
+	private static final String
+		LOG_MSG_SUMMARY = "Compressed %d bytes of frames to %d bytes " +
+			"(%.1f%%) in %d ms.";
+	
+	private static final int
+		INITIAL_BUFFER_SIZE = 64 * 1024;
+	
+	private static final byte[] DICTIONARY = loadDictionary();
+	
+	private Deflater deflater;
+	private SessionMetrics metrics;
+	private byte[] input = new byte[INITIAL_BUFFER_SIZE];
+	private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+	private long inputBytes;
+	private long outputBytes;
+	private long nanos;
+	
+	public FrameCompressor(int level, SessionMetrics metrics) {
+		this.deflater = new Deflater(level);
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Returns the preset dictionary the client needs for decompressing.
+	 */
+	public static byte[] getDictionary() {
+		return DICTIONARY.clone();
+	}
+	
+	private static byte[] loadDictionary() {
+		try (InputStream input = FrameCompressor.class.getResourceAsStream(
+				DICTIONARY_RESOURCE)) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = input.read(buffer)) != -1) {
+				output.write(buffer, 0, n);
+			}
+			return output.toByteArray();
+		}
+		catch (IOException e) {
+			LOG.error("", e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Returns the compressed frame of the given meta data and revision.
+	 */
+	public BinaryItem compress(BinaryItem metadata, BinaryItem revision) {
+		long startNanos = System.nanoTime();
+		int metadataLength = copy(metadata, 0);
+		int revisionLength = copy(revision, metadataLength) - metadataLength;
+		return compress(revision.getRevisionId(), 0, metadataLength,
+				metadataLength, revisionLength, startNanos);
+	}
+	
+	/**
+	 * Returns the compressed frame of the given uncompressed frame.
+	 */
+	public BinaryItem compress(BinaryItem frame) {
+		long startNanos = System.nanoTime();
+		copy(frame, 0);
+		ByteBuffer buffer = ByteBuffer.wrap(input);
+		int metadataLength = buffer.getInt(0);
+		int revisionOffset = 2 * Integer.BYTES + metadataLength;
+		int revisionLength = buffer.getInt(revisionOffset - Integer.BYTES);
+		return compress(frame.getRevisionId(), Integer.BYTES, metadataLength,
+				revisionOffset, revisionLength, startNanos);
+	}
+	
+	private BinaryItem compress(long revisionId, int metadataOffset,
+			int metadataLength, int revisionOffset, int revisionLength,
+			long startNanos) {
+		int end = deflate(metadataOffset, metadataLength, 0);
+		end = deflate(revisionOffset, revisionLength, end);
+		BinaryItem frame = new BinaryItem(revisionId,
+				Arrays.copyOf(output, end));
+		long frameNanos = System.nanoTime() - startNanos;
+		int frameBytes = 2 * Integer.BYTES + metadataLength + revisionLength;
+		inputBytes += frameBytes;
+		outputBytes += end;
+		nanos += frameNanos;
+		metrics.frameCompressed(frameBytes, end, frameNanos);
+		return frame;
+	}
+	
+	/**
+	 * Copies the bytes of the given item to the input buffer at the given
+	 * position and returns the position after them.
+	 */
+	private int copy(BinaryItem item, int position) {
+		int end = position + item.getLength();
+		if (end > input.length) {
+			input = Arrays.copyOf(input, Math.max(end, 2 * input.length));
+		}
+		for (ByteBuffer buffer : item.getBuffers()) {
+			int length = buffer.remaining();
+			buffer.get(input, position, length);
+			position += length;
+		}
+		return end;
+	}
+	
+	/**
+	 * Writes the length and the compressed bytes of the given range of the
+	 * input buffer to the output buffer at the given position and returns the
+	 * position after them.
+	 */
+	private int deflate(int offset, int length, int position) {
+		int start = position + Integer.BYTES;
+		int end = start;
+		if (start >= output.length) {
+			output = Arrays.copyOf(output, 2 * output.length);
+		}
+		deflater.reset();
+		deflater.setDictionary(DICTIONARY);
+		deflater.setInput(input, offset, length);
+		deflater.finish();
+		while (!deflater.finished()) {
+			if (end == output.length) {
+				output = Arrays.copyOf(output, 2 * output.length);
+			}
+			end += deflater.deflate(output, end, output.length - end);
+		}
+		ByteBuffer.wrap(output).putInt(position, end - start);
+		return end;
+	}
+	
+	/**
+	 * Returns the bytes of all frames compressed so far, the bytes they have
+	 * been compressed to, and the time compressing took, for logging.
+	 */
+	public String getSummary() {
+		return String.format(LOG_MSG_SUMMARY, inputBytes, outputBytes,
+				inputBytes == 0 ? 0.0 : 100.0 * outputBytes / inputBytes,
+				TimeUnit.NANOSECONDS.toMillis(nanos));
+	}
+	
+	@Override
+	public void close() {
+		deflater.end();
+	}
+}
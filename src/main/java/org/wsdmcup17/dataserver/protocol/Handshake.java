@@ -0,0 +1,253 @@
+package org.wsdmcup17.dataserver.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The optional handshake of the protocol. Instead of only the access token, a
+ * client may send the token followed by parameters, each preceded by a
+ * semicolon:
+ * 
+ * <pre>
+ * token;v=2;window=8;batch=1;compression=deflate;level=1;scores=csv
+ * </pre>
+ * 
+ * The server then answers with a line of the same form (without the token)
+ * giving the values it has agreed to, before it sends the first frame.
+ * Parameters the server does not know are ignored and values it does not
+ * support are replaced by the closest ones it supports, such that a client
+ * learns the capabilities of the server from the answer. Clients sending only
+ * the token, or agreeing on version 1, speak version 1 of the protocol, get no
+ * answer and use the defaults of the server.
+ */
+public class Handshake {
+	
+	public static final int
+		VERSION_1 = 1,
+		VERSION_2 = 2,
+		MAX_VERSION = VERSION_2,
+		DEFAULT_COMPRESSION_LEVEL = 1;
+	
+	/**
+	 * With {@link #COMPRESSION_DEFLATE}, frames are compressed by a
+	 * {@link FrameCompressor}.
+	 */
+	public static final String
+		COMPRESSION_NONE = "none",
+		COMPRESSION_DEFLATE = "deflate",
+		SCORES_CSV = "csv";
+	
+	private static final String
+		PARAMETER_SEPARATOR = ";",
+		VALUE_SEPARATOR = "=",
+		KEY_VERSION = "v",
+		KEY_WINDOW = "window",
+		KEY_BATCH = "batch",
+		KEY_COMPRESSION = "compression",
+		KEY_LEVEL = "level",
+		KEY_SCORES = "scores",
+		CRLF = "\r\n",
+		ERROR_MSG_INVALID_PARAMETER = "Invalid handshake parameter: %s";
+	
+	private String token;
+	private Map<String,String> parameters = new HashMap<>();
+	
+	// The agreed values
+	private int version = VERSION_1;
+	private int windowSize;
+	private int batchSize;
+	private String compression = COMPRESSION_NONE;
+	private int compressionLevel = 0;
+	private String scores = SCORES_CSV;
+	
+	private Handshake(String token) {
+		this.token = token;
+	}
+	
+	/**
+	 * Parses the first line sent by the client.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a parameter is not of the form key=value
+	 */
+	public static Handshake parse(String line) {
+		String[] parts = line.split(PARAMETER_SEPARATOR, -1);
+		Handshake handshake = new Handshake(parts[0]);
+		for (int i = 1; i < parts.length; i++) {
+			int separator = parts[i].indexOf(VALUE_SEPARATOR);
+			if (separator < 1) {
+				throw new IllegalArgumentException(
+						String.format(ERROR_MSG_INVALID_PARAMETER, parts[i]));
+			}
+			handshake.parameters.put(parts[i].substring(0, separator).trim(),
+					parts[i].substring(separator + 1).trim());
+		}
+		return handshake;
+	}
+	
+	public String getToken() {
+		return token;
+	}
+	
+	/**
+	 * Returns the first line of a client sending a handshake, including the
+	 * line ending.
+	 * 
+	 * @param compressionLevel
+	 *            the requested Deflate level, or 0 for uncompressed frames
+	 */
+	public static String createRequest(String token, int windowSize,
+			int batchSize, int compressionLevel) {
+		return token +
+			PARAMETER_SEPARATOR + KEY_VERSION + VALUE_SEPARATOR + MAX_VERSION +
+			PARAMETER_SEPARATOR + KEY_WINDOW + VALUE_SEPARATOR + windowSize +
+			PARAMETER_SEPARATOR + KEY_BATCH + VALUE_SEPARATOR + batchSize +
+			PARAMETER_SEPARATOR + KEY_COMPRESSION + VALUE_SEPARATOR +
+			(compressionLevel > 0 ? COMPRESSION_DEFLATE : COMPRESSION_NONE) +
+			PARAMETER_SEPARATOR + KEY_LEVEL + VALUE_SEPARATOR +
+			compressionLevel +
+			PARAMETER_SEPARATOR + KEY_SCORES + VALUE_SEPARATOR + SCORES_CSV +
+			CRLF;
+	}
+	
+	/**
+	 * Parses the answer of the server, i.e., the agreed values.
+	 */
+	public static Handshake parseResponse(String line) {
+		Handshake handshake = parse(PARAMETER_SEPARATOR + line);
+		handshake.version = handshake.getInt(KEY_VERSION, VERSION_1);
+		handshake.windowSize = handshake.getInt(KEY_WINDOW, 0);
+		handshake.batchSize = handshake.getInt(KEY_BATCH, 0);
+		handshake.compression = handshake.parameters.getOrDefault(
+				KEY_COMPRESSION, COMPRESSION_NONE);
+		handshake.compressionLevel = handshake.getInt(KEY_LEVEL, 0);
+		handshake.scores =
+				handshake.parameters.getOrDefault(KEY_SCORES, SCORES_CSV);
+		return handshake;
+	}
+	
+	/**
+	 * Returns whether the client has agreed on version 2 or later and hence
+	 * expects an answer. Must only be called after {@link #negotiate}.
+	 */
+	public boolean isRequested() {
+		return version >= VERSION_2;
+	}
+	
+	/**
+	 * Agrees on the values requested by the client within the given bounds.
+	 * Values the client has not requested are set to the defaults of the
+	 * server, as are all values if the client agrees on version 1.
+	 * 
+	 * @param defaultWindowSize
+	 *            the size of the backpressure window for clients not
+	 *            requesting a size
+	 * @param maxWindowSize
+	 *            the largest backpressure window the server allows
+	 * @param maxBatchSize
+	 *            the largest number of frames the server writes at once,
+	 *            which is also the default
+	 * @param maxCompressionLevel
+	 *            the highest Deflate level the server allows, or 0 if it does
+	 *            not compress frames
+	 */
+	public void negotiate(int defaultWindowSize, int maxWindowSize,
+			int maxBatchSize, int maxCompressionLevel) {
+		windowSize = Math.min(defaultWindowSize, maxWindowSize);
+		batchSize = maxBatchSize;
+		if (parameters.isEmpty()) {
+			return;
+		}
+		version = clamp(getInt(KEY_VERSION, MAX_VERSION), VERSION_1,
+				MAX_VERSION);
+		if (version == VERSION_1) {
+			// The client does not read an answer, so nothing is changed.
+			return;
+		}
+		windowSize = clamp(getInt(KEY_WINDOW, windowSize), 1, maxWindowSize);
+		batchSize = clamp(getInt(KEY_BATCH, batchSize), 1, maxBatchSize);
+		if (COMPRESSION_DEFLATE.equals(parameters.get(KEY_COMPRESSION)) &&
+				maxCompressionLevel > 0) {
+			compression = COMPRESSION_DEFLATE;
+			compressionLevel = clamp(
+					getInt(KEY_LEVEL, DEFAULT_COMPRESSION_LEVEL),
+					1, maxCompressionLevel);
+		}
+		// Further score encodings are offered once implemented.
+		scores = SCORES_CSV;
+	}
+	
+	private int getInt(String key, int defaultValue) {
+		String value = parameters.get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format(
+					ERROR_MSG_INVALID_PARAMETER, key + VALUE_SEPARATOR + value));
+		}
+	}
+	
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+	
+	public int getVersion() {
+		return version;
+	}
+	
+	public int getWindowSize() {
+		return windowSize;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public String getCompression() {
+		return compression;
+	}
+	
+	/**
+	 * Returns whether frames are compressed by a {@link FrameCompressor}.
+	 */
+	public boolean isCompressed() {
+		return COMPRESSION_DEFLATE.equals(compression);
+	}
+	
+	/**
+	 * Returns the Deflate level of compressed frames or 0.
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+	
+	public String getScores() {
+		return scores;
+	}
+	
+	/**
+	 * Returns the line answering the handshake, including the line ending.
+	 */
+	public String getResponse() {
+		return toString() + CRLF;
+	}
+	
+	/**
+	 * Returns the agreed values in the form of the answer.
+	 */
+	@Override
+	public String toString() {
+		return KEY_VERSION + VALUE_SEPARATOR + version +
+			PARAMETER_SEPARATOR + KEY_WINDOW + VALUE_SEPARATOR + windowSize +
+			PARAMETER_SEPARATOR + KEY_BATCH + VALUE_SEPARATOR + batchSize +
+			PARAMETER_SEPARATOR + KEY_COMPRESSION + VALUE_SEPARATOR +
+			compression +
+			PARAMETER_SEPARATOR + KEY_LEVEL + VALUE_SEPARATOR +
+			compressionLevel +
+			PARAMETER_SEPARATOR + KEY_SCORES + VALUE_SEPARATOR + scores;
+	}
+}
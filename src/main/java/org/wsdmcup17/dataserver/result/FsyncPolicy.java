@@ -0,0 +1,17 @@
+package org.wsdmcup17.dataserver.result;
+
+/**
+ * When the results of a session are forced to disk, i.e., when they survive
+ * a crash of the host.
+ */
+public enum FsyncPolicy {
+	
+	/** Results are left to the operating system to write. */
+	NONE,
+	
+	/** Results are forced to disk shortly after they have been written. */
+	PERIODIC,
+	
+	/** Results are forced to disk once when the session ends. */
+	SESSION_END
+}
@@ -1,6 +1,7 @@
 package org.wsdmcup17.dataserver.result;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -8,8 +9,13 @@ import org.apache.commons.csv.CSVRecord;
 import org.wsdmcup17.dataserver.util.NonBlockingLineBufferedInputStream;
 
 /**
- * Parses the scoring results provided in CSV format and converts them to
- * {@link Result} objects.
+ * Parses the scoring results provided in CSV format. The revision ID and
+ * score of the last parsed line are available via {@link #getRevisionId()}
+ * and {@link #getScore()}.
+ * 
+ * Lines consisting of an integer and a decimal number are parsed directly
+ * from their bytes without allocating any objects. All other lines, e.g.,
+ * with quoted fields, are parsed as RFC 4180 records.
  */
 public class ResultParser {
 	
@@ -25,29 +31,69 @@ public class ResultParser {
 	public static final CSVFormat
 		CSV_FORMAT = CSVFormat.RFC4180.withHeader(RESULT_CSV_HEADER);
 	
+	private static final int
+		// Longer revision IDs might overflow
+		MAX_ID_DIGITS = 18,
+		// Further significant digits are ignored, as they hardly change the
+		// value, and only matter near the midpoint between two floats
+		MAX_SCORE_DIGITS = 18,
+		MAX_EXACT_POWER_OF_TEN = 22,
+		// Bits of a double's significand that a float does not have
+		FLOAT_DROPPED_BITS = 52 - 23,
+		// Distance in double ulps from the midpoint between two floats below
+		// which rounding to float might differ from Float.parseFloat
+		MIDPOINT_TOLERANCE = 4;
+	
+	private static final double[] POWERS_OF_TEN =
+			new double[MAX_EXACT_POWER_OF_TEN + 1];
+	
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+	
 	private NonBlockingLineBufferedInputStream lineInputStream;
 	private boolean isFirstRow = true;
 	
+	private long revisionId;
+	private float score;
+	
 	public ResultParser(NonBlockingLineBufferedInputStream lineInputStream) {
 		this.lineInputStream = lineInputStream;
 	}
 
-	public Result parseResult() throws IOException {
+	/**
+	 * Reads and parses the next result.
+	 * 
+	 * @return whether a result has been read or the end of the stream has been
+	 *         reached
+	 */
+	public boolean parseResult() throws IOException {
 		if (isFirstRow) {
 			String line = lineInputStream.readLine();
 			checkHeader(line);
 			isFirstRow = false;
 		}
-		String line = lineInputStream.readLine();
-		if (line == null) {
-			return null;
+		int length = lineInputStream.readLineBytes();
+		if (length == -1) {
+			return false;
 		}
 		else {
-			return parseLine(line);
+			parseLine(lineInputStream.getLineBuffer(),
+					lineInputStream.getLineOffset(), length);
+			return true;
 		}
 	}
 	
-	private void checkHeader(String line) throws IOException {
+	/**
+	 * Checks the header line of the results.
+	 * 
+	 * @throws IOException
+	 *             if the line is not the expected header
+	 */
+	public void checkHeader(String line) throws IOException {
 		CSVRecord csvRecord = parseLineRecord(line);
 		int size = csvRecord.size();
 		if(size != 2) {
@@ -65,10 +111,141 @@ public class ResultParser {
 		return parser.getRecords().get(0);
 	}
 	
-	public Result parseLine(String line) throws IOException {
+	/**
+	 * Parses the given line without its line ending.
+	 */
+	public void parseLine(byte[] line, int offset, int length)
+	throws IOException {
+		if (!parseNumericLine(line, offset, offset + length)) {
+			parseLine(new String(line, offset, length, StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Parses the given line without its line ending as RFC 4180 record.
+	 */
+	public void parseLine(String line) throws IOException {
 		CSVRecord csvRecord = parseLineRecord(line);
-		long revisionId = Long.parseLong(csvRecord.get(REVISION_ID));
-		float score = Float.parseFloat(csvRecord.get(VANDALISM_SCORE));
-		return new Result(revisionId, score);
+		revisionId = Long.parseLong(csvRecord.get(REVISION_ID));
+		score = Float.parseFloat(csvRecord.get(VANDALISM_SCORE));
+	}
+	
+	public long getRevisionId() {
+		return revisionId;
+	}
+	
+	public float getScore() {
+		return score;
+	}
+	
+	/**
+	 * Parses a line of the form <code>123,0.456</code>, where the score may
+	 * have a sign and an exponent.
+	 * 
+	 * @return whether the line has this form and the score could be rounded
+	 *         exactly as by {@link Float#parseFloat(String)}
+	 */
+	private boolean parseNumericLine(byte[] line, int start, int end) {
+		int i = start;
+		long id = 0;
+		for (; i < end && isDigit(line[i]); i++) {
+			id = id * 10 + (line[i] - '0');
+		}
+		if (i == start || i - start > MAX_ID_DIGITS ||
+				i == end || line[i] != ',') {
+			return false;
+		}
+		i++;
+		
+		boolean isNegative = false;
+		if (i < end && (line[i] == '-' || line[i] == '+')) {
+			isNegative = line[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		int mantissaStart = i;
+		for (; i < end && isDigit(line[i]); i++) {
+			if (digits < MAX_SCORE_DIGITS) {
+				mantissa = mantissa * 10 + (line[i] - '0');
+				digits += mantissa == 0 ? 0 : 1;
+			}
+			else {
+				exponent++;
+			}
+		}
+		int integerDigits = i - mantissaStart;
+		int fractionDigits = 0;
+		if (i < end && line[i] == '.') {
+			i++;
+			for (; i < end && isDigit(line[i]); i++, fractionDigits++) {
+				if (digits < MAX_SCORE_DIGITS) {
+					mantissa = mantissa * 10 + (line[i] - '0');
+					digits += mantissa == 0 ? 0 : 1;
+					exponent--;
+				}
+			}
+		}
+		if (integerDigits + fractionDigits == 0) {
+			return false;
+		}
+		if (i < end && (line[i] == 'e' || line[i] == 'E')) {
+			i++;
+			boolean isExponentNegative = false;
+			if (i < end && (line[i] == '-' || line[i] == '+')) {
+				isExponentNegative = line[i] == '-';
+				i++;
+			}
+			int exponentStart = i;
+			int explicitExponent = 0;
+			for (; i < end && isDigit(line[i]) && explicitExponent < 1000;
+					i++) {
+				explicitExponent = explicitExponent * 10 + (line[i] - '0');
+			}
+			if (i == exponentStart) {
+				return false;
+			}
+			exponent += isExponentNegative ?
+					-explicitExponent : explicitExponent;
+		}
+		if (i != end) {
+			return false;
+		}
+		
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		}
+		else if (exponent < -MAX_EXACT_POWER_OF_TEN ||
+				exponent > MAX_EXACT_POWER_OF_TEN) {
+			return false;
+		}
+		else if (exponent < 0) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		}
+		else {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}
+		if (value > Float.MAX_VALUE || (value != 0 &&
+				(value < Float.MIN_NORMAL || isNearFloatMidpoint(value)))) {
+			return false;
+		}
+		revisionId = id;
+		score = (float) (isNegative ? -value : value);
+		return true;
+	}
+	
+	// Whether the value might round to the other neighboring float if it was
+	// computed without any error, which is at most a few double ulps
+	private static boolean isNearFloatMidpoint(double value) {
+		long dropped = Double.doubleToRawLongBits(value) &
+				((1L << FLOAT_DROPPED_BITS) - 1);
+		long midpoint = 1L << (FLOAT_DROPPED_BITS - 1);
+		return Math.abs(dropped - midpoint) <= MIDPOINT_TOLERANCE;
+	}
+	
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
 	}
 }
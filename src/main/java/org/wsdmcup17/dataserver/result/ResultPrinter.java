@@ -1,23 +1,208 @@
 package org.wsdmcup17.dataserver.result;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.csv.CSVPrinter;
+import org.wsdmcup17.dataserver.metrics.SessionMetrics;
+import org.wsdmcup17.dataserver.util.ReusableWriter;
 
 /**
- * Writes a {@link Result} to a CSV file.
+ * Writes the scores of revisions to a CSV file in groups.
+ * 
+ * Rows are collected in a buffer, which is swapped with a second buffer and
+ * written to the file at once as soon as {@link #COMMIT_BYTES} have been
+ * collected or the commit interval has passed. Both are done by a timer thread
+ * shared by all sessions, which also forces the file to disk according to
+ * the {@link FsyncPolicy}. The thread recording the scores only takes the lock
+ * of the buffer, while the timer thread writes to the file under a separate
+ * lock, such that the recording thread never waits for the disk.
  */
-public class ResultPrinter {
+public class ResultPrinter implements Closeable {
 	
-	CSVPrinter csvPrinter;
+	private static final String
+		CRLF = "\r\n",
+		HEADER = String.join(",", ResultParser.RESULT_CSV_HEADER) + CRLF,
+		THREAD_NAME_TIMER = "Result Commit Timer";
 	
-	public ResultPrinter(CSVPrinter csvPrinter) {
-		this.csvPrinter = csvPrinter;
+	/**
+	 * The number of bytes written at once, such that the buffer of the
+	 * writer needs to be a bit larger.
+	 */
+	public static final int
+		COMMIT_BYTES = 32768;
+	
+	private static final ScheduledExecutorService TIMER =
+			Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, THREAD_NAME_TIMER);
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	private ReusableWriter writer;
+	private FileChannel channel;
+	private FsyncPolicy fsyncPolicy;
+	private SessionMetrics metrics;
+	private ScheduledFuture<?> timer;
+	
+	// Guarded by lock, which the recording thread takes
+	private ReentrantLock lock = new ReentrantLock();
+	private StringBuilder rows = new StringBuilder(COMMIT_BYTES);
+	private boolean isCommitScheduled;
+	
+	// Guarded by commitLock, which is held while writing to the disk
+	private ReentrantLock commitLock = new ReentrantLock();
+	private StringBuilder committedRows = new StringBuilder(COMMIT_BYTES);
+	private boolean isFsyncPending;
+	private boolean isClosed;
+	
+	private volatile IOException timerException;
+	
+	/**
+	 * Opens the given file and writes the header.
+	 * 
+	 * @param writer
+	 *            a closed writer with a buffer larger than
+	 *            {@link #COMMIT_BYTES}
+	 * @param commitMillis
+	 *            the time after which written rows are committed at the latest
+	 */
+	public ResultPrinter(ReusableWriter writer, File file,
+			FsyncPolicy fsyncPolicy, long commitMillis, SessionMetrics metrics)
+	throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		this.writer = writer;
+		this.channel = out.getChannel();
+		this.fsyncPolicy = fsyncPolicy;
+		this.metrics = metrics;
+		writer.open(out);
+		rows.append(HEADER);
+		timer = TIMER.scheduleWithFixedDelay(this::commitOnTime,
+				commitMillis, commitMillis, TimeUnit.MILLISECONDS);
 	}
-
-	public void printResult(Result scoringResult) throws IOException {
-		csvPrinter.print(scoringResult.getRevisionId());
-		csvPrinter.print(scoringResult.getScore());
-		csvPrinter.println();		
+	
+	public void printResult(long revisionId, float score)
+	throws IOException {
+		if (timerException != null) {
+			throw timerException;
+		}
+		lock.lock();
+		try {
+			rows.append(revisionId).append(',').append(score).append(CRLF);
+			if (rows.length() >= COMMIT_BYTES && !isCommitScheduled) {
+				isCommitScheduled = true;
+				TIMER.execute(this::commitInBackground);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	// Swaps the buffers, such that the rows are written to the file while
+	// the recording thread collects further rows in the other buffer.
+	private void commit() throws IOException {
+		commitLock.lock();
+		try {
+			if (isClosed) {
+				return;
+			}
+			lock.lock();
+			try {
+				StringBuilder swappedRows = rows;
+				rows = committedRows;
+				committedRows = swappedRows;
+				isCommitScheduled = false;
+			}
+			finally {
+				lock.unlock();
+			}
+			if (committedRows.length() == 0) {
+				return;
+			}
+			long startNanos = System.nanoTime();
+			writer.append(committedRows);
+			writer.flush();
+			metrics.resultsCommitted(committedRows.length(),
+					System.nanoTime() - startNanos);
+			committedRows.setLength(0);
+			isFsyncPending = true;
+		}
+		finally {
+			commitLock.unlock();
+		}
+	}
+	
+	private void commitInBackground() {
+		try {
+			if (timerException == null) {
+				commit();
+			}
+		}
+		catch (IOException e) {
+			timerException = e;
+		}
+	}
+	
+	private void commitOnTime() {
+		commitLock.lock();
+		try {
+			if (timerException == null) {
+				commit();
+				if (fsyncPolicy == FsyncPolicy.PERIODIC && isFsyncPending &&
+						!isClosed) {
+					fsync();
+				}
+			}
+		}
+		catch (IOException e) {
+			timerException = e;
+		}
+		finally {
+			commitLock.unlock();
+		}
+	}
+	
+	// Called with the commit lock held
+	private void fsync() throws IOException {
+		isFsyncPending = false;
+		long startNanos = System.nanoTime();
+		channel.force(false);
+		metrics.resultsSynced(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Commits the remaining rows, forces them to disk unless the policy is
+	 * {@link FsyncPolicy#NONE}, and closes the file and the writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		timer.cancel(false);
+		commitLock.lock();
+		try {
+			if (timerException != null) {
+				throw timerException;
+			}
+			commit();
+			if (fsyncPolicy != FsyncPolicy.NONE && !isClosed) {
+				fsync();
+			}
+		}
+		finally {
+			isClosed = true;
+			try {
+				writer.close();
+			}
+			finally {
+				commitLock.unlock();
+			}
+		}
 	}
 }
@@ -8,7 +8,8 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.wsdmcup17.dataserver.util.SynchronizedBoundedBlockingMapQueue;
+import org.wsdmcup17.dataserver.metrics.LatencyRecorder;
+import org.wsdmcup17.dataserver.util.BackpressureWindow;
 
 /**
  * Thread parsing and validating scoring results.
@@ -31,17 +32,20 @@ public class ResultRecorder implements Runnable {
 	private Map<String,String> contextMap;
 	private ResultParser resultParser;
 	private ResultPrinter resultPrinter;
-	private SynchronizedBoundedBlockingMapQueue<Long, Result> mapQueue;
+	private BackpressureWindow window;
+	private LatencyRecorder latencyRecorder;
 	private long lastMillis = 0;
 	
 	public ResultRecorder(Map<String,String> contextMap,
-		SynchronizedBoundedBlockingMapQueue<Long, Result> mapQueue,
-		ResultParser resultParser, ResultPrinter resultPrinter
+		BackpressureWindow window,
+		ResultParser resultParser, ResultPrinter resultPrinter,
+		LatencyRecorder latencyRecorder
 	) {
 		this.contextMap = contextMap;
-		this.mapQueue = mapQueue;
+		this.window = window;
 		this.resultParser = resultParser;
 		this.resultPrinter = resultPrinter;
+		this.latencyRecorder = latencyRecorder;
 	}
 	
 	public void run() {
@@ -49,15 +53,12 @@ public class ResultRecorder implements Runnable {
 		
 		try {
 			while (!Thread.currentThread().isInterrupted()) {
-				Result parsedResult = resultParser.parseResult();
-				if (parsedResult != null) {
-					consumeResult(parsedResult);
+				if (resultParser.parseResult()) {
+					recordResult(resultParser.getRevisionId(),
+							resultParser.getScore());
 				}
 				else {
-					if (mapQueue.size() > 0) {
-						String e = createErrorMsg();
-						throw new IllegalStateException(e);
-					}
+					checkMissingResults();
 					// The last result has been read and written.	
 					break;
 				}
@@ -69,47 +70,61 @@ public class ResultRecorder implements Runnable {
 		}
 	}
 
+	/**
+	 * Checks that the scores of all revisions in the window have been
+	 * recorded, which must be the case after the last result has been read.
+	 */
+	public void checkMissingResults() {
+		if (window.size() > 0) {
+			String e = createErrorMsg();
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private String createErrorMsg() {
 		List<Long> missing = new ArrayList<Long>();
-		while (mapQueue.size() > 0) {
-			missing.add(mapQueue.peek().getRevisionId());
-			mapQueue.remove();
+		long sequence;
+		while ((sequence = window.peek()) != -1) {
+			missing.add(window.getRevisionId(sequence));
+			window.remove();
 		}
 		return String.format(ERROR_MSG_MISSING_REVISION_SCORES, missing);
 	}
 
-	private void consumeResult(Result parsedResult)
-	throws InterruptedException, IOException {
-		long revisionId = parsedResult.getRevisionId();
-		Result queueResult = mapQueue.get(revisionId);
-		if (queueResult == null) {
+	/**
+	 * Records the given result and writes all results that are complete in
+	 * the order the revisions have been sent.
+	 */
+	public void recordResult(long revisionId, float score) throws IOException {
+		long sequence = window.find(revisionId);
+		if (sequence == -1) {
 			String e = String.format(ERROR_MSG_UNEXPECTED_REVISION, revisionId);
 			throw new IllegalStateException(e);
 		}
-		if (queueResult.getScore() != null) {
+		if (window.isScored(sequence)) {
 			String e = String.format(ERROR_MSG_DUPLICATE_REVISION, revisionId);
 			throw new IllegalStateException(e);
 		}					
-		queueResult.setScore(parsedResult.getScore());
+		window.setScore(sequence, score);
+		latencyRecorder.record(window.getSendNanos(sequence));
 
-		writeResults(mapQueue, resultPrinter);
+		writeResults();
 	}
 	
-	private void writeResults(
-		SynchronizedBoundedBlockingMapQueue<Long, Result> mapQueue,
-		ResultPrinter resultPrinter
-	) throws IOException {
+	private void writeResults() throws IOException {
 		while(true){
-			Result result = mapQueue.peek();
-			if (result != null && result.getScore() != null) {
+			long sequence = window.peek();
+			if (sequence != -1 && window.isScored(sequence)) {
+				long revisionId = window.getRevisionId(sequence);
 				if (System.currentTimeMillis() - lastMillis > DELAY){
 					LOG.debug(String.format(
 						LOG_MSG_WRITING_REVISION_RESULT_AT_QUEUE_SIZE,
-						result.getRevisionId(), mapQueue.size()));
+						revisionId, window.size()));
 					lastMillis = System.currentTimeMillis();
 				}
-				resultPrinter.printResult(result);
-				mapQueue.remove();
+				resultPrinter.printResult(
+						revisionId, window.getScore(sequence));
+				window.remove();
 			}
 			else {
 				break;
@@ -1,6 +1,7 @@
 package org.wsdmcup17.dataserver.revision;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.wsdmcup17.dataserver.util.BinaryItem;
 import org.wsdmcup17.dataserver.util.ItemProcessor;
@@ -12,10 +13,10 @@ import org.wsdmcup17.dataserver.util.LineParser;
  */
 public class RevisionParser extends LineParser {
 
-	private static final String REVISION_OPENING_TAG = "    <revision>";
-	private static final String REVISION_CLOSING_TAG = "    </revision>";
-	private static final String REVISION_ID_OPENING_TAG = "      <id>";
-	private static final String REVISION_ID_CLOSING_TAG = "</id>";
+	private static final byte[] REVISION_OPENING_TAG = bytes("    <revision>");
+	private static final byte[] REVISION_CLOSING_TAG = bytes("    </revision>");
+	private static final byte[] REVISION_ID_OPENING_TAG = bytes("      <id>");
+	private static final byte[] REVISION_ID_CLOSING_TAG = bytes("</id>");
 
 	private enum State {
 		EXPECT_REVISION, EXPECT_REVISION_ID, EXPECT_REVISION_CLOSING_TAG
@@ -28,30 +29,31 @@ public class RevisionParser extends LineParser {
 	}
 
 	@Override
-	protected void consumeLine(String line) {
-		if (line == null){ // end of file
-			appendToItem();
-			processLastItem();
-			return;
-		}
-		
+	protected void consumeEndOfFile() {
+		appendToItem();
+		processLastItem();
+	}
+
+	@Override
+	protected void consumeLine(byte[] line, int offset, int length) {
 		switch (state) {
 		case EXPECT_REVISION:
-			if (line.equals(REVISION_OPENING_TAG)) {
+			if (equals(line, offset, length, REVISION_OPENING_TAG)) {
 				state = State.EXPECT_REVISION_ID;
 				processLastItem();
 			}
 			break;
 		case EXPECT_REVISION_ID:
-			if (line.startsWith(REVISION_ID_OPENING_TAG)) {
-				String revisionId = getSubstring(
-					line, REVISION_ID_OPENING_TAG, REVISION_ID_CLOSING_TAG);
-				curRevisionId = Long.parseLong(revisionId);
+			if (startsWith(line, offset, length, REVISION_ID_OPENING_TAG)) {
+				curRevisionId = parseLong(line,
+					offset + REVISION_ID_OPENING_TAG.length,
+					length - REVISION_ID_OPENING_TAG.length
+						- REVISION_ID_CLOSING_TAG.length);
 				state = State.EXPECT_REVISION_CLOSING_TAG;
 			}
 			break;
 		case EXPECT_REVISION_CLOSING_TAG:
-			if (line.equals(REVISION_CLOSING_TAG)) {
+			if (equals(line, offset, length, REVISION_CLOSING_TAG)) {
 				state = State.EXPECT_REVISION;
 				endItem();
 			}
@@ -61,8 +63,8 @@ public class RevisionParser extends LineParser {
 		}
 	}
 
-	private String getSubstring(String s, String start, String end) {
-		return s.substring(start.length(), s.length() - end.length());
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
 	}
 }
 
@@ -1,6 +1,7 @@
 package org.wsdmcup17.dataserver.revision;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -8,20 +9,28 @@ import java.util.concurrent.BlockingQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.wsdmcup17.dataserver.store.IndexedItemReader;
+import org.wsdmcup17.dataserver.store.MaterializedFile;
+import org.wsdmcup17.dataserver.store.RevisionIndex;
 import org.wsdmcup17.dataserver.util.AsyncInputStream;
 import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.FilterProcessor;
+import org.wsdmcup17.dataserver.util.InputFiles;
+import org.wsdmcup17.dataserver.util.ItemProcessor;
 import org.wsdmcup17.dataserver.util.QueueProcessor;
 import org.wsdmcup17.dataserver.util.SevenZInputStream;
 
 /**
  * Thread reading revisions from a file, parsing them and putting them into a
- * queue.
+ * queue. If a materialized revision file with an index is available, the
+ * revisions are read from there without parsing, starting right at the first
+ * revision of the session.
  */
 public class RevisionProvider implements Runnable {
 
 	private static final String REVISION_DECOMPRESSOR =
 			"%s: Revision Decompressor";
-	private static final int BUFFER_SIZE = 512 * 1024 * 1024;
+	public static final int DEFAULT_BUFFER_SIZE = 512 * 1024 * 1024;
 
 	private static final Logger LOG = LoggerFactory.getLogger(RevisionProvider.class);
 	
@@ -29,33 +38,118 @@ public class RevisionProvider implements Runnable {
 	private ThreadGroup threadGroup;
 	private BlockingQueue<BinaryItem> queue;
 	private File file;
-	private RevisionParser parser;
+	private MaterializedFile materializedFile;
+	private RevisionIndex index;
+	private long firstRevisionId;
+	private int bufferSize;
 	
+	/**
+	 * @param materializedFile
+	 *            the materialized revision file or <code>null</code>
+	 * @param index
+	 *            the index of the materialized file or <code>null</code>
+	 * @param firstRevisionId
+	 *            the ID of the first revision to provide or -1 to start at the
+	 *            beginning of the file
+	 * @param bufferSize
+	 *            the number of bytes a 7z file is decompressed ahead of time
+	 *            at most
+	 */
 	public RevisionProvider(Map<String,String> contextMap,
-		ThreadGroup threadGroup, BlockingQueue<BinaryItem> queue, File file) {
+		ThreadGroup threadGroup, BlockingQueue<BinaryItem> queue, File file,
+		MaterializedFile materializedFile, RevisionIndex index,
+		long firstRevisionId, int bufferSize) {
 		
 		this.contextMap = contextMap;
 		this.threadGroup = threadGroup;
 		this.queue = queue;
 		this.file = file;
+		this.materializedFile = materializedFile;
+		this.index = index;
+		this.firstRevisionId = firstRevisionId;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Returns the size of the buffer a provider allocates at most for
+	 * decompressing the given file ahead of time.
+	 * 
+	 * @param materializedFile
+	 *            the materialized revision file or <code>null</code>
+	 */
+	public static long getMaxBufferSize(File file,
+			MaterializedFile materializedFile, int bufferSize)
+	throws IOException {
+		if (materializedFile != null) {
+			return 0;
+		}
+		else if (InputFiles.isChunked(file)) {
+			return InputFiles.getMaxBufferSize(file, bufferSize);
+		}
+		return bufferSize;
 	}
 
 	public void run() {
 		MDC.setContextMap(contextMap);
 		
+		try {
+			if (materializedFile != null && index != null) {
+				consumeIndexedFile();
+			}
+			else if (materializedFile != null) {
+				consumeMaterializedFile();
+			}
+			else if (InputFiles.isChunked(file)) {
+				consumeChunkedFile();
+			}
+			else {
+				consumeCompressedFile();
+			}
+		} catch (Throwable e) {
+			LOG.error("", e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void consumeIndexedFile() throws Exception {
+		int firstPosition =
+				firstRevisionId < 0 ? 0 : index.indexOf(firstRevisionId);
+		new IndexedItemReader(new QueueProcessor(queue), materializedFile,
+				index, firstPosition).consumeFile();
+	}
+	
+	private void consumeMaterializedFile() throws Exception {
+		try (InputStream input = materializedFile.openStream(0)) {
+			new RevisionParser(createProcessor(), input).consumeFile();
+		}
+	}
+	
+	// Chunks are decompressed in parallel by a separate worker pool.
+	private void consumeChunkedFile() throws Exception {
+		try (InputStream input =
+				InputFiles.open(file, firstRevisionId, bufferSize)) {
+			new RevisionParser(createProcessor(), input).consumeFile();
+		}
+	}
+	
+	private void consumeCompressedFile() throws Exception {
 		try (
 			InputStream	sevenZInput = new SevenZInputStream(file);
 			InputStream asyncInput = new AsyncInputStream(
 				threadGroup,
 				String.format(REVISION_DECOMPRESSOR, threadGroup.getName()),
 				sevenZInput,
-				BUFFER_SIZE);
+				bufferSize);
 		){
-			parser = new RevisionParser(new QueueProcessor(queue), asyncInput);
-			parser.consumeFile();
-		} catch (Throwable e) {
-			LOG.error("", e);
-			throw new RuntimeException(e);
+			new RevisionParser(createProcessor(), asyncInput).consumeFile();
+		}
+	}
+	
+	private ItemProcessor createProcessor() {
+		ItemProcessor processor = new QueueProcessor(queue);
+		if (firstRevisionId >= 0) {
+			processor = new FilterProcessor(processor, firstRevisionId);
 		}
+		return processor;
 	}
-}
\ No newline at end of file
+}
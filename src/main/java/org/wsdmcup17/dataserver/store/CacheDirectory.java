@@ -0,0 +1,79 @@
+package org.wsdmcup17.dataserver.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates files in the cache directory exactly once, even if several threads
+ * and server processes on the same host try to create the same file at the
+ * same time.
+ */
+class CacheDirectory {
+	
+	private static final String
+		EXT_LOCK = ".lock",
+		EXT_TMP = ".tmp",
+		ERROR_MSG_CANNOT_CREATE_DIRECTORY = "Cannot create directory %s";
+	
+	// Locks for threads of this JVM (file locks are held by the whole JVM)
+	private static final ConcurrentMap<String, Object>
+		LOCKS = new ConcurrentHashMap<>();
+	
+	interface FileCreator {
+		void create(File tmpFile) throws IOException;
+	}
+	
+	interface FileValidator {
+		boolean isValid(File file) throws IOException;
+	}
+	
+	private CacheDirectory() { }
+	
+	static void mkdirs(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			String e = String.format(ERROR_MSG_CANNOT_CREATE_DIRECTORY, dir);
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Creates the given file unless it exists and is valid. The creator
+	 * writes to a temporary file, which atomically replaces the given file
+	 * afterwards. Hence, no process ever sees an incomplete file.
+	 */
+	static void createOnce(File file, FileValidator validator,
+			FileCreator creator) throws IOException {
+		Object lock = LOCKS.computeIfAbsent(file.getPath(), k -> new Object());
+		synchronized (lock) {
+			File lockFile = new File(file.getPath() + EXT_LOCK);
+			try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock fileLock = lockChannel.lock();
+				try {
+					if (file.exists() && validator.isValid(file)) {
+						return;
+					}
+					File tmpFile = new File(file.getPath() + EXT_TMP);
+					creator.create(tmpFile);
+					try (FileChannel channel = FileChannel.open(
+							tmpFile.toPath(), StandardOpenOption.WRITE)) {
+						channel.force(true);
+					}
+					Files.move(tmpFile.toPath(), file.toPath(),
+							StandardCopyOption.ATOMIC_MOVE,
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+				finally {
+					fileLock.release();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.wsdmcup17.dataserver.store;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.wsdmcup17.dataserver.Configuration;
+import org.wsdmcup17.dataserver.dataset.FramedDataset;
+import org.wsdmcup17.dataserver.metadata.MetadataParser;
+import org.wsdmcup17.dataserver.revision.RevisionParser;
+
+/**
+ * Data prepared once at server startup and shared by all sessions. Without a
+ * configured framed dataset or cache path, nothing is prepared and every
+ * session decompresses the input files on its own.
+ */
+public class DataStore {
+	
+	private MaterializedFile revisions;
+	private MaterializedFile metadata;
+	private RevisionIndex revisionIndex;
+	private RevisionIndex metadataIndex;
+	private FramedDataset framedDataset;
+	
+	private static final String
+		ERROR_MSG_UNKNOWN_FIRST_REVISION = "First revision %d not found in %s";
+	
+	private DataStore() { }
+	
+	public static DataStore open(Configuration config) throws IOException {
+		DataStore dataStore = new DataStore();
+		File cachePath = config.getCachePath();
+		if (config.getFramedFile() != null) {
+			dataStore.framedDataset =
+					FramedDataset.open(config.getFramedFile());
+			long firstRevisionId = config.getFirstRevisionId();
+			if (firstRevisionId >= 0 &&
+				dataStore.framedDataset.indexOf(firstRevisionId) == -1) {
+				String e = String.format(ERROR_MSG_UNKNOWN_FIRST_REVISION,
+						firstRevisionId, config.getFramedFile());
+				throw new IllegalArgumentException(e);
+			}
+		}
+		else if (cachePath != null) {
+			dataStore.revisions = MaterializedFile.materialize(
+					config.getRevisionFile(), cachePath,
+					config.getReadAheadBufferSize());
+			dataStore.metadata = MaterializedFile.materialize(
+					config.getMetadataFile(), cachePath,
+					config.getReadAheadBufferSize());
+			dataStore.revisionIndex = RevisionIndex.open(
+					dataStore.revisions, RevisionParser::new);
+			dataStore.metadataIndex = RevisionIndex.open(
+					dataStore.metadata, MetadataParser::new);
+			long firstRevisionId = config.getFirstRevisionId();
+			if (firstRevisionId >= 0) {
+				checkContains(dataStore.revisionIndex, firstRevisionId);
+				checkContains(dataStore.metadataIndex, firstRevisionId);
+			}
+		}
+		return dataStore;
+	}
+	
+	private static void checkContains(RevisionIndex index, long revisionId) {
+		if (index.indexOf(revisionId) == -1) {
+			String e = String.format(ERROR_MSG_UNKNOWN_FIRST_REVISION,
+					revisionId, index.getFile());
+			throw new IllegalArgumentException(e);
+		}
+	}
+	
+	/**
+	 * Returns the materialized revision file or <code>null</code> if there is
+	 * none.
+	 */
+	public MaterializedFile getRevisions() {
+		return revisions;
+	}
+	
+	/**
+	 * Returns the materialized metadata file or <code>null</code> if there is
+	 * none.
+	 */
+	public MaterializedFile getMetadata() {
+		return metadata;
+	}
+	
+	/**
+	 * Returns the index of the materialized revision file or
+	 * <code>null</code> if there is none.
+	 */
+	public RevisionIndex getRevisionIndex() {
+		return revisionIndex;
+	}
+	
+	/**
+	 * Returns the index of the materialized metadata file or
+	 * <code>null</code> if there is none.
+	 */
+	public RevisionIndex getMetadataIndex() {
+		return metadataIndex;
+	}
+	
+	/**
+	 * Returns the framed dataset or <code>null</code> if there is none. If
+	 * there is one, sessions neither read the revision nor the metadata file.
+	 */
+	public FramedDataset getFramedDataset() {
+		return framedDataset;
+	}
+}
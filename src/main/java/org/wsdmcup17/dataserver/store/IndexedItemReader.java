@@ -0,0 +1,62 @@
+package org.wsdmcup17.dataserver.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.ItemProcessor;
+
+/**
+ * Reads the items of a {@link MaterializedFile} by means of its
+ * {@link RevisionIndex}, starting at an arbitrary position without parsing
+ * the preceding items. The items are slices of the memory-mapped file. Like
+ * a parser, the reader forwards every item to the given
+ * {@link ItemProcessor} and terminates the item stream with a sentinel.
+ */
+public class IndexedItemReader {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(IndexedItemReader.class);
+	
+	private static final String
+		LOG_MSG_END_OF_FILE = "end of file reached";
+	
+	private ItemProcessor processor;
+	private MaterializedFile file;
+	private RevisionIndex index;
+	private int firstPosition;
+	
+	private volatile boolean isStopping;
+	
+	public IndexedItemReader(ItemProcessor processor, MaterializedFile file,
+			RevisionIndex index, int firstPosition) {
+		this.processor = processor;
+		this.file = file;
+		this.index = index;
+		this.firstPosition = firstPosition;
+	}
+	
+	public void consumeFile() throws IOException {
+		int position = firstPosition;
+		while (position < index.size() &&
+				!isStopping && !Thread.currentThread().isInterrupted()) {
+			ByteBuffer[] buffers = file.slice(
+					index.getOffset(position), index.getLength(position));
+			processor.processItem(
+					new BinaryItem(index.getRevisionId(position), buffers));
+			position++;
+		}
+		if (position == index.size()) {
+			LOG.debug(LOG_MSG_END_OF_FILE);
+			
+			// send sentinel to indicate end of item stream
+			processor.processItem(new BinaryItem(Long.MAX_VALUE, new byte[0]));
+		}
+	}
+	
+	public void stop() {
+		isStopping = true;
+	}
+}
@@ -0,0 +1,127 @@
+package org.wsdmcup17.dataserver.store;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.util.CrlfOutputStream;
+import org.wsdmcup17.dataserver.util.FileFingerprint;
+import org.wsdmcup17.dataserver.util.InputFiles;
+import org.wsdmcup17.dataserver.util.MappedFile;
+
+/**
+ * The decompressed contents of a compressed input file, materialized once in a
+ * cache directory on local disk and memory-mapped for reading.
+ * 
+ * The name of the materialized file contains the fingerprint of the
+ * compressed file. Hence, all sessions and all server processes on a host
+ * share the same materialized file (and the same pages in the page cache) as
+ * long as they serve the same input file. Line endings are normalized to
+ * <code>\r\n</code> such that the bytes of the materialized file are exactly
+ * the bytes the parsers forward to the clients.
+ */
+public class MaterializedFile {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(MaterializedFile.class);
+	
+	private static final String
+		FILE_NAME_PATTERN = "%s-%s.raw",
+		LOG_MSG_MATERIALIZING = "Materializing %s to %s...",
+		LOG_MSG_MATERIALIZING_DONE = "Materializing %s to %s...done.",
+		LOG_MSG_USING = "Using materialized file %s.";
+	
+	private static final int
+		COPY_BUFFER_SIZE = 1024 * 1024;
+	
+	private File compressedFile;
+	private String fingerprint;
+	private MappedFile mappedFile;
+	
+	private MaterializedFile(File compressedFile, String fingerprint,
+			File file) throws IOException {
+		this.compressedFile = compressedFile;
+		this.fingerprint = fingerprint;
+		this.mappedFile = new MappedFile(file);
+	}
+	
+	/**
+	 * Returns the materialized contents of the given compressed file, and
+	 * decompresses it into the cache directory unless this has already been
+	 * done by this or another process.
+	 * 
+	 * @param lookaheadSize
+	 *            the bytes a chunked file is decompressed ahead at most
+	 */
+	public static MaterializedFile materialize(File compressedFile,
+			File cacheDir, int lookaheadSize) throws IOException {
+		CacheDirectory.mkdirs(cacheDir);
+		String fingerprint = FileFingerprint.of(compressedFile);
+		String fileName = String.format(FILE_NAME_PATTERN,
+				compressedFile.getName(), fingerprint);
+		File file = new File(cacheDir, fileName).getAbsoluteFile();
+		CacheDirectory.createOnce(file, f -> true,
+				tmpFile -> decompress(compressedFile, file, tmpFile,
+						lookaheadSize));
+		LOG.info(String.format(LOG_MSG_USING, file));
+		return new MaterializedFile(compressedFile, fingerprint, file);
+	}
+	
+	private static void decompress(File compressedFile, File file,
+			File tmpFile, int lookaheadSize) throws IOException {
+		LOG.info(String.format(LOG_MSG_MATERIALIZING, compressedFile, file));
+		try (
+			InputStream inputStream =
+				InputFiles.open(compressedFile, lookaheadSize);
+			OutputStream outputStream = new CrlfOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile),
+					COPY_BUFFER_SIZE));
+		) {
+			IOUtils.copyLarge(inputStream, outputStream,
+					new byte[COPY_BUFFER_SIZE]);
+		}
+		LOG.info(String.format(LOG_MSG_MATERIALIZING_DONE, compressedFile,
+				file));
+	}
+	
+	public File getCompressedFile() {
+		return compressedFile;
+	}
+	
+	/**
+	 * Returns the {@link FileFingerprint} of the compressed file.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	
+	public File getFile() {
+		return mappedFile.getFile();
+	}
+	
+	public long length() {
+		return mappedFile.length();
+	}
+	
+	/**
+	 * Returns the given range of the materialized file as slices of the
+	 * memory mapping (without copying any bytes).
+	 */
+	public ByteBuffer[] slice(long offset, int length) {
+		return mappedFile.slice(offset, length);
+	}
+	
+	/**
+	 * Opens a new stream reading the materialized file from the given offset.
+	 */
+	public InputStream openStream(long offset) {
+		return mappedFile.openStream(offset);
+	}
+}
@@ -0,0 +1,310 @@
+package org.wsdmcup17.dataserver.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.util.BinaryItem;
+import org.wsdmcup17.dataserver.util.ItemProcessor;
+import org.wsdmcup17.dataserver.util.LineParser;
+
+/**
+ * Persistent index mapping revision IDs to the offset and length of the
+ * corresponding items in a {@link MaterializedFile}.
+ * 
+ * The index is built once by parsing the materialized file and stored next to
+ * it. It records the size and fingerprint of the compressed file it has been
+ * built from and is rebuilt if they do not match. The index file is
+ * memory-mapped, so loading it takes only milliseconds and lookups are binary
+ * searches over the mapped revision IDs.
+ */
+public class RevisionIndex {
+	
+	private static final Logger
+		LOG = LoggerFactory.getLogger(RevisionIndex.class);
+	
+	private static final String
+		EXT_INDEX = ".idx",
+		LOG_MSG_BUILDING = "Building index %s...",
+		LOG_MSG_BUILDING_DONE = "Building index %s...done (%d items).",
+		LOG_MSG_USING = "Using index %s (%d items).",
+		ERROR_MSG_INCONSISTENT_INDEX =
+			"Items of %d bytes do not cover file of %d bytes: %s";
+	
+	private static final long
+		MAGIC = 0x5744564349445831L; // "WDVCIDX1"
+	
+	private static final int
+		VERSION = 1,
+		HEADER_SIZE = 128,
+		FINGERPRINT_LENGTH = 40;
+	
+	/**
+	 * Creates the parser that splits a materialized file into items.
+	 */
+	public interface ParserFactory {
+		LineParser create(ItemProcessor processor, InputStream inputStream);
+	}
+	
+	private File file;
+	private int size;
+	private boolean isSorted;
+	private LongBuffer revisionIds;
+	private LongBuffer offsets;
+	private IntBuffer lengths;
+	private IntBuffer order; // positions sorted by revision ID if not sorted
+	
+	private RevisionIndex(File file) throws IOException {
+		this.file = file;
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			Header h = Header.read(header);
+			size = h.size;
+			isSorted = h.isSorted;
+			long position = HEADER_SIZE;
+			revisionIds = channel.map(MapMode.READ_ONLY, position, 8L * size)
+					.asLongBuffer();
+			position += 8L * size;
+			offsets = channel.map(MapMode.READ_ONLY, position, 8L * size)
+					.asLongBuffer();
+			position += 8L * size;
+			lengths = channel.map(MapMode.READ_ONLY, position, 4L * size)
+					.asIntBuffer();
+			position += 4L * size;
+			if (!isSorted) {
+				order = channel.map(MapMode.READ_ONLY, position, 4L * size)
+						.asIntBuffer();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the given materialized file, and builds it unless
+	 * this has already been done by this or another process.
+	 */
+	public static RevisionIndex open(MaterializedFile materializedFile,
+			ParserFactory parserFactory) throws IOException {
+		File file = new File(materializedFile.getFile().getPath() + EXT_INDEX);
+		CacheDirectory.createOnce(file,
+			f -> isValid(f, materializedFile),
+			tmpFile -> build(materializedFile, parserFactory, file, tmpFile));
+		RevisionIndex index = new RevisionIndex(file);
+		LOG.info(String.format(LOG_MSG_USING, file, index.size()));
+		return index;
+	}
+	
+	private static boolean isValid(File file,
+			MaterializedFile materializedFile) throws IOException {
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1);
+			buffer.flip();
+			Header header = Header.read(buffer);
+			return header.magic == MAGIC && header.version == VERSION &&
+				header.compressedLength ==
+					materializedFile.getCompressedFile().length() &&
+				header.fingerprint.equals(materializedFile.getFingerprint()) &&
+				header.materializedLength == materializedFile.length();
+		}
+	}
+	
+	private static void build(MaterializedFile materializedFile,
+			ParserFactory parserFactory, File file, File tmpFile)
+	throws IOException {
+		LOG.info(String.format(LOG_MSG_BUILDING, file));
+		IndexBuilder builder = new IndexBuilder();
+		try (InputStream inputStream = materializedFile.openStream(0)) {
+			parserFactory.create(builder, inputStream).consumeFile();
+		}
+		if (builder.offset != materializedFile.length()) {
+			String e = String.format(ERROR_MSG_INCONSISTENT_INDEX,
+					builder.offset, materializedFile.length(),
+					materializedFile.getFile());
+			throw new IOException(e);
+		}
+		
+		Header header = new Header();
+		header.magic = MAGIC;
+		header.version = VERSION;
+		header.compressedLength = materializedFile.getCompressedFile().length();
+		header.fingerprint = materializedFile.getFingerprint();
+		header.materializedLength = materializedFile.length();
+		header.size = builder.size;
+		header.isSorted = builder.isSorted();
+		
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			header.write(out);
+			for (int i = 0; i < builder.size; i++) {
+				out.writeLong(builder.revisionIds[i]);
+			}
+			for (int i = 0; i < builder.size; i++) {
+				out.writeLong(builder.offsets[i]);
+			}
+			for (int i = 0; i < builder.size; i++) {
+				out.writeInt(builder.lengths[i]);
+			}
+			if (!header.isSorted) {
+				for (int position : builder.getOrder()) {
+					out.writeInt(position);
+				}
+			}
+		}
+		LOG.info(String.format(LOG_MSG_BUILDING_DONE, file, builder.size));
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns the number of items in the index.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the position of the item with the given revision ID or -1 if
+	 * there is no such item.
+	 */
+	public int indexOf(long revisionId) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int position = isSorted ? mid : order.get(mid);
+			long midRevisionId = revisionIds.get(position);
+			if (midRevisionId < revisionId) {
+				low = mid + 1;
+			}
+			else if (midRevisionId > revisionId) {
+				high = mid - 1;
+			}
+			else {
+				return position;
+			}
+		}
+		return -1;
+	}
+	
+	public long getRevisionId(int position) {
+		return revisionIds.get(position);
+	}
+	
+	public long getOffset(int position) {
+		return offsets.get(position);
+	}
+	
+	public int getLength(int position) {
+		return lengths.get(position);
+	}
+	
+	private static class Header {
+		long magic;
+		int version;
+		long compressedLength;
+		String fingerprint;
+		long materializedLength;
+		int size;
+		boolean isSorted;
+		
+		static Header read(ByteBuffer buffer) {
+			Header header = new Header();
+			header.magic = buffer.getLong();
+			header.version = buffer.getInt();
+			header.compressedLength = buffer.getLong();
+			byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+			buffer.get(fingerprint);
+			header.fingerprint =
+					new String(fingerprint, StandardCharsets.US_ASCII);
+			header.materializedLength = buffer.getLong();
+			header.size = buffer.getInt();
+			header.isSorted = buffer.get() != 0;
+			return header;
+		}
+		
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(magic);
+			out.writeInt(version);
+			out.writeLong(compressedLength);
+			out.write(Arrays.copyOf(
+				fingerprint.getBytes(StandardCharsets.US_ASCII),
+				FINGERPRINT_LENGTH));
+			out.writeLong(materializedLength);
+			out.writeInt(size);
+			out.writeBoolean(isSorted);
+			out.write(new byte[HEADER_SIZE - out.size()]);
+		}
+	}
+	
+	/**
+	 * Records the offset and length of every item. Items cover the
+	 * materialized file without gaps.
+	 */
+	private static class IndexBuilder implements ItemProcessor {
+		
+		private static final int INITIAL_CAPACITY = 1024;
+		
+		long[] revisionIds = new long[INITIAL_CAPACITY];
+		long[] offsets = new long[INITIAL_CAPACITY];
+		int[] lengths = new int[INITIAL_CAPACITY];
+		int size = 0;
+		long offset = 0;
+
+		@Override
+		public void processItem(BinaryItem item) {
+			if (item.getRevisionId() == Long.MAX_VALUE) { // end of file
+				return;
+			}
+			if (size == revisionIds.length) {
+				revisionIds = Arrays.copyOf(revisionIds, 2 * size);
+				offsets = Arrays.copyOf(offsets, 2 * size);
+				lengths = Arrays.copyOf(lengths, 2 * size);
+			}
+			int length = item.getLength();
+			revisionIds[size] = item.getRevisionId();
+			offsets[size] = offset;
+			lengths[size] = length;
+			size++;
+			offset += length;
+		}
+		
+		boolean isSorted() {
+			for (int i = 1; i < size; i++) {
+				if (revisionIds[i - 1] >= revisionIds[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		Integer[] getOrder() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) ->
+					Long.compare(revisionIds[a], revisionIds[b]));
+			return order;
+		}
+	}
+}
@@ -2,44 +2,109 @@ package org.wsdmcup17.dataserver.util;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.compress.utils.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
+
 /**
  * An input stream that splits the processing of the stream into two threads.
+ * 
+ * The writing thread reads the underlying stream into fixed-size chunks of
+ * direct memory and passes them to the reading thread through a lock-free
+ * {@link SpscRing}. The number of chunks in flight is bounded by the given
+ * buffer size. Chunks are taken from a pool shared by all streams only when
+ * they are needed, i.e., when the reading thread falls behind, and are
+ * returned to it once they have been read, such that the buffers neither
+ * occupy the heap nor have to be garbage collected.
+ * 
+ * The chunks taken by all streams together are bounded, such that they and
+ * the idle chunks of the pool fit into the direct memory of the JVM (given by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size). If all
+ * chunks are taken, the writing threads wait for chunks to be returned.
  */
-public class AsyncInputStream extends PipedInputStream {
+public class AsyncInputStream extends InputStream {
 	
 	private static final Logger
 		LOG = LoggerFactory.getLogger(AsyncInputStream.class);
 	
+	private static final String
+		ERROR_MSG_STREAM_CLOSED = "Stream closed",
+		ERROR_MSG_WRITER_FAILED = "Reading the underlying stream failed";
+	
+	private static final int
+		COPY_BUFFER_SIZE = 64 * 1024,
+		CHUNK_SIZE = 256 * 1024,
+		// Idle chunks kept for reuse (128 MB)
+		POOL_CAPACITY = 512,
+		// Enough for a writing and a reading thread to make progress
+		MIN_CHUNKS = 16,
+		PERMIT_WAIT_MILLIS = 100;
+	
+	private static final ObjectPool<ByteBuffer> CHUNK_POOL = new ObjectPool<>(
+			POOL_CAPACITY, () -> ByteBuffer.allocateDirect(CHUNK_SIZE),
+			ByteBuffer::clear);
+	
+	// One permit per chunk that may be taken by a stream
+	private static final Semaphore CHUNK_PERMITS =
+			new Semaphore(getMaxChunks());
+	
 	private Thread thread;
+	private SpscRing<ByteBuffer> ring;
+	private volatile Throwable writerError;
+	
+	// Accessed by the reading thread only
+	private ByteBuffer chunk;
+	private boolean isClosed = false;
 	
+	/**
+	 * @param threadGroup
+	 *            the thread group of the thread reading the given stream. If
+	 *            the group is also a {@link ThreadFactory}, the thread is
+	 *            created by the group (e.g., as a virtual thread).
+	 * @param bufferSize
+	 *            the number of bytes the given stream is read ahead at most
+	 */
 	public AsyncInputStream(
 			final ThreadGroup threadGroup, String threadName,
 			InputStream inputStream, int bufferSize
-	) throws IOException {		
-		super(bufferSize);
-		final PipedOutputStream pipedOutputStream = new PipedOutputStream();
-		this.connect(pipedOutputStream);
-		thread = new Thread(threadGroup, threadName) {
-			@Override
-			public void run() {
-				try {					
-					IOUtils.copy(inputStream, pipedOutputStream);
+	) throws IOException {
+		this.ring = new SpscRing<>(Math.max(1, bufferSize / CHUNK_SIZE));
+		Runnable task = () -> {
+			try {
+				try {
+					copy(inputStream);
+				}
+				finally {
 					inputStream.close();
-					pipedOutputStream.close();					
 				}
-				catch (Throwable e) {
-					LOG.error("", e);
-					throw new RuntimeException(e);
+			}
+			catch (Throwable e) {
+				if (ring.isClosed()) {
+					// The reader has closed the stream before its end.
+					return;
 				}
+				writerError = e;
+				LOG.error("", e);
+				throw new RuntimeException(e);
+			}
+			finally {
+				ring.finish();
 			}
 		};
+		if (threadGroup instanceof ThreadFactory) {
+			thread = ((ThreadFactory) threadGroup).newThread(task);
+			thread.setName(threadName);
+		}
+		else {
+			thread = new Thread(threadGroup, task, threadName);
+		}
 		thread.start();
 	}
 	
@@ -48,10 +113,135 @@ public class AsyncInputStream extends PipedInputStream {
 	) throws IOException {		
 		this(null, threadName, inputStream, bufferSize);
 	}
+	
+	/**
+	 * Returns the number of chunks that fit into the direct memory besides the
+	 * idle chunks of the pool.
+	 */
+	private static int getMaxChunks() {
+		long maxDirectMemory = Runtime.getRuntime().maxMemory();
+		try {
+			HotSpotDiagnosticMXBean diagnostics = ManagementFactory
+					.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			long value = Long.parseLong(diagnostics
+					.getVMOption("MaxDirectMemorySize").getValue());
+			if (value > 0) {
+				maxDirectMemory = value;
+			}
+		}
+		catch (RuntimeException e) {
+			// Not a HotSpot JVM; the default is assumed.
+		}
+		long maxChunks = maxDirectMemory / CHUNK_SIZE - POOL_CAPACITY;
+		return (int) Math.min(Integer.MAX_VALUE,
+				Math.max(MIN_CHUNKS, maxChunks));
+	}
+	
+	/**
+	 * Takes a chunk from the pool, waiting if all chunks are taken.
+	 */
+	private ByteBuffer acquireChunk()
+	throws IOException, InterruptedException {
+		while (!CHUNK_PERMITS.tryAcquire(
+				PERMIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (ring.isClosed()) {
+				throw new IOException(ERROR_MSG_STREAM_CLOSED);
+			}
+		}
+		return CHUNK_POOL.acquire();
+	}
+	
+	private static void releaseChunk(ByteBuffer chunk) {
+		if (chunk != null) {
+			CHUNK_POOL.release(chunk);
+			CHUNK_PERMITS.release();
+		}
+	}
+	
+	private void copy(InputStream inputStream)
+	throws IOException, InterruptedException {
+		byte[] bytes = new byte[COPY_BUFFER_SIZE];
+		ByteBuffer writeChunk = acquireChunk();
+		try {
+			int n;
+			while ((n = inputStream.read(bytes)) != -1) {
+				int offset = 0;
+				while (offset < n) {
+					int length = Math.min(n - offset, writeChunk.remaining());
+					writeChunk.put(bytes, offset, length);
+					offset += length;
+					if (!writeChunk.hasRemaining()) {
+						publish(writeChunk);
+						// The published chunk is released by the reader.
+						writeChunk = null;
+						writeChunk = acquireChunk();
+					}
+				}
+			}
+			if (writeChunk.position() > 0) {
+				publish(writeChunk);
+				writeChunk = null;
+			}
+		}
+		finally {
+			releaseChunk(writeChunk);
+		}
+	}
+	
+	private void publish(ByteBuffer writeChunk)
+	throws IOException, InterruptedException {
+		writeChunk.flip();
+		if (!ring.put(writeChunk)) {
+			throw new IOException(ERROR_MSG_STREAM_CLOSED);
+		}
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int n = read(b, 0, 1);
+		return n == -1 ? -1 : b[0] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (isClosed) {
+			throw new IOException(ERROR_MSG_STREAM_CLOSED);
+		}
+		if (chunk == null || !chunk.hasRemaining()) {
+			releaseChunk(chunk);
+			chunk = null;
+			try {
+				chunk = ring.take();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+			if (chunk == null) {
+				if (writerError != null) {
+					throw new IOException(ERROR_MSG_WRITER_FAILED, writerError);
+				}
+				return -1;
+			}
+		}
+		int n = Math.min(len, chunk.remaining());
+		chunk.get(b, off, n);
+		return n;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return chunk == null ? 0 : chunk.remaining();
+	}
 
 	@Override
 	public void close() throws IOException {
-		super.close();
+		isClosed = true;
+		ring.close();
 		try {
 			thread.join();
 		}
@@ -60,5 +250,11 @@ public class AsyncInputStream extends PipedInputStream {
 			LOG.error("", e);
 			throw new RuntimeException(e);
 		}
+		releaseChunk(chunk);
+		chunk = null;
+		ByteBuffer unreadChunk;
+		while ((unreadChunk = ring.poll()) != null) {
+			releaseChunk(unreadChunk);
+		}
 	}
 }
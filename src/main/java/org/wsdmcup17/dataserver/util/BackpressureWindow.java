@@ -0,0 +1,226 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded window of revisions that have been sent to the client but whose
+ * scores have not been written yet.
+ * 
+ * The window is a ring buffer indexed by sequence number that is shared by
+ * exactly one producer thread (sending revisions) and one consumer thread
+ * (recording scores). Revision IDs and scores are stored in primitive arrays,
+ * such that no objects are allocated per revision, and the two threads never
+ * contend on a lock. Only the producer ever waits (for free space); it spins
+ * briefly and then parks until the consumer removes a revision.
+ */
+public class BackpressureWindow {
+	
+	private static final int
+		SPIN_TRIES = 100;
+	
+	private static final long
+		PARK_NANOS = 1000000;
+	
+	private int maxCapacity;
+	private int capacity;
+	private int mask;
+	
+	private long[] revisionIds;
+	private long[] sendNanos;
+	private float[] scores;
+	private boolean[] isScored;
+	
+	// Sequence number of the next revision to put (written by producer only)
+	private AtomicLong putSequence = new AtomicLong();
+	// Sequence number of the next revision to remove (written by consumer only)
+	private AtomicLong removeSequence = new AtomicLong();
+	
+	private volatile Thread waitingProducer;
+	
+	/**
+	 * @param capacity
+	 *            the number of revisions the window can hold at most, which
+	 *            can be lowered per session by {@link #setCapacity(int)}
+	 */
+	public BackpressureWindow(int capacity) {
+		this.maxCapacity = capacity;
+		this.capacity = capacity;
+		int arraySize = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.mask = arraySize - 1;
+		this.revisionIds = new long[arraySize];
+		this.sendNanos = new long[arraySize];
+		this.scores = new float[arraySize];
+		this.isScored = new boolean[arraySize];
+	}
+	
+	/**
+	 * Adds the given revision to the window, waiting if necessary for space
+	 * to become available, and records the current time as the time the
+	 * revision is sent. Must only be called by the producer thread.
+	 */
+	public void put(long revisionId) throws InterruptedException {
+		long sequence = putSequence.get();
+		int spins = 0;
+		while (sequence - removeSequence.get() >= capacity) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				spins++;
+				Thread.yield();
+			}
+			else {
+				waitingProducer = Thread.currentThread();
+				if (sequence - removeSequence.get() >= capacity) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				waitingProducer = null;
+			}
+		}
+		revisionIds[(int) sequence & mask] = revisionId;
+		sendNanos[(int) sequence & mask] = System.nanoTime();
+		putSequence.lazySet(sequence + 1);
+	}
+	
+	/**
+	 * Adds the given revision to the window if there is space available, and
+	 * records the current time as the time the revision is sent, although it
+	 * is written to the client afterwards. Must only be called by the
+	 * producer thread.
+	 * 
+	 * @return whether the revision has been added
+	 */
+	public boolean offer(long revisionId) {
+		long sequence = putSequence.get();
+		if (sequence - removeSequence.get() >= capacity) {
+			return false;
+		}
+		revisionIds[(int) sequence & mask] = revisionId;
+		sendNanos[(int) sequence & mask] = System.nanoTime();
+		putSequence.lazySet(sequence + 1);
+		return true;
+	}
+	
+	/**
+	 * Returns the sequence number of the given revision or -1 if the revision
+	 * is not in the window. Must only be called by the consumer thread.
+	 */
+	public long find(long revisionId) {
+		long end = putSequence.get();
+		for (long sequence = removeSequence.get(); sequence < end; sequence++) {
+			if (revisionIds[(int) sequence & mask] == revisionId) {
+				return sequence;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the sequence number of the oldest revision in the window or -1
+	 * if the window is empty. Must only be called by the consumer thread.
+	 */
+	public long peek() {
+		long sequence = removeSequence.get();
+		return sequence < putSequence.get() ? sequence : -1;
+	}
+	
+	public long getRevisionId(long sequence) {
+		return revisionIds[(int) sequence & mask];
+	}
+	
+	/**
+	 * Returns the time the revision with the given sequence number has been
+	 * added to the window as returned by {@link System#nanoTime()}.
+	 */
+	public long getSendNanos(long sequence) {
+		return sendNanos[(int) sequence & mask];
+	}
+	
+	public boolean isScored(long sequence) {
+		return isScored[(int) sequence & mask];
+	}
+	
+	public float getScore(long sequence) {
+		return scores[(int) sequence & mask];
+	}
+	
+	/**
+	 * Sets the score of the revision with the given sequence number. Must
+	 * only be called by the consumer thread.
+	 */
+	public void setScore(long sequence, float score) {
+		int index = (int) sequence & mask;
+		scores[index] = score;
+		isScored[index] = true;
+	}
+	
+	/**
+	 * Removes the oldest revision from the window. Must only be called by the
+	 * consumer thread.
+	 */
+	public void remove() {
+		long sequence = removeSequence.get();
+		if (sequence == putSequence.get()) {
+			return;
+		}
+		isScored[(int) sequence & mask] = false;
+		// A volatile write (instead of a lazy one) guarantees that a producer
+		// about to park either sees the free space or is unparked below.
+		removeSequence.set(sequence + 1);
+		Thread producer = waitingProducer;
+		if (producer != null) {
+			LockSupport.unpark(producer);
+		}
+	}
+	
+	/**
+	 * Returns whether the window is full, i.e., whether the producer has to
+	 * wait for a score before it can send the next revision.
+	 */
+	public boolean isFull() {
+		return size() >= capacity;
+	}
+	
+	/**
+	 * Sets the number of revisions the window holds before the producer has
+	 * to wait. Must only be called while neither the producer nor the
+	 * consumer thread uses the window.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the capacity is not positive or exceeds the capacity the
+	 *             window has been created with
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 1 || capacity > maxCapacity) {
+			throw new IllegalArgumentException(String.valueOf(capacity));
+		}
+		this.capacity = capacity;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Empties the window, such that it can be reused for another session.
+	 * Must only be called while neither the producer nor the consumer thread
+	 * uses the window.
+	 */
+	public void reset() {
+		capacity = maxCapacity;
+		putSequence.set(0);
+		removeSequence.set(0);
+		Arrays.fill(isScored, false);
+		waitingProducer = null;
+	}
+	
+	/**
+	 * Returns the number of revisions in the window.
+	 */
+	public int size() {
+		long removed = removeSequence.get();
+		return (int) (putSequence.get() - removed);
+	}
+}
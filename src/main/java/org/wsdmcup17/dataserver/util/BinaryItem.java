@@ -1,22 +1,75 @@
 package org.wsdmcup17.dataserver.util;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * A binary item.
+ * A binary item. The bytes of an item are either held on the heap or are
+ * slices of a memory-mapped file, in which case they can be written to a
+ * channel without being copied to the heap first. An item may consist of
+ * several segments, which are written one after the other.
  */
 public class BinaryItem {
 	private long revisionId;	
-	private byte[] bytes;
+	private ByteBuffer[] buffers;
+	private int length;
 	
 	public BinaryItem(long revisionId, byte[] bytes) {
+		this(revisionId, ByteBuffer.wrap(bytes));
+	}
+	
+	public BinaryItem(long revisionId, ByteBuffer... buffers) {
 		this.revisionId = revisionId;
-		this.bytes = bytes;
+		this.buffers = buffers;
+		for (ByteBuffer buffer : buffers) {
+			length += buffer.remaining();
+		}
 	}
 
 	public long getRevisionId() {
 		return revisionId;
 	}
+	
+	/**
+	 * Returns the number of bytes of this item.
+	 */
+	public int getLength() {
+		return length;
+	}
 
+	/**
+	 * Returns a new item consisting of the segments of this item followed by
+	 * the given buffer. No bytes are copied.
+	 */
+	public BinaryItem append(ByteBuffer buffer) {
+		ByteBuffer[] result = Arrays.copyOf(buffers, buffers.length + 1);
+		result[buffers.length] = buffer;
+		return new BinaryItem(revisionId, result);
+	}
+
+	/**
+	 * Returns a copy of the bytes of this item.
+	 */
 	public byte[] getBytes() {
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		for (ByteBuffer buffer : getBuffers()) {
+			int n = buffer.remaining();
+			buffer.get(bytes, offset, n);
+			offset += n;
+		}
 		return bytes;
 	}
+	
+	/**
+	 * Returns the bytes of this item as buffers, which can be consumed
+	 * independently of other calls of this method.
+	 */
+	public ByteBuffer[] getBuffers() {
+		ByteBuffer[] result = new ByteBuffer[buffers.length];
+		for (int i = 0; i < buffers.length; i++) {
+			result[i] = buffers[i].duplicate();
+		}
+		return result;
+	}
 }
@@ -0,0 +1,49 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Utility methods for writing to channels.
+ */
+public class ChannelUtils {
+	
+	private ChannelUtils() { }
+	
+	/**
+	 * Writes all remaining bytes of the given buffers to the given channel,
+	 * using gathering writes if the channel supports them.
+	 */
+	public static void writeFully(WritableByteChannel channel,
+			ByteBuffer... buffers) throws IOException {
+		writeFully(channel, buffers, buffers.length);
+	}
+	
+	/**
+	 * Writes all remaining bytes of the first <code>length</code> of the given
+	 * buffers to the given channel.
+	 */
+	public static void writeFully(WritableByteChannel channel,
+			ByteBuffer[] buffers, int length) throws IOException {
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gatheringChannel =
+					(GatheringByteChannel) channel;
+			int offset = 0;
+			while (offset < length) {
+				gatheringChannel.write(buffers, offset, length - offset);
+				while (offset < length && !buffers[offset].hasRemaining()) {
+					offset++;
+				}
+			}
+		}
+		else {
+			for (int i = 0; i < length; i++) {
+				while (buffers[i].hasRemaining()) {
+					channel.write(buffers[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream terminating every line with <code>\r\n</code>, exactly like
+ * {@link LineParser} does when it assembles items. The line terminators
+ * <code>\n</code>, <code>\r</code> and <code>\r\n</code> are recognized and an
+ * unterminated last line is terminated when the stream is closed.
+ */
+public class CrlfOutputStream extends FilterOutputStream {
+	
+	private static final byte[] CRLF = { '\r', '\n' };
+	
+	private boolean isAfterCr = false;
+	private boolean isLineOpen = false;
+	
+	public CrlfOutputStream(OutputStream out) {
+		super(out);
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int runStart = off;
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			byte c = b[i];
+			if (c == '\n' || c == '\r') {
+				out.write(b, runStart, i - runStart);
+				runStart = i + 1;
+				if (c == '\n' && isAfterCr) {
+					// second byte of \r\n, already terminated
+					isAfterCr = false;
+					continue;
+				}
+				out.write(CRLF);
+				isAfterCr = c == '\r';
+				isLineOpen = false;
+			}
+			else {
+				isAfterCr = false;
+				isLineOpen = true;
+			}
+		}
+		out.write(b, runStart, end - runStart);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (isLineOpen) {
+			out.write(CRLF);
+			isLineOpen = false;
+		}
+		super.close();
+	}
+}
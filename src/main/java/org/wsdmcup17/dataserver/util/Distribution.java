@@ -0,0 +1,83 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.util.Random;
+
+/**
+ * A distribution of non-negative values, e.g., of delays or sizes, from which
+ * values are drawn with a given random number generator.
+ * 
+ * A distribution is given as <code>fixed:&lt;value&gt;</code>,
+ * <code>uniform:&lt;min&gt;-&lt;max&gt;</code>, or
+ * <code>exponential:&lt;mean&gt;</code>.
+ */
+public class Distribution {
+	
+	private static final String
+		FIXED = "fixed",
+		UNIFORM = "uniform",
+		EXPONENTIAL = "exponential",
+		ERROR_MSG_INVALID_DISTRIBUTION = "Invalid distribution: %s";
+	
+	private String type;
+	private double min;
+	private double max;
+	
+	private Distribution(String type, double min, double max) {
+		this.type = type;
+		this.min = min;
+		this.max = max;
+	}
+	
+	public static Distribution parse(String spec) {
+		String[] parts = spec.split(":", 2);
+		try {
+			if (parts.length == 2) {
+				String type = parts[0];
+				if (type.equals(UNIFORM)) {
+					String[] range = parts[1].split("-", 2);
+					if (range.length == 2) {
+						return create(type, range[0], range[1]);
+					}
+				}
+				else if (type.equals(FIXED) || type.equals(EXPONENTIAL)) {
+					return create(type, parts[1], parts[1]);
+				}
+			}
+		}
+		catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException(
+				String.format(ERROR_MSG_INVALID_DISTRIBUTION, spec));
+	}
+	
+	private static Distribution create(String type, String min, String max) {
+		double minValue = Double.parseDouble(min);
+		double maxValue = Double.parseDouble(max);
+		if (minValue < 0 || maxValue < minValue) {
+			throw new NumberFormatException();
+		}
+		return new Distribution(type, minValue, maxValue);
+	}
+	
+	public double next(Random random) {
+		switch (type) {
+		case UNIFORM:
+			return min + random.nextDouble() * (max - min);
+		case EXPONENTIAL:
+			return -min * Math.log(1 - random.nextDouble());
+		default:
+			return min;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		switch (type) {
+		case UNIFORM:
+			return String.format("%s:%s-%s", type, min, max);
+		default:
+			return String.format("%s:%s", type, min);
+		}
+	}
+}
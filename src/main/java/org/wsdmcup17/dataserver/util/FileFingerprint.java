@@ -0,0 +1,63 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identifies the contents of a (possibly multi-GB) file by its size and a
+ * SHA-1 hash over its head and tail. Computing the fingerprint takes only
+ * milliseconds, but it changes whenever the file is replaced by a different
+ * one.
+ */
+public class FileFingerprint {
+	
+	private static final String
+		SHA_1 = "SHA-1";
+	
+	private static final int
+		SAMPLE_SIZE = 1024 * 1024;
+	
+	private FileFingerprint() { }
+	
+	/**
+	 * Returns the fingerprint of the given file as a hexadecimal string.
+	 */
+	public static String of(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			long length = raf.length();
+			MessageDigest digest = MessageDigest.getInstance(SHA_1);
+			digest.update(Long.toString(length).getBytes("UTF-8"));
+			byte[] buffer = new byte[SAMPLE_SIZE];
+			update(digest, raf, 0, buffer);
+			update(digest, raf, Math.max(SAMPLE_SIZE, length - SAMPLE_SIZE),
+					buffer);
+			return toHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void update(MessageDigest digest, RandomAccessFile raf,
+			long position, byte[] buffer) throws IOException {
+		raf.seek(position);
+		int n;
+		int total = 0;
+		while (total < buffer.length &&
+				(n = raf.read(buffer, total, buffer.length - total)) != -1) {
+			total += n;
+		}
+		digest.update(buffer, 0, total);
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
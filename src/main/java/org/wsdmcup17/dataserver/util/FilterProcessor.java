@@ -1,12 +1,23 @@
 package org.wsdmcup17.dataserver.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Processes a binary item and forwards the event to the next processor if the
  * filtering criteria are met (the given <code>firstRevisionId</code> has been
- * read).
+ * read). The sentinel ending the stream is always forwarded, such that the
+ * stream ends even if the first revision is not found.
  */
 public class FilterProcessor implements ItemProcessor {
 
+	private static final Logger
+		LOG = LoggerFactory.getLogger(FilterProcessor.class);
+
+	private static final String
+		ERROR_MSG_FIRST_REVISION_NOT_FOUND =
+			"First revision %d not found, no items are provided";
+
 	private ItemProcessor processor;
 	private long firstRevisionId;
 	private boolean firstRevisionIdRead = false;
@@ -24,5 +35,10 @@ public class FilterProcessor implements ItemProcessor {
 		if (firstRevisionIdRead) {
 			processor.processItem(item);
 		}
+		else if (item.getRevisionId() == Long.MAX_VALUE) { // end of file
+			LOG.error(String.format(ERROR_MSG_FIRST_REVISION_NOT_FOUND,
+					firstRevisionId));
+			processor.processItem(item);
+		}
 	}
 }
@@ -0,0 +1,129 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Collects frames, i.e., meta data and revision each preceded by its length,
+ * and writes all of them to a channel with a single gathering write when
+ * flushed. The bytes of the items are not copied.
+ */
+public class FrameWriter {
+	
+	/**
+	 * The largest number of frames written at once.
+	 */
+	public static final int
+		MAX_FRAMES = 64;
+	
+	private static final int
+		MAX_BYTES = 1024 * 1024,
+		INITIAL_BUFFERS = 16;
+	
+	private WritableByteChannel channel;
+	private int maxFrames;
+	
+	private ByteBuffer[] lengthBuffers;
+	private ByteBuffer[] buffers = new ByteBuffer[INITIAL_BUFFERS];
+	private int lengthCount;
+	private int bufferCount;
+	private int frameCount;
+	private long byteCount;
+	
+	/**
+	 * @param maxFrames
+	 *            the number of frames after which the writer is full, at most
+	 *            {@link #MAX_FRAMES}
+	 */
+	public FrameWriter(WritableByteChannel channel, int maxFrames) {
+		this.channel = channel;
+		this.maxFrames = Math.min(maxFrames, MAX_FRAMES);
+		lengthBuffers = new ByteBuffer[2 * this.maxFrames];
+		for (int i = 0; i < lengthBuffers.length; i++) {
+			lengthBuffers[i] = ByteBuffer.allocate(Integer.BYTES);
+		}
+	}
+	
+	/**
+	 * Adds the frame of the given items, which must not be changed until the
+	 * frame has been flushed.
+	 * 
+	 * @return the number of bytes of the frame
+	 * @throws IllegalStateException
+	 *             if the writer is full
+	 */
+	public int addFrame(BinaryItem metadata, BinaryItem revision) {
+		if (isFull()) {
+			throw new IllegalStateException();
+		}
+		addItem(metadata);
+		addItem(revision);
+		frameCount++;
+		return 2 * Integer.BYTES + metadata.getLength() + revision.getLength();
+	}
+	
+	/**
+	 * Adds the given item, which already contains a complete frame including
+	 * the length fields, e.g., a compressed one.
+	 * 
+	 * @return the number of bytes of the frame
+	 * @throws IllegalStateException
+	 *             if the writer is full
+	 */
+	public int addFrame(BinaryItem frame) {
+		if (isFull()) {
+			throw new IllegalStateException();
+		}
+		for (ByteBuffer buffer : frame.getBuffers()) {
+			add(buffer);
+		}
+		byteCount += frame.getLength();
+		frameCount++;
+		return frame.getLength();
+	}
+	
+	private void addItem(BinaryItem item) {
+		ByteBuffer lengthBuffer = lengthBuffers[lengthCount++];
+		lengthBuffer.clear();
+		lengthBuffer.putInt(item.getLength());
+		lengthBuffer.flip();
+		add(lengthBuffer);
+		for (ByteBuffer buffer : item.getBuffers()) {
+			add(buffer);
+		}
+		byteCount += Integer.BYTES + item.getLength();
+	}
+	
+	private void add(ByteBuffer buffer) {
+		if (bufferCount == buffers.length) {
+			buffers = Arrays.copyOf(buffers, 2 * buffers.length);
+		}
+		buffers[bufferCount++] = buffer;
+	}
+	
+	/**
+	 * Returns whether no further frame can be added before flushing.
+	 */
+	public boolean isFull() {
+		return frameCount == maxFrames || byteCount >= MAX_BYTES;
+	}
+	
+	public boolean isEmpty() {
+		return frameCount == 0;
+	}
+	
+	/**
+	 * Writes all frames added since the last flush.
+	 */
+	public void flush() throws IOException {
+		ChannelUtils.writeFully(channel, buffers, bufferCount);
+		// The items may be backed by pooled or memory-mapped buffers.
+		Arrays.fill(buffers, 0, bufferCount, null);
+		lengthCount = 0;
+		bufferCount = 0;
+		frameCount = 0;
+		byteCount = 0;
+	}
+}
@@ -0,0 +1,68 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.wsdmcup17.dataserver.chunked.ChunkedFile;
+import org.wsdmcup17.dataserver.chunked.ChunkedInputStream;
+
+/**
+ * Opens compressed input files, which are either 7z files or
+ * {@link ChunkedFile}s.
+ */
+public class InputFiles {
+	
+	private InputFiles() { }
+	
+	/**
+	 * Returns whether the given file can be decompressed in parallel.
+	 */
+	public static boolean isChunked(File file) throws IOException {
+		return ChunkedFile.isChunkedFile(file);
+	}
+	
+	/**
+	 * Opens a stream reading the decompressed contents of the given file.
+	 * 
+	 * @param lookaheadSize
+	 *            the bytes a chunked file is decompressed ahead at most
+	 */
+	public static InputStream open(File file, int lookaheadSize)
+	throws IOException {
+		return open(file, -1, lookaheadSize);
+	}
+	
+	/**
+	 * Opens a stream reading the decompressed contents of the given file,
+	 * which may skip items before the given revision. For a chunked file,
+	 * the stream starts at the chunk containing the revision.
+	 * 
+	 * @param firstRevisionId
+	 *            the ID of the first revision needed or -1
+	 * @param lookaheadSize
+	 *            the bytes a chunked file is decompressed ahead at most
+	 */
+	public static InputStream open(File file, long firstRevisionId,
+			int lookaheadSize) throws IOException {
+		if (isChunked(file)) {
+			return new ChunkedInputStream(file, firstRevisionId, lookaheadSize);
+		}
+		else {
+			return new SevenZInputStream(file);
+		}
+	}
+	
+	/**
+	 * Returns the decompressed bytes a stream opened by
+	 * {@link #open(File, long, int)} holds at most, which is 0 for 7z files
+	 * since they are decompressed on demand.
+	 */
+	public static long getMaxBufferSize(File file, int lookaheadSize)
+	throws IOException {
+		if (isChunked(file)) {
+			return ChunkedInputStream.getMaxBufferSize(file, lookaheadSize);
+		}
+		return 0;
+	}
+}
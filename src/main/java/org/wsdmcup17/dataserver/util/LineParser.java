@@ -1,24 +1,33 @@
 package org.wsdmcup17.dataserver.util;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wsdmcup17.dataserver.metrics.Counter;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
 import org.wsdmcup17.dataserver.util.BinaryItem;
 import org.wsdmcup17.dataserver.util.ItemProcessor;
 
 /**
  * Abstract class for parsing lines of a text file one by one.
  *
- * A concrete subclass has to implement the {@link #consumeLine(String)} method
- * and call the the {@link #processCurItem()} method whenever the processing of
- * an item has finished (possibly after having consumed several lines}.
+ * A concrete subclass has to implement the
+ * {@link #consumeLine(byte[], int, int)} method and call the the
+ * {@link #endItem()} and {@link #processLastItem()} methods whenever the
+ * processing of an item has finished (possibly after having consumed several
+ * lines).
+ * 
+ * The parser works on raw bytes: It scans the input for line boundaries and
+ * copies the bytes of every line (terminated by <code>\r\n</code>) into a
+ * block that holds consecutive items. At the end of an item, a slice of the
+ * block becomes the payload of the item without being copied, and the next
+ * item starts right behind it. A new block is only allocated when an item
+ * does not fit into the rest of the current one, in which case only the bytes
+ * of the unfinished item are copied. No characters are decoded or encoded.
  */
 public abstract class LineParser {
 
@@ -26,10 +35,30 @@ public abstract class LineParser {
 
 	private static final String
 		LOG_MSG_END_OF_FILE = "end of file reached",
-		CRLF = "\r\n", // RFC4180 demands the line ending \r\n.
-		UTF_8 = "UTF-8";
+		METRIC_PARSED_BYTES = "input.parsedBytes",
+		METRIC_PARSED_ITEMS = "input.parsedItems";
+	
+	private static final Counter
+		PARSED_BYTES =
+			MetricsRegistry.getDefault().counter(METRIC_PARSED_BYTES),
+		PARSED_ITEMS =
+			MetricsRegistry.getDefault().counter(METRIC_PARSED_ITEMS);
+	
+	// RFC4180 demands the line ending \r\n.
+	private static final byte[] CRLF = { '\r', '\n' };
+	
+	private static final int
+		READ_BUFFER_SIZE = 64 * 1024,
+		BLOCK_SIZE = 256 * 1024;
 
-	private StringBuilder curString = new StringBuilder();
+	private byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+	// Positions of the current item and line within the current block
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int curStart = 0;
+	private int curEnd = 0;
+	private int curLineStart = 0;
+	private boolean isAfterCr = false;
+	
 	private ItemProcessor processor;
 	private InputStream inputStream;
 	
@@ -45,78 +74,190 @@ public abstract class LineParser {
 	}
 
 	public void consumeFile() throws IOException {
-		try (
-			Reader reader = new InputStreamReader(inputStream, UTF_8);
-			BufferedReader bufferedReader = new BufferedReader(reader);
-		) {
-			String line;
-			while ((line = bufferedReader.readLine()) != null &&
-					!isStopping && !Thread.currentThread().isInterrupted()) {
-				appendLineToCurItem(line);
-				consumeLine(line);
+		try {
+			while (!isStopping && !Thread.currentThread().isInterrupted() &&
+					consumeBuffer());
+		}
+		finally {
+			inputStream.close();
+		}
+	}
+	
+	/**
+	 * Reads and consumes the next bytes of the input stream, such that the
+	 * file can also be consumed piecemeal. The caller is responsible for
+	 * closing the input stream then.
+	 * 
+	 * @return whether there are more bytes to consume
+	 */
+	public boolean consumeBuffer() throws IOException {
+		int n = inputStream.read(readBuffer);
+		if (n == -1) {
+			if (curEnd > curLineStart) { // unterminated last line
+				endLine();
+			}
+			consumeEndOfFile();
+			
+			LOG.debug(LOG_MSG_END_OF_FILE);
+			
+			// send sentinel to indicate end of item stream
+			curRevisionId = Long.MAX_VALUE;
+			curEnd = curStart;
+			endItem();
+			processLastItem();
+			return false;
+		}
+		consumeBytes(readBuffer, n);
+		PARSED_BYTES.add(n);
+		return true;
+	}
+	
+	private void consumeBytes(byte[] bytes, int length) {
+		int runStart = 0;
+		for (int i = 0; i < length; i++) {
+			byte b = bytes[i];
+			if (b == '\n' && isAfterCr) { // second byte of \r\n
+				isAfterCr = false;
+				runStart = i + 1;
+			}
+			else if (b == '\n' || b == '\r') {
+				append(bytes, runStart, i - runStart);
+				runStart = i + 1;
+				isAfterCr = b == '\r';
+				endLine();
+				if (isStopping || Thread.currentThread().isInterrupted()) {
+					return;
+				}
 			}
-			if (line == null) { // end of file reached
-				consumeLine(line);
-				
-				LOG.debug(LOG_MSG_END_OF_FILE);
-				
-				// send sentinel to indicate end of item stream
-				curRevisionId = Long.MAX_VALUE;
-				curString = new StringBuilder();
-				endItem();
-				processLastItem();
+			else {
+				isAfterCr = false;
 			}
 		}
+		append(bytes, runStart, length - runStart);
+	}
+	
+	private void endLine() {
+		// Appending may move the line to a new block.
+		append(CRLF, 0, CRLF.length);
+		int lineLength = curEnd - CRLF.length - curLineStart;
+		consumeLine(block, curLineStart, lineLength);
+		curLineStart = curEnd;
+	}
+	
+	private void append(byte[] bytes, int offset, int length) {
+		if (curEnd + length > block.length) {
+			// Moves the unfinished item to a new block.
+			int itemLength = curEnd - curStart;
+			byte[] newBlock = new byte[
+					Math.max(BLOCK_SIZE, 2 * (itemLength + length))];
+			System.arraycopy(block, curStart, newBlock, 0, itemLength);
+			block = newBlock;
+			curLineStart -= curStart;
+			curStart = 0;
+			curEnd = itemLength;
+		}
+		System.arraycopy(bytes, offset, block, curEnd, length);
+		curEnd += length;
 	}
 	
-	protected abstract void consumeLine(String line);
+	/**
+	 * Consumes the given line (without line terminator). The bytes of the
+	 * line must not be modified and must only be accessed during the call.
+	 */
+	protected abstract void consumeLine(byte[] bytes, int offset, int length);
+	
+	/**
+	 * Called after the last line of the file has been consumed.
+	 */
+	protected void consumeEndOfFile() { }
 
 	/**
 	 * Must be called by subclass at the end of an item.
 	 */
 	protected void processLastItem() {
 		if (lastItem != null){
+			if (lastItem.getRevisionId() != Long.MAX_VALUE) {
+				PARSED_ITEMS.increment();
+			}
 			processor.processItem(lastItem);
 			lastItem = null;
 		}
 	}
 	
 	protected void endItem() {
-		byte[] bytes = stringToBytes(curString.toString());
-		lastItem = new BinaryItem(curRevisionId, bytes);
-		resetBuffers();
+		lastItem = new BinaryItem(curRevisionId, sliceItem());
 	}
 	
+	/**
+	 * Appends the current bytes to the last item as a new segment, without
+	 * copying the last item.
+	 */
 	protected void appendToItem() {
-		try {
-			byte[] bytes = stringToBytes(curString.toString());
-		
-			// append bytes
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
-			outputStream.write(lastItem.getBytes());
-			outputStream.write(bytes);			
-			bytes = outputStream.toByteArray();
-			
-			lastItem = new BinaryItem(lastItem.getRevisionId(), bytes);
-			resetBuffers();
-		} catch (IOException e) {
-			LOG.error("", e);
-			throw new RuntimeException(e);
-		}
-	}
-
-	private void appendLineToCurItem(String line) {
-		curString.append(line);
-		curString.append(CRLF);
+		lastItem = lastItem.append(sliceItem());
 	}
 
-	private void resetBuffers() {
+	// Later items are appended behind the slice, so its bytes are never
+	// overwritten.
+	private ByteBuffer sliceItem() {
+		ByteBuffer item =
+				ByteBuffer.wrap(block, curStart, curEnd - curStart).slice();
 		curRevisionId = -1;
-		curString = new StringBuilder();
+		curStart = curEnd;
+		curLineStart = curEnd;
+		return item;
 	}
-
-	private byte[] stringToBytes(String str) {
-		return curString.toString().getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * Returns whether the given line equals the given bytes.
+	 */
+	protected static boolean equals(byte[] bytes, int offset, int length,
+			byte[] other) {
+		return length == other.length && startsWith(bytes, offset, length, other);
+	}
+	
+	/**
+	 * Returns whether the given line starts with the given prefix.
+	 */
+	protected static boolean startsWith(byte[] bytes, int offset, int length,
+			byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Parses a decimal number from the given bytes like
+	 * {@link Long#parseLong(String)}, but without creating a string for plain
+	 * sequences of digits.
+	 * 
+	 * @throws NumberFormatException
+	 *             if the bytes do not represent a long
+	 */
+	protected static long parseLong(byte[] bytes, int offset, int length) {
+		if (length <= 0 || length > 18) { // longer numbers might overflow
+			return parseLongSlowly(bytes, offset, length);
+		}
+		long result = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return parseLongSlowly(bytes, offset, length);
+			}
+			result = 10 * result + digit;
+		}
+		return result;
+	}
+	
+	private static long parseLongSlowly(byte[] bytes, int offset, int length) {
+		String s = new String(bytes, offset, Math.max(length, 0),
+				StandardCharsets.UTF_8);
+		return Long.parseLong(s);
 	}
 
 	public void stop() {
@@ -0,0 +1,88 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file that is memory-mapped as a whole (in segments of 1 GB).
+ * The mapping is shared by all threads reading the file.
+ */
+public class MappedFile {
+	
+	private static final long
+		SEGMENT_SIZE = 1L << 30;
+	
+	private File file;
+	private long length;
+	private ByteBuffer[] segments;
+	
+	public MappedFile(File file) throws IOException {
+		this.file = file;
+		try (FileChannel channel =
+				FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			length = channel.size();
+			int numberOfSegments =
+					(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new ByteBuffer[numberOfSegments];
+			for (int i = 0; i < numberOfSegments; i++) {
+				long position = i * SEGMENT_SIZE;
+				long size = Math.min(SEGMENT_SIZE, length - position);
+				segments[i] = channel.map(MapMode.READ_ONLY, position, size);
+			}
+		}
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	public long length() {
+		return length;
+	}
+	
+	/**
+	 * Returns the given range of the file as slices of the memory mapping
+	 * (without copying any bytes).
+	 */
+	public ByteBuffer[] slice(long offset, int length) {
+		int first = (int) (offset / SEGMENT_SIZE);
+		int last = (int) ((offset + Math.max(length, 1) - 1) / SEGMENT_SIZE);
+		ByteBuffer[] result = new ByteBuffer[last - first + 1];
+		long position = offset;
+		long end = offset + length;
+		for (int i = first; i <= last; i++) {
+			long segmentStart = i * SEGMENT_SIZE;
+			ByteBuffer slice = segments[i].duplicate();
+			slice.position((int) (position - segmentStart));
+			slice.limit((int) (Math.min(end - segmentStart, slice.capacity())));
+			result[i - first] = slice.slice();
+			position = segmentStart + SEGMENT_SIZE;
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads an int32 in network byte order at the given offset.
+	 */
+	public int getInt(long offset) {
+		int result = 0;
+		for (ByteBuffer buffer : slice(offset, Integer.BYTES)) {
+			while (buffer.hasRemaining()) {
+				result = (result << 8) | (buffer.get() & 0xff);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Opens a new stream reading the file from the given offset.
+	 */
+	public InputStream openStream(long offset) {
+		return new MappedInputStream(segments, SEGMENT_SIZE, offset, length);
+	}
+}
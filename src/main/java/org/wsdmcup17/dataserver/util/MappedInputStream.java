@@ -0,0 +1,80 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream reading from a sequence of memory-mapped segments of a
+ * file. Every stream works on its own duplicates of the segments, such that
+ * many streams can read the same mapping concurrently.
+ */
+public class MappedInputStream extends InputStream {
+	
+	private ByteBuffer[] segments;
+	private long segmentSize;
+	private long position;
+	private long end;
+	private ByteBuffer curSegment;
+	
+	/**
+	 * @param segments
+	 *            the mapped segments; all but the last one must have the size
+	 *            <code>segmentSize</code>
+	 * @param position
+	 *            the offset in the file where reading starts
+	 * @param end
+	 *            the offset in the file where reading ends (exclusive)
+	 */
+	public MappedInputStream(ByteBuffer[] segments, long segmentSize,
+			long position, long end) {
+		this.segments = segments;
+		this.segmentSize = segmentSize;
+		this.position = position;
+		this.end = end;
+	}
+
+	@Override
+	public int read() {
+		byte[] b = new byte[1];
+		int n = read(b, 0, 1);
+		return n == -1 ? -1 : b[0] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= end) {
+			return -1;
+		}
+		ByteBuffer segment = getSegment();
+		int n = (int) Math.min(Math.min(len, segment.remaining()),
+				end - position);
+		segment.get(b, off, n);
+		position += n;
+		return n;
+	}
+	
+	@Override
+	public long skip(long n) {
+		long skipped = Math.max(0, Math.min(n, end - position));
+		position += skipped;
+		curSegment = null;
+		return skipped;
+	}
+	
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, end - position);
+	}
+	
+	private ByteBuffer getSegment() {
+		if (curSegment == null || !curSegment.hasRemaining()) {
+			int index = (int) (position / segmentSize);
+			curSegment = segments[index].duplicate();
+			curSegment.position((int) (position % segmentSize));
+		}
+		return curSegment;
+	}
+}
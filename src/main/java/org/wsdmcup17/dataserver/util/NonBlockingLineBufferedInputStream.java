@@ -5,8 +5,13 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
 /**
- * InputStream capable of reading lines without reading ahead, thus avoiding
- * blocking.
+ * InputStream capable of reading lines terminated by '\r\n'.
+ * 
+ * The stream reads blocks of whatever bytes are available into its line
+ * buffer and splits them into lines in place, such that a client sending
+ * many lines at once costs a single read. Reading never blocks while a
+ * complete line is buffered. Hence, this stream must be the only reader of
+ * the underlying stream.
  */
 public class NonBlockingLineBufferedInputStream extends InputStream {
 	
@@ -17,16 +22,39 @@ public class NonBlockingLineBufferedInputStream extends InputStream {
 	private InputStream inputStream;
 	
 	byte[] lineBuffer;
+	// Start of the unread bytes in the line buffer
+	private int position;
+	// End of the bytes in the line buffer
+	private int limit;
+	// Where to continue searching for the end of the current line
+	private int scanPosition;
+	// Start of the line last read
+	private int lineOffset;
 	
 	public NonBlockingLineBufferedInputStream(
 		InputStream inputStream, int bufferSize
+	) {
+		this(inputStream, new byte[bufferSize]);
+	}
+	
+	/**
+	 * @param lineBuffer
+	 *            the buffer lines are assembled in, e.g., a pooled one
+	 */
+	public NonBlockingLineBufferedInputStream(
+		InputStream inputStream, byte[] lineBuffer
 	) {
 		this.inputStream = inputStream;
-		this.lineBuffer = new byte[bufferSize];
+		this.lineBuffer = lineBuffer;
 	}	
 	
 	@Override
 	public int read() throws IOException {
+		if (position < limit) {
+			int b = lineBuffer[position++] & 0xFF;
+			scanPosition = Math.max(scanPosition, position);
+			return b;
+		}
 		return inputStream.read();
 	}
 	
@@ -71,27 +99,81 @@ public class NonBlockingLineBufferedInputStream extends InputStream {
 	}
 	
 	public String readLine() throws IOException {
-		int curPos = 0;
-		
-		while(true) {
-			int b = this.read();
-			if (b == (byte)'\r') {
-				b = this.read();
-				if (b != (byte)'\n') {
-					throw new IOException(ERROR_MSG_INVALID_LINE_ENDING + b);
+		int length = readLineBytes();
+		if (length == -1) {
+			return null;
+		}
+		return new String(lineBuffer, lineOffset, length,
+				StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Reads the next line into the line buffer without its line ending.
+	 * 
+	 * @return the length of the line or -1 if the end of the stream has been
+	 *         reached
+	 * @see #getLineBuffer()
+	 * @see #getLineOffset()
+	 */
+	public int readLineBytes() throws IOException {
+		while (true) {
+			for (int i = scanPosition; i < limit - 1; i++) {
+				if (lineBuffer[i] == '\r') {
+					if (lineBuffer[i + 1] != '\n') {
+						throw new IOException(ERROR_MSG_INVALID_LINE_ENDING +
+								(lineBuffer[i + 1] & 0xFF));
+					}
+					lineOffset = position;
+					position = i + 2;
+					scanPosition = position;
+					return i - lineOffset;
 				}
-				break;
 			}
-			else if (b == -1) {				
-				return null;
-			}
-			lineBuffer[curPos] = (byte)b;
-			curPos++;
-			if (curPos >= lineBuffer.length) {
-				throw new IOException(ERROR_MSG_LINE_TOO_LONG_FOR_BUFFER);
+			// A trailing '\r' is checked once the next byte has been read.
+			scanPosition = Math.max(position, limit - 1);
+			if (!fillLineBuffer()) {
+				if (scanPosition < limit && lineBuffer[scanPosition] == '\r') {
+					throw new IOException(ERROR_MSG_INVALID_LINE_ENDING + -1);
+				}
+				return -1;
 			}
 		}
-		
-		return new String(lineBuffer, 0, curPos, StandardCharsets.UTF_8);		
+	}
+	
+	/**
+	 * Moves the current line to the beginning of the line buffer and reads as
+	 * many bytes as available behind it, blocking until at least one byte is
+	 * available.
+	 * 
+	 * @return whether any bytes have been read
+	 */
+	private boolean fillLineBuffer() throws IOException {
+		if (position > 0) {
+			System.arraycopy(lineBuffer, position, lineBuffer, 0,
+					limit - position);
+			limit -= position;
+			scanPosition -= position;
+			position = 0;
+		}
+		if (limit == lineBuffer.length) {
+			throw new IOException(ERROR_MSG_LINE_TOO_LONG_FOR_BUFFER);
+		}
+		int n = inputStream.read(lineBuffer, limit, lineBuffer.length - limit);
+		if (n == -1) {
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+	
+	public byte[] getLineBuffer() {
+		return lineBuffer;
+	}
+	
+	/**
+	 * Returns the offset of the line last read in the line buffer.
+	 */
+	public int getLineOffset() {
+		return lineOffset;
 	}
 }
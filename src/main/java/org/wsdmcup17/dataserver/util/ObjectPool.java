@@ -0,0 +1,49 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable objects. Objects are created on demand if the
+ * pool is empty, reset when they are returned, and dropped (to be garbage
+ * collected) if the pool is full.
+ */
+public class ObjectPool<T> {
+	
+	private BlockingQueue<T> pool;
+	private Supplier<T> factory;
+	private Consumer<T> reset;
+	
+	/**
+	 * @param capacity
+	 *            the maximum number of idle objects kept by the pool
+	 * @param factory
+	 *            creates a new object if the pool is empty
+	 * @param reset
+	 *            prepares a returned object for its next use
+	 */
+	public ObjectPool(int capacity, Supplier<T> factory, Consumer<T> reset) {
+		this.pool = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		this.factory = factory;
+		this.reset = reset;
+	}
+	
+	public T acquire() {
+		T object = pool.poll();
+		return object != null ? object : factory.get();
+	}
+	
+	/**
+	 * Returns the given object to the pool. The object must not be used by
+	 * the caller afterwards.
+	 */
+	public void release(T object) {
+		if (object == null) {
+			return;
+		}
+		reset.accept(object);
+		pool.offer(object);
+	}
+}
@@ -0,0 +1,149 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A buffered writer encoding characters as UTF-8. Unlike
+ * {@link java.io.OutputStreamWriter}, the writer can be opened for one output
+ * stream after the other, such that its buffers are allocated only once.
+ */
+public class ReusableWriter extends Writer {
+	
+	private static final String
+		ERROR_MSG_STREAM_CLOSED = "Stream closed";
+	
+	private static final int
+		BUFFER_SIZE = 8192;
+	
+	private CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer chars;
+	private ByteBuffer bytes;
+	private OutputStream out;
+	
+	public ReusableWriter() {
+		this(BUFFER_SIZE);
+	}
+	
+	/**
+	 * @param bufferSize
+	 *            the number of characters buffered before they are written to
+	 *            the output stream
+	 */
+	public ReusableWriter(int bufferSize) {
+		chars = CharBuffer.allocate(bufferSize);
+		bytes = ByteBuffer.allocate(bufferSize);
+	}
+	
+	/**
+	 * Directs all further output to the given stream, which is closed when
+	 * the writer is closed.
+	 */
+	public void open(OutputStream out) {
+		this.out = out;
+		encoder.reset();
+		chars.clear();
+		bytes.clear();
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, chars.remaining());
+			chars.put(cbuf, off, n);
+			off += n;
+			len -= n;
+			if (!chars.hasRemaining()) {
+				encodeChars(false);
+			}
+		}
+	}
+	
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, chars.remaining());
+			chars.put(str, off, off + n);
+			off += n;
+			len -= n;
+			if (!chars.hasRemaining()) {
+				encodeChars(false);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the given characters without converting them to a string first.
+	 */
+	@Override
+	public Writer append(CharSequence csq) throws IOException {
+		ensureOpen();
+		for (int i = 0; i < csq.length(); i++) {
+			chars.put(csq.charAt(i));
+			if (!chars.hasRemaining()) {
+				encodeChars(false);
+			}
+		}
+		return this;
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		encodeChars(false);
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (out == null) {
+			return;
+		}
+		try {
+			encodeChars(true);
+			out.flush();
+		}
+		finally {
+			out.close();
+			out = null;
+		}
+	}
+	
+	// Characters that cannot be encoded yet (an incomplete surrogate pair)
+	// remain in the buffer.
+	private void encodeChars(boolean isEndOfInput) throws IOException {
+		chars.flip();
+		while (encoder.encode(chars, bytes, isEndOfInput).isOverflow()) {
+			writeBytes();
+		}
+		if (isEndOfInput) {
+			while (encoder.flush(bytes).isOverflow()) {
+				writeBytes();
+			}
+		}
+		writeBytes();
+		chars.compact();
+	}
+	
+	private void writeBytes() throws IOException {
+		bytes.flip();
+		out.write(bytes.array(), 0, bytes.limit());
+		bytes.clear();
+	}
+	
+	private void ensureOpen() throws IOException {
+		if (out == null) {
+			throw new IOException(ERROR_MSG_STREAM_CLOSED);
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.wsdmcup17.dataserver.metrics.Counter;
+import org.wsdmcup17.dataserver.metrics.MetricsRegistry;
 
 /**
  * A <code>SevenZInputStream</code> obtains input bytes from a compressed 7z
@@ -13,7 +15,11 @@ import org.apache.commons.compress.archivers.sevenz.SevenZFile;
 public class SevenZInputStream extends InputStream{
 	
 	private static final String
-		ERROR_MSG_MULTIPLE_7Z_STREAMS = "Multiple 7z streams.";
+		ERROR_MSG_MULTIPLE_7Z_STREAMS = "Multiple 7z streams.",
+		METRIC_DECOMPRESSED_BYTES = "input.decompressedBytes";
+	
+	private static final Counter DECOMPRESSED_BYTES =
+		MetricsRegistry.getDefault().counter(METRIC_DECOMPRESSED_BYTES);
 	
 	private SevenZFile sevenZFile;
 	
@@ -25,18 +31,27 @@ public class SevenZInputStream extends InputStream{
 	@Override
 	public int read() throws IOException {
 		int result = sevenZFile.read();
+		if (result != -1) {
+			DECOMPRESSED_BYTES.increment();
+		}
 		return result;		
 	}
 	
 	@Override
 	public int read(byte[] b) throws IOException {
 		int numberOfBytesRead = sevenZFile.read(b);
+		if (numberOfBytesRead > 0) {
+			DECOMPRESSED_BYTES.add(numberOfBytesRead);
+		}
 		return numberOfBytesRead;
 	}
 	
 	@Override
 	public int read(byte[] b, int off, int len) throws IOException {
 		int numberOfBytesRead = sevenZFile.read(b, off, len);
+		if (numberOfBytesRead > 0) {
+			DECOMPRESSED_BYTES.add(numberOfBytesRead);
+		}
 		return numberOfBytesRead;
 	}	
 
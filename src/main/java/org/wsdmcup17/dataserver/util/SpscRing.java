@@ -0,0 +1,168 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring passing items from exactly one producer thread to exactly one
+ * consumer thread without locks.
+ * 
+ * Like the {@link BackpressureWindow}, the ring is indexed by sequence
+ * numbers, each of which is written by one thread only. A thread waiting for
+ * space or for an item spins briefly and then parks until the other thread
+ * makes progress.
+ */
+public class SpscRing<T> {
+	
+	private static final int
+		SPIN_TRIES = 100;
+	
+	private static final long
+		PARK_NANOS = 1000000;
+	
+	private int capacity;
+	private int mask;
+	private Object[] items;
+	
+	// Sequence number of the next item to put (written by producer only)
+	private AtomicLong putSequence = new AtomicLong();
+	// Sequence number of the next item to take (written by consumer only)
+	private AtomicLong takeSequence = new AtomicLong();
+	
+	private volatile Thread waitingProducer;
+	private volatile Thread waitingConsumer;
+	private volatile boolean isFinished = false;
+	private volatile boolean isClosed = false;
+	
+	public SpscRing(int capacity) {
+		this.capacity = capacity;
+		int arraySize = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.mask = arraySize - 1;
+		this.items = new Object[arraySize];
+	}
+	
+	/**
+	 * Adds the given item to the ring, waiting if necessary for space to
+	 * become available. Must only be called by the producer thread.
+	 * 
+	 * @return whether the item has been added, i.e., <code>false</code> if
+	 *         the consumer has closed the ring
+	 */
+	public boolean put(T item) throws InterruptedException {
+		long sequence = putSequence.get();
+		int spins = 0;
+		while (sequence - takeSequence.get() >= capacity && !isClosed) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				spins++;
+				Thread.yield();
+			}
+			else {
+				waitingProducer = Thread.currentThread();
+				if (sequence - takeSequence.get() >= capacity && !isClosed) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				waitingProducer = null;
+			}
+		}
+		if (isClosed) {
+			return false;
+		}
+		items[(int) sequence & mask] = item;
+		// A volatile write (instead of a lazy one) guarantees that a consumer
+		// about to park either sees the item or is unparked below.
+		putSequence.set(sequence + 1);
+		unpark(waitingConsumer);
+		return true;
+	}
+	
+	/**
+	 * Signals that no more items will be put. Must only be called by the
+	 * producer thread.
+	 */
+	public void finish() {
+		isFinished = true;
+		unpark(waitingConsumer);
+	}
+	
+	/**
+	 * Removes the oldest item from the ring, waiting if necessary for an item
+	 * to become available. Must only be called by the consumer thread.
+	 * 
+	 * @return the item or <code>null</code> if the ring is empty and the
+	 *         producer has finished
+	 */
+	public T take() throws InterruptedException {
+		long sequence = takeSequence.get();
+		int spins = 0;
+		while (sequence == putSequence.get()) {
+			// The producer puts its last item before finishing.
+			if (isFinished && sequence == putSequence.get()) {
+				return null;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (spins < SPIN_TRIES) {
+				spins++;
+				Thread.yield();
+			}
+			else {
+				waitingConsumer = Thread.currentThread();
+				if (sequence == putSequence.get() && !isFinished) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				waitingConsumer = null;
+			}
+		}
+		return remove(sequence);
+	}
+	
+	/**
+	 * Removes the oldest item from the ring without waiting. Must only be
+	 * called by the consumer thread.
+	 * 
+	 * @return the item or <code>null</code> if the ring is empty
+	 */
+	public T poll() {
+		long sequence = takeSequence.get();
+		if (sequence == putSequence.get()) {
+			return null;
+		}
+		return remove(sequence);
+	}
+	
+	/**
+	 * Signals that no more items will be taken, such that a waiting producer
+	 * gives up. Must only be called by the consumer thread.
+	 */
+	public void close() {
+		isClosed = true;
+		unpark(waitingProducer);
+	}
+	
+	/**
+	 * Returns whether the consumer has closed the ring.
+	 */
+	public boolean isClosed() {
+		return isClosed;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T remove(long sequence) {
+		int index = (int) sequence & mask;
+		T item = (T) items[index];
+		items[index] = null;
+		takeSequence.set(sequence + 1);
+		unpark(waitingProducer);
+		return item;
+	}
+	
+	private static void unpark(Thread thread) {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+}
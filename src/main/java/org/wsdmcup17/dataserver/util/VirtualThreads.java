@@ -0,0 +1,102 @@
+package org.wsdmcup17.dataserver.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates virtual threads if the Java runtime supports them (Java 21 or
+ * later). Since the server is compiled for Java 8, virtual threads are
+ * accessed by reflection.
+ */
+public class VirtualThreads {
+	
+	private static final Method
+		OF_VIRTUAL = getMethod(Thread.class, "ofVirtual"),
+		UNSTARTED = getMethod(getClass("java.lang.Thread$Builder"),
+				"unstarted", Runnable.class),
+		NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getMethod(Executors.class,
+				"newVirtualThreadPerTaskExecutor");
+	
+	private VirtualThreads() { }
+	
+	private static Class<?> getClass(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+	
+	private static Method getMethod(Class<?> clazz, String name,
+			Class<?>... parameterTypes) {
+		if (clazz == null) {
+			return null;
+		}
+		try {
+			return clazz.getMethod(name, parameterTypes);
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns whether the Java runtime supports virtual threads.
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null && UNSTARTED != null &&
+				NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+	
+	/**
+	 * Returns a new, unstarted virtual thread running the given task.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if virtual threads are not supported
+	 */
+	public static Thread newThread(Runnable task) {
+		checkSupported();
+		return (Thread) invoke(UNSTARTED, invoke(OF_VIRTUAL, null), task);
+	}
+	
+	/**
+	 * Returns an executor that runs every task in a new virtual thread.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if virtual threads are not supported
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		checkSupported();
+		return (ExecutorService) invoke(
+				NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR, null);
+	}
+	
+	private static void checkSupported() {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	private static Object invoke(Method method, Object target,
+			Object... args) {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}